@@ -0,0 +1,30 @@
+package Data;
+
+/**
+ * A {@link SparseVector} hashed for one task: the hashed weight indices and
+ * the feature values multiplied by the hashed signs. The arrays are reused
+ * from row to row and only grow, so a thread can keep one instance.
+ */
+public class HashedRow {
+	public long[] indices;
+	public double[] values;
+	public int length;
+
+	public HashedRow() {
+		this(64);
+	}
+
+	public HashedRow(int capacity) {
+		this.indices = new long[capacity];
+		this.values = new double[capacity];
+		this.length = 0;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if (this.indices.length < capacity) {
+			int newCapacity = Math.max(capacity, 2 * this.indices.length);
+			this.indices = new long[newCapacity];
+			this.values = new double[newCapacity];
+		}
+	}
+}
@@ -2,12 +2,16 @@ package Data;
 
 public class Instance {
 	public int[] y;
-	public AVPair[] x;
+	public SparseVector x;
 
-	
-	public Instance(AVPair[] x, int[] y) {
+
+	public Instance(SparseVector x, int[] y) {
 		this.x = x;
 		this.y = y;
 	}
 
+	public Instance(AVPair[] x, int[] y) {
+		this(SparseVector.fromAVPairs(x), y);
+	}
+
 }
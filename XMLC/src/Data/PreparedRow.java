@@ -0,0 +1,44 @@
+package Data;
+
+/**
+ * A {@link SparseVector} together with the task independent part of the hash
+ * of each of its features, as computed by
+ * {@link preprocessing.FeatureHasher#prepareRow}. Hashing the row for a task
+ * then only adds the cheap task dependent part, which pays off when one row
+ * is scored by many tasks, e.g. by the children of a tree node. The arrays
+ * are reused from row to row and only grow.
+ */
+public class PreparedRow {
+	public int[] features;
+	public float[] values;
+	public long[] bases;
+	public int length;
+
+	public PreparedRow() {
+		this(64);
+	}
+
+	public PreparedRow(int capacity) {
+		this.features = new int[capacity];
+		this.values = new float[capacity];
+		this.bases = new long[capacity];
+		this.length = 0;
+	}
+
+	/**
+	 * Copies the features and values of {@code x}; the bases are left to the
+	 * hasher.
+	 */
+	public void set(SparseVector x) {
+		int size = x.size();
+		if (this.features.length < size) {
+			int capacity = Math.max(size, 2 * this.features.length);
+			this.features = new int[capacity];
+			this.values = new float[capacity];
+			this.bases = new long[capacity];
+		}
+		System.arraycopy(x.indices, x.start, this.features, 0, size);
+		System.arraycopy(x.values, x.start, this.values, 0, size);
+		this.length = size;
+	}
+}
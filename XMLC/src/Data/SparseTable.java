@@ -0,0 +1,45 @@
+package Data;
+
+/**
+ * Data set in compressed sparse row layout. The features of all rows share
+ * one index slab and one value slab; row i occupies the positions
+ * {@code offsets[i] <= j < offsets[i+1]}. Compared to {@link AVTable}, there
+ * is no object per non-zero, so a data set takes about a third of the memory.
+ */
+public class SparseTable {
+	public int n;           // number of samples
+	public int m;           // number of labels
+	public int d;           // number of features
+	public int[][] y;
+	public int[] offsets;
+	public int[] indices;
+	public float[] values;
+
+	/**
+	 * @return A view of row {@code i} backed by the slabs of the table.
+	 */
+	public SparseVector getRow(int i) {
+		return new SparseVector(this.indices, this.values, this.offsets[i], this.offsets[i + 1]);
+	}
+
+	public static SparseTable fromAVTable(AVTable table) {
+		SparseTable data = new SparseTable();
+		data.n = table.n;
+		data.m = table.m;
+		data.d = table.d;
+		data.y = table.y;
+		data.offsets = new int[table.n + 1];
+		for (int i = 0; i < table.n; i++) {
+			data.offsets[i + 1] = data.offsets[i] + table.x[i].length;
+		}
+		data.indices = new int[data.offsets[table.n]];
+		data.values = new float[data.offsets[table.n]];
+		for (int i = 0; i < table.n; i++) {
+			for (int j = 0; j < table.x[i].length; j++) {
+				data.indices[data.offsets[i] + j] = table.x[i][j].index;
+				data.values[data.offsets[i] + j] = (float) table.x[i][j].value;
+			}
+		}
+		return data;
+	}
+}
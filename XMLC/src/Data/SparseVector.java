@@ -0,0 +1,47 @@
+package Data;
+
+/**
+ * Sparse row stored as two parallel primitive arrays. The non-zeros of the
+ * row are the positions {@code start <= i < end}, so a row can either own its
+ * arrays or be a view into the slabs of a {@link SparseTable}. A row is read
+ * only once it has been handed to a learner.
+ */
+public class SparseVector {
+	public int[] indices;
+	public float[] values;
+	public int start;
+	public int end;
+
+	public SparseVector(int[] indices, float[] values) {
+		this(indices, values, 0, indices.length);
+	}
+
+	public SparseVector(int[] indices, float[] values, int start, int end) {
+		this.indices = indices;
+		this.values = values;
+		this.start = start;
+		this.end = end;
+	}
+
+	public int size() {
+		return this.end - this.start;
+	}
+
+	public static SparseVector fromAVPairs(AVPair[] x) {
+		int[] indices = new int[x.length];
+		float[] values = new float[x.length];
+		for (int i = 0; i < x.length; i++) {
+			indices[i] = x[i].index;
+			values[i] = (float) x[i].value;
+		}
+		return new SparseVector(indices, values);
+	}
+
+	public AVPair[] toAVPairs() {
+		AVPair[] x = new AVPair[this.size()];
+		for (int i = this.start; i < this.end; i++) {
+			x[i - this.start] = new AVPair(this.indices[i], this.values[i]);
+		}
+		return x;
+	}
+}
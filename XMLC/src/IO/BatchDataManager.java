@@ -6,27 +6,32 @@ import java.util.Properties;
 
 import Data.AVTable;
 import Data.Instance;
+import Data.SparseTable;
 
-public class BatchDataManager extends DataManager {
+public class BatchDataManager extends DataManager implements IndexedData {
 	protected boolean isHeader = true;
-	protected AVTable data = null;
+	protected SparseTable data = null;
 	protected int currentIndex = 0;
 	
 	public BatchDataManager( String filename ) {
 		DataReader datareader = new DataReader(filename, false, this.isHeader);
 		try {
-			data = datareader.read();
+			data = datareader.readSparse();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		this.currentIndex = 0;
 	}
 	
-	public BatchDataManager( AVTable data ) {
+	public BatchDataManager( SparseTable data ) {
 		this.data = data;
 		this.currentIndex = 0;
 	}
 
+	public BatchDataManager( AVTable data ) {
+		this(SparseTable.fromAVTable(data));
+	}
+
 	@Override
 	public boolean hasNext() {
 		if (currentIndex >= data.n )
@@ -37,11 +42,21 @@ public class BatchDataManager extends DataManager {
 
 	@Override
 	public Instance getNextInstance() {
-		Instance instance = new Instance(data.x[currentIndex], data.y[currentIndex]);
+		Instance instance = getInstance(currentIndex);
 		currentIndex++;
 		return instance;
 	}
 
+	@Override
+	public int size() {
+		return data.n;
+	}
+
+	@Override
+	public Instance getInstance(int i) {
+		return new Instance(data.getRow(i), data.y[i]);
+	}
+
 	@Override
 	public int getNumberOfFeatures() {
 		return data.d;
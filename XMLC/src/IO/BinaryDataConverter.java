@@ -0,0 +1,223 @@
+package IO;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts a data file in the text format (header line "n d m" followed by
+ * libsvm lines) into the binary CSR format read by {@link MappedDataManager}.
+ * All numbers are big-endian:
+ *
+ * <pre>
+ * int   magic, version
+ * int   n, d, m
+ * long  number of label entries L, number of feature entries F
+ * int   labelOffsets[n+1]
+ * long  featureOffsets[n+1]
+ * int   labels[L]
+ * int   featureIndices[F]
+ * float featureValues[F]
+ * </pre>
+ *
+ * The text file is read twice, first to count the entries, then to write the
+ * sections.
+ */
+public class BinaryDataConverter {
+	private static Logger logger = LoggerFactory.getLogger(BinaryDataConverter.class);
+
+	public static final int magic = 0x584D4C43; // "XMLC"
+	public static final int version = 1;
+	public static final long headerSize = 4 * 5 + 8 * 2;
+
+	protected String inputFile = null;
+	protected String outputFile = null;
+
+	protected int n = 0;
+	protected int d = 0;
+	protected int m = 0;
+	protected long numOfLabelEntries = 0;
+	protected long numOfFeatureEntries = 0;
+
+	// buffers of the current line
+	protected int[] labels = new int[16];
+	protected int[] indices = new int[256];
+	protected float[] values = new float[256];
+	protected int numOfLabels = 0;
+	protected int numOfFeatures = 0;
+
+	public BinaryDataConverter(String inputFile, String outputFile) {
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+	}
+
+	public void convert() throws IOException {
+		logger.info("Converting " + this.inputFile + " to " + this.outputFile + "...");
+		this.count();
+		this.write();
+		logger.info("Done.");
+		logger.info("    -->  num x dim: labels " + this.n + " x " + this.d + " : " + this.m
+				+ ", feature entries: " + this.numOfFeatureEntries);
+	}
+
+	protected void count() throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(this.inputFile));
+		try {
+			this.readHeader(br);
+			this.n = 0;
+			this.numOfLabelEntries = 0;
+			this.numOfFeatureEntries = 0;
+
+			String line;
+			while ((line = br.readLine()) != null) {
+				this.parseLine(line);
+				this.n++;
+				this.numOfLabelEntries += this.numOfLabels;
+				this.numOfFeatureEntries += this.numOfFeatures;
+			}
+		} finally {
+			br.close();
+		}
+
+		if (this.numOfLabelEntries > Integer.MAX_VALUE) {
+			throw new IOException("Too many label entries for the binary format: " + this.numOfLabelEntries);
+		}
+	}
+
+	protected void write() throws IOException {
+		long labelOffsetsStart = headerSize;
+		long featureOffsetsStart = labelOffsetsStart + 4L * (this.n + 1);
+		long labelsStart = featureOffsetsStart + 8L * (this.n + 1);
+		long indicesStart = labelsStart + 4L * this.numOfLabelEntries;
+		long valuesStart = indicesStart + 4L * this.numOfFeatureEntries;
+		long length = valuesStart + 4L * this.numOfFeatureEntries;
+
+		File file = new File(this.outputFile);
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Cannot overwrite " + this.outputFile);
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(length);
+
+		DataOutputStream header = this.openSection(file, 0);
+		DataOutputStream labelOffsets = this.openSection(file, labelOffsetsStart);
+		DataOutputStream featureOffsets = this.openSection(file, featureOffsetsStart);
+		DataOutputStream labelsOut = this.openSection(file, labelsStart);
+		DataOutputStream indicesOut = this.openSection(file, indicesStart);
+		DataOutputStream valuesOut = this.openSection(file, valuesStart);
+
+		BufferedReader br = new BufferedReader(new FileReader(this.inputFile));
+		try {
+			this.readHeader(br);
+
+			header.writeInt(magic);
+			header.writeInt(version);
+			header.writeInt(this.n);
+			header.writeInt(this.d);
+			header.writeInt(this.m);
+			header.writeLong(this.numOfLabelEntries);
+			header.writeLong(this.numOfFeatureEntries);
+
+			int labelOffset = 0;
+			long featureOffset = 0;
+			labelOffsets.writeInt(labelOffset);
+			featureOffsets.writeLong(featureOffset);
+
+			String line;
+			while ((line = br.readLine()) != null) {
+				this.parseLine(line);
+
+				for (int i = 0; i < this.numOfLabels; i++) {
+					labelsOut.writeInt(this.labels[i]);
+				}
+				for (int i = 0; i < this.numOfFeatures; i++) {
+					indicesOut.writeInt(this.indices[i]);
+					valuesOut.writeFloat(this.values[i]);
+				}
+
+				labelOffset += this.numOfLabels;
+				featureOffset += this.numOfFeatures;
+				labelOffsets.writeInt(labelOffset);
+				featureOffsets.writeLong(featureOffset);
+			}
+		} finally {
+			br.close();
+			header.close();
+			labelOffsets.close();
+			featureOffsets.close();
+			labelsOut.close();
+			indicesOut.close();
+			valuesOut.close();
+			raf.close();
+		}
+	}
+
+	protected DataOutputStream openSection(File file, long position) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(position);
+		return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(raf.getChannel()), 1 << 16));
+	}
+
+	protected void readHeader(BufferedReader br) throws IOException {
+		String line = br.readLine();
+		if (line == null) {
+			throw new IOException("Empty data file: " + this.inputFile);
+		}
+		String[] tokens = line.trim().split(" ");
+		this.d = Integer.parseInt(tokens[1]);
+		this.m = Integer.parseInt(tokens[2]);
+	}
+
+	/**
+	 * Same interpretation as {@link DataReader#read()}: tokens without ':' are
+	 * labels, features are shifted to be indexed from 0 and the labels are
+	 * sorted.
+	 */
+	protected void parseLine(String line) {
+		this.numOfLabels = 0;
+		this.numOfFeatures = 0;
+
+		StringTokenizer st = new StringTokenizer(line, ", \t\n\r\f");
+		while (st.hasMoreTokens()) {
+			String token = st.nextToken();
+			int colon = token.indexOf(':');
+			if (colon < 0) {
+				if (this.numOfLabels == this.labels.length) {
+					this.labels = Arrays.copyOf(this.labels, 2 * this.labels.length);
+				}
+				this.labels[this.numOfLabels++] = Integer.parseInt(token);
+			} else {
+				if (this.numOfFeatures == this.indices.length) {
+					this.indices = Arrays.copyOf(this.indices, 2 * this.indices.length);
+					this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+				}
+				this.indices[this.numOfFeatures] = Integer.parseInt(token.substring(0, colon)) - 1;
+				this.values[this.numOfFeatures] = (float) Double.parseDouble(token.substring(colon + 1));
+				this.numOfFeatures++;
+			}
+		}
+
+		Arrays.sort(this.labels, 0, this.numOfLabels);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			logger.info("Usage: BinaryDataConverter <input data file> <output binary file>");
+			System.exit(-1);
+		}
+
+		BinaryDataConverter converter = new BinaryDataConverter(args[0], args[1]);
+		converter.convert();
+	}
+}
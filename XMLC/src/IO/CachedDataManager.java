@@ -0,0 +1,315 @@
+package IO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import Data.Instance;
+import Data.SparseVector;
+
+/**
+ * Streams the instances of another data manager in the first epoch and keeps
+ * them, so that the following epochs replay the data without parsing it
+ * again. The instances are stored in slabs as in {@link Data.SparseTable}
+ * until the store reaches {@code memoryBudget} bytes; all later instances are
+ * appended to a temporary file and read back from there:
+ *
+ * <pre>
+ * int numOfLabels, int labels[numOfLabels],
+ * int numOfFeatures, int indices[numOfFeatures], float values[numOfFeatures]
+ * </pre>
+ *
+ * The cache is only used after the first epoch has been read to the end; a
+ * reset before that restarts the source. A copy of a complete cache shares its
+ * store, and the temporary file is deleted when the manager that wrote it is
+ * closed.
+ */
+public class CachedDataManager extends DataManager {
+	public static final long defaultMemoryBudget = 1L << 30;
+
+	protected DataManager source = null;
+	protected long memoryBudget = defaultMemoryBudget;
+	protected Cache cache = null;
+	protected boolean owner = true;
+
+	protected int nFeatures = 0;
+	protected int nLabels = 0;
+
+	// the cursor of the replay
+	protected boolean replaying = false;
+	protected int current = 0;
+	protected int currentSpilled = 0;
+	protected DataInputStream spilled = null;
+
+	public CachedDataManager(DataManager source, long memoryBudget) {
+		this.source = source;
+		this.memoryBudget = memoryBudget;
+		this.cache = new Cache(memoryBudget);
+		this.nFeatures = source.getNumberOfFeatures();
+		this.nLabels = source.getNumberOfLabels();
+	}
+
+	protected CachedDataManager(Cache cache, int nFeatures, int nLabels) {
+		this.cache = cache;
+		this.memoryBudget = cache.memoryBudget;
+		this.owner = false;
+		this.replaying = true;
+		this.nFeatures = nFeatures;
+		this.nLabels = nLabels;
+	}
+
+	/**
+	 * Instances of one pass over the source.
+	 */
+	protected static class Cache {
+		protected static final int blockSize = 1 << 20;
+
+		protected long memoryBudget = 0;
+		protected long memory = 0;
+		protected boolean complete = false;
+
+		protected int numOfRows = 0;
+		protected int[] rowBlocks = new int[1024];
+		protected int[] rowStarts = new int[1024];
+		protected int[] rowEnds = new int[1024];
+		protected int[][] labels = new int[1024][];
+		protected List<int[]> indexBlocks = new ArrayList<int[]>();
+		protected List<float[]> valueBlocks = new ArrayList<float[]>();
+		protected int blockEnd = 0;
+
+		protected File spillFile = null;
+		protected DataOutputStream spillOut = null;
+		protected int numOfSpilled = 0;
+
+		public Cache(long memoryBudget) {
+			this.memoryBudget = memoryBudget;
+		}
+
+		public void add(Instance instance) throws IOException {
+			if ((this.numOfSpilled > 0) || !this.addToMemory(instance))
+				this.spill(instance);
+		}
+
+		/**
+		 * @return False if the instance does not fit into the budget.
+		 */
+		protected boolean addToMemory(Instance instance) {
+			SparseVector x = instance.x;
+			int size = x.size();
+			int numOfBlocks = this.indexBlocks.size();
+			boolean newBlock = (numOfBlocks == 0) || (this.blockEnd + size > this.indexBlocks.get(numOfBlocks - 1).length);
+			// the row arrays and the object header of the labels
+			long bytes = 3 * 4 + 16 + 4L * instance.y.length;
+			if (newBlock)
+				bytes += 8L * Math.max(blockSize, size);
+			if (this.memory + bytes > this.memoryBudget)
+				return false;
+
+			if (newBlock) {
+				int length = Math.max(blockSize, size);
+				this.indexBlocks.add(new int[length]);
+				this.valueBlocks.add(new float[length]);
+				this.blockEnd = 0;
+				numOfBlocks++;
+			}
+			if (this.numOfRows == this.rowBlocks.length) {
+				int length = 2 * this.numOfRows;
+				this.rowBlocks = Arrays.copyOf(this.rowBlocks, length);
+				this.rowStarts = Arrays.copyOf(this.rowStarts, length);
+				this.rowEnds = Arrays.copyOf(this.rowEnds, length);
+				this.labels = Arrays.copyOf(this.labels, length);
+			}
+
+			System.arraycopy(x.indices, x.start, this.indexBlocks.get(numOfBlocks - 1), this.blockEnd, size);
+			System.arraycopy(x.values, x.start, this.valueBlocks.get(numOfBlocks - 1), this.blockEnd, size);
+			this.rowBlocks[this.numOfRows] = numOfBlocks - 1;
+			this.rowStarts[this.numOfRows] = this.blockEnd;
+			this.rowEnds[this.numOfRows] = this.blockEnd + size;
+			this.labels[this.numOfRows] = instance.y;
+			this.blockEnd += size;
+			this.numOfRows++;
+			this.memory += bytes;
+			return true;
+		}
+
+		protected void spill(Instance instance) throws IOException {
+			if (this.spillOut == null) {
+				this.spillFile = File.createTempFile("xmlc-cache", ".bin");
+				this.spillFile.deleteOnExit();
+				this.spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spillFile),
+						1 << 16));
+				logger.info("#### The data cache exceeds " + (this.memoryBudget >> 20) + " MB after "
+						+ this.numOfRows + " instances, spilling to " + this.spillFile);
+			}
+			DataOutputStream out = this.spillOut;
+			out.writeInt(instance.y.length);
+			for (int label : instance.y) {
+				out.writeInt(label);
+			}
+			SparseVector x = instance.x;
+			out.writeInt(x.size());
+			for (int i = x.start; i < x.end; i++) {
+				out.writeInt(x.indices[i]);
+			}
+			for (int i = x.start; i < x.end; i++) {
+				out.writeFloat(x.values[i]);
+			}
+			this.numOfSpilled++;
+		}
+
+		public void finish() throws IOException {
+			if (this.spillOut != null) {
+				this.spillOut.close();
+				this.spillOut = null;
+			}
+			this.complete = true;
+			logger.info("#### Cached " + this.numOfRows + " instances in memory (" + (this.memory >> 20) + " MB), "
+					+ this.numOfSpilled + " in " + ((this.spillFile != null) ? this.spillFile : "no file"));
+		}
+
+		public Instance getRow(int i) {
+			int block = this.rowBlocks[i];
+			return new Instance(new SparseVector(this.indexBlocks.get(block), this.valueBlocks.get(block),
+					this.rowStarts[i], this.rowEnds[i]), this.labels[i]);
+		}
+
+		public void delete() {
+			try {
+				if (this.spillOut != null) {
+					this.spillOut.close();
+					this.spillOut = null;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (this.spillFile != null)
+				this.spillFile.delete();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (this.replaying)
+			return (this.current < this.cache.numOfRows) || (this.currentSpilled < this.cache.numOfSpilled);
+
+		if (this.source.hasNext())
+			return true;
+		if (!this.cache.complete) {
+			try {
+				this.cache.finish();
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot write the data cache", e);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Instance getNextInstance() {
+		try {
+			if (this.replaying) {
+				if (this.current < this.cache.numOfRows)
+					return this.cache.getRow(this.current++);
+				return this.readSpilled();
+			}
+
+			Instance instance = this.source.getNextInstance();
+			this.cache.add(instance);
+			return instance;
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot access the data cache", e);
+		}
+	}
+
+	protected Instance readSpilled() throws IOException {
+		if (this.spilled == null)
+			this.spilled = new DataInputStream(new BufferedInputStream(new FileInputStream(this.cache.spillFile),
+					1 << 16));
+		DataInputStream in = this.spilled;
+		int[] y = new int[in.readInt()];
+		for (int i = 0; i < y.length; i++) {
+			y[i] = in.readInt();
+		}
+		int size = in.readInt();
+		int[] indices = new int[size];
+		float[] values = new float[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = in.readInt();
+		}
+		for (int i = 0; i < size; i++) {
+			values[i] = in.readFloat();
+		}
+		this.currentSpilled++;
+		return new Instance(new SparseVector(indices, values), y);
+	}
+
+	@Override
+	public int getNumberOfFeatures() {
+		return this.nFeatures;
+	}
+
+	@Override
+	public int getNumberOfLabels() {
+		return this.nLabels;
+	}
+
+	@Override
+	public void setInputStream(InputStreamReader input) {
+
+	}
+
+	@Override
+	public void reset() {
+		this.closeSpilled();
+		this.current = 0;
+		this.currentSpilled = 0;
+		if (this.replaying)
+			return;
+
+		if (this.cache.complete) {
+			// the source is not needed anymore
+			this.source.close();
+			this.replaying = true;
+		} else {
+			this.cache.delete();
+			this.cache = new Cache(this.memoryBudget);
+			this.source.reset();
+		}
+	}
+
+	@Override
+	public DataManager getCopy() {
+		if (this.cache.complete)
+			return new CachedDataManager(this.cache, this.nFeatures, this.nLabels);
+		return new CachedDataManager(this.source.getCopy(), this.memoryBudget);
+	}
+
+	@Override
+	public void close() {
+		this.closeSpilled();
+		if (this.source != null)
+			this.source.close();
+		if (this.owner)
+			this.cache.delete();
+	}
+
+	protected void closeSpilled() {
+		if (this.spilled != null) {
+			try {
+				this.spilled.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			this.spilled = null;
+		}
+	}
+}
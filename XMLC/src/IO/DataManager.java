@@ -27,6 +27,12 @@ public abstract class DataManager {
 			datamanager = new BatchDataManager(filename);
 		else if (datamanagertype.compareTo("Online") == 0)
 			datamanager = new OnlineDataManager(filename);
+		else if (datamanagertype.compareTo("Mapped") == 0)
+			datamanager = new MappedDataManager(filename);
+		else if (datamanagertype.compareTo("ParallelOnline") == 0)
+			datamanager = new ParallelOnlineDataManager(filename);
+		else if (datamanagertype.compareTo("Cached") == 0)
+			datamanager = new CachedDataManager(new OnlineDataManager(filename), CachedDataManager.defaultMemoryBudget);
 		else {
 			System.err.println("Unknown data manager");
 			System.exit(-1);
@@ -35,4 +41,28 @@ public abstract class DataManager {
 		return datamanager;		
 		
 	}
+
+	/**
+	 * Creates the "DataManagerType" of the properties (default "Online"); a
+	 * "ParallelOnline" manager uses "parserThreads" parsers and keeps the order
+	 * of the file unless "orderedParsing" is false. A "Cached" manager reads the
+	 * first epoch with a "cachedDataManagerType" manager (default "Online") and
+	 * keeps up to "cacheMemoryMB" MB of the instances in memory.
+	 */
+	public static DataManager managerFactory(String filename, Properties properties) {
+		String datamanagertype = properties.getProperty("DataManagerType", "Online");
+		if (datamanagertype.compareTo("ParallelOnline") == 0) {
+			int parserThreads = Integer.parseInt(properties.getProperty("parserThreads",
+					Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors() - 1))));
+			boolean ordered = Boolean.parseBoolean(properties.getProperty("orderedParsing", "true"));
+			return new ParallelOnlineDataManager(filename, parserThreads, ordered);
+		} else if (datamanagertype.compareTo("Cached") == 0) {
+			Properties sourceProperties = new Properties(properties);
+			sourceProperties.setProperty("DataManagerType", properties.getProperty("cachedDataManagerType", "Online"));
+			long memoryBudget = Long.parseLong(properties.getProperty("cacheMemoryMB",
+					Long.toString(CachedDataManager.defaultMemoryBudget >> 20))) << 20;
+			return new CachedDataManager(managerFactory(filename, sourceProperties), memoryBudget);
+		}
+		return managerFactory(filename, datamanagertype);
+	}
 }
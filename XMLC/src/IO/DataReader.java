@@ -1,13 +1,11 @@
 package IO;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.StringTokenizer;
 import java.util.Vector;
 
 import org.slf4j.Logger;
@@ -16,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import Data.AVPair;
 import Data.AVTable;
 import Data.Instance;
+import Data.SparseTable;
 
 public class DataReader {
 	private static Logger logger = LoggerFactory.getLogger(DataReader.class);
@@ -47,7 +46,7 @@ public class DataReader {
 	{
 		logger.info( "Reading " + this.fileName + "..." );
 		
-		BufferedReader fp = new BufferedReader(new FileReader(this.fileName));
+		LibsvmParser parser = new LibsvmParser(this.fileName);
 		Vector<int[]> vy = new Vector<int[]>();
 		Vector<AVPair[]> vx = new Vector<AVPair[]>();
 		int max_feature_index = 0;
@@ -59,69 +58,39 @@ public class DataReader {
 		//
 		int ni = 0, di = 0, mi = 0;		
 		if (this.initialline){
-			String line = fp.readLine();
-			String[] tokens = line.split(" ");
-						
-			ni = Integer.parseInt(tokens[0]);
-			di = Integer.parseInt(tokens[1]);
-			mi = Integer.parseInt(tokens[2]);
+			parser.readHeader();
+			ni = parser.n;
+			di = parser.d;
+			mi = parser.m;
 		}
 		
 		
-		while(true)
+		while(parser.next())
 		{
-			String line = fp.readLine();
-			if(line == null) break;
-			
-			line = line.replace(",", " " );
-			StringTokenizer st = new StringTokenizer(line," \t\n\r\f");			
-			int m = st.countTokens();
-			String[] stArr = new String[m];
-			
-			int numOfFeatures = 0;
-			int numOfLabels = 0;
-			for(int j=0;j<m;j++)
-			{
-				stArr[j] = st.nextToken();
-				if (stArr[j].contains(":") ) numOfFeatures++;
-				else numOfLabels++;
-			}
-			
-			
-												
-			AVPair[] x = new AVPair[numOfFeatures];
-			int[] y = new int[numOfLabels];
-			int indexx = 0;
-			int indexy = 0;
-			for(int j=0;j<m;j++)
+			AVPair[] x = new AVPair[parser.numOfFeatures];
+			for(int j=0;j<parser.numOfFeatures;j++)
 			{
-				String[] tokens = stArr[j].split(":");
-				//logger.info( stArr[j] );
-				if ( tokens.length == 1 ) {  // label
-					//logger.info( tokens[0].replace(",", "") );					
-					y[indexy]= Integer.parseInt(tokens[0].replace(",", ""));
-					if (additionalStat)
-						hashsetLabels.add(y[indexy]);
-					indexy++;
-				} else {  // features
-					x[indexx] = new AVPair();
-					x[indexx].index = Integer.parseInt(tokens[0])-1;         // the indexing starts at 0
-					if (additionalStat) 
-						hashsetFeatures.add(x[indexx].index);
-					x[indexx++].value = Double.parseDouble(tokens[1]);							
-				}
+				x[j] = new AVPair();
+				x[j].index = parser.indices[j];
+				x[j].value = parser.values[j];
+				if (additionalStat) 
+					hashsetFeatures.add(x[j].index);
 			}
+			int[] y = Arrays.copyOf(parser.labels, parser.numOfLabels);
+			if (additionalStat)
+				for(int label : y)
+					hashsetLabels.add(label);
 			
 			Arrays.sort(y);
 			
-			if(indexx>0) max_feature_index = Math.max(max_feature_index, x[indexx-1].index);
-			if(indexy>0) max_label_index = Math.max(max_label_index, y[indexy-1]);
+			if(x.length>0) max_feature_index = Math.max(max_feature_index, x[x.length-1].index);
+			if(y.length>0) max_label_index = Math.max(max_label_index, y[y.length-1]);
 									
 			vy.addElement(y);
 			vx.addElement(x);
 		}
 		
-		fp.close();
+		parser.close();
 		
 		AVTable data = new AVTable();
 		data.n = vy.size();
@@ -173,6 +142,83 @@ public class DataReader {
 		return data;
 	}
 
+
+	/**
+	 * Reads the data file into a {@link SparseTable}. The lines are parsed the
+	 * same way as in {@link #read()}, but the features of all instances are
+	 * appended to two primitive slabs instead of one object per feature.
+	 */
+	public SparseTable readSparse() throws IOException
+	{
+		logger.info( "Reading " + this.fileName + "..." );
+		
+		LibsvmParser parser = new LibsvmParser(this.fileName);
+		ArrayList<int[]> vy = new ArrayList<int[]>();
+		int[] offsets = new int[1024];
+		int[] indices = new int[1 << 16];
+		float[] values = new float[1 << 16];
+		int nnz = 0;
+		int max_feature_index = 0;
+		int max_label_index = 0;
+
+		int ni = 0, di = 0, mi = 0;		
+		if (this.initialline){
+			parser.readHeader();
+			ni = parser.n;
+			di = parser.d;
+			mi = parser.m;
+		}
+		
+		while(parser.next())
+		{
+			while (nnz + parser.numOfFeatures > indices.length) {
+				indices = Arrays.copyOf(indices, 2 * indices.length);
+				values = Arrays.copyOf(values, 2 * values.length);
+			}
+			System.arraycopy(parser.indices, 0, indices, nnz, parser.numOfFeatures);
+			for(int j=0;j<parser.numOfFeatures;j++) {
+				values[nnz + j] = (float) parser.values[j];
+				max_feature_index = Math.max(max_feature_index, parser.indices[j]);
+			}
+			nnz += parser.numOfFeatures;
+			
+			int[] y = Arrays.copyOf(parser.labels, parser.numOfLabels);
+			Arrays.sort(y);
+			if(y.length>0) max_label_index = Math.max(max_label_index, y[y.length-1]);
+			
+			vy.add(y);
+			if (vy.size() == offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+			offsets[vy.size()] = nnz;
+		}
+		
+		parser.close();
+		
+		SparseTable data = new SparseTable();
+		data.n = vy.size();
+		data.d = max_feature_index+1;
+		data.m = max_label_index+1;
+		
+		if (this.initialline){
+			if (data.n != ni) { 
+				logger.info("Number of line does not match with data given in the header");
+				System.exit(-1);
+			}
+			data.d = di;
+			data.m = mi;					
+		}
+		
+		data.y = vy.toArray(new int[data.n][]);
+		data.offsets = Arrays.copyOf(offsets, data.n + 1);
+		data.indices = Arrays.copyOf(indices, nnz);
+		data.values = Arrays.copyOf(values, nnz);
+		
+		logger.info( "Done." );
+
+		logger.info( "    -->  num x dim: labels " 
+		           + data.n + " x "+ data.d + " : " + data.m );
+		
+		return data;
+	}
 		
 	class Pair {
 			
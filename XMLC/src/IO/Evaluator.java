@@ -2,11 +2,19 @@ package IO;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import Data.AVTable;
 import Data.EstimatePair;
 import Data.Instance;
+import Data.SparseVector;
 import Learner.AbstractLearner;
 
 public class Evaluator {
@@ -25,8 +34,9 @@ public class Evaluator {
 		logger.info("--> Computing Hamming loss and F-measure...");
 
 		double macroF = 0.0;
-		//int m = learner.getNumberOfLabels();
-		int m = data.m;
+		// the labels the model has not seen count as missed, not as skipped
+		int m = numberOfLabels(data, Math.max(data.m, learner.getNumberOfLabels()));
+		int unknownLabels = 0;
 		
 		int[] tp = new int[m];
 		int[] yloc = new int[m];
@@ -51,13 +61,13 @@ public class Evaluator {
 						
 			if ((data.y[i] != null) || (data.y[i].length >= 0) ) {				
 				for(int trueLabel: data.y[i]) {
-					if (trueLabel < m ) { // this label was seen in the training
-						if(predictedLabels.contains(trueLabel)) {
-							tploc++;
-						} else {
-							fnloc++;
-						}
+					if(predictedLabels.contains(trueLabel)) {
+						tploc++;
+					} else {
+						fnloc++;
 					}
+					if (trueLabel >= learner.getNumberOfLabels())
+						unknownLabels++;
 				}			
 			}
 			fploc = predpositloc - tploc;
@@ -67,8 +77,6 @@ public class Evaluator {
 			// F-score
 			if ((data.y[i] != null) && (data.y[i].length > 0) ) {
 				for(int trueLabel: data.y[i]) {
-					if (trueLabel>= m) continue; // this label is not seen in the training
-					
 					if(predictedLabels.contains(trueLabel)) {
 						tp[trueLabel]++;
 					}
@@ -93,13 +101,15 @@ public class Evaluator {
 			
 		}
 				
+		if (unknownLabels > 0)
+			logger.info("--> " + unknownLabels + " true labels are unknown to the model");
 		HL = HL / ((double)data.n);
 		double normalizedHL = (HL / (double)m);
 		
 		
 		int presentedlabels = 0;
 		int presentedOrForecasted = 0;		
-		for(int i = 0; i < data.m; i++) {			
+		for(int i = 0; i < m; i++) {			
 			int denum =  (yloc[i] + haty[i]);
 			
 			if (yloc[i]>0)
@@ -114,25 +124,25 @@ public class Evaluator {
 			}
 		}
 						
-		double normalizedmacroF = macroF/data.m;
+		double normalizedmacroF = macroF/m;
 		
 		TreeMap<String,Double> arr = new TreeMap<String,Double>();
 		arr.put(" Hamming loss", HL);
 		arr.put(" macro F-measure", macroF);
 		arr.put(" Presented Label", macroF);
 		
-		arr.put( " m (d1)", (double) data.m);
+		arr.put( " m (d1)", (double) m);
 		arr.put( " presented (d2)", (double) presentedlabels);
 		arr.put( " presented and forecasted (d3)", (double) presentedOrForecasted);
 		
 		arr.put( " unormalized Fscore with 1 (e1)", macroF);
 		arr.put( " unormalized Fscore with 0 (e2)", macroF-presentedOrForecasted );
 		
-		arr.put( " e1/d1", macroF / data.m );
+		arr.put( " e1/d1", macroF / m );
 		arr.put( " e1/d2", macroF / presentedlabels );
 		arr.put( " e1/d3", macroF / presentedOrForecasted );
 
-		arr.put( " e2/d1", ( macroF - presentedOrForecasted) / data.m );
+		arr.put( " e2/d1", ( macroF - presentedOrForecasted) / m );
 		arr.put( " e2/d2", ( macroF - presentedOrForecasted) / presentedlabels );
 		arr.put( " e2/d3", ( macroF - presentedOrForecasted) / presentedOrForecasted );
 		
@@ -146,94 +156,182 @@ public class Evaluator {
 
     }
 
+    /**
+     * Number of instances scored together by {@link AbstractLearner#predictTopK}.
+     */
+    public static int blockSize = 1024;
+
     public static TreeMap<String,Double> computePrecisionAtk(AbstractLearner learner, DataManager data, int k) {
-    	double[] precisionatK = new double[k];
-    	int numOfInstance = 0;
-    	//int [] numLabels = new int [data.m];
-    	while( data.hasNext() == true ) {    	
+    	return computePrecisionAtk(learner, data, k, 1);
+    }
+
+    /**
+     * Precision@k computed by {@code numOfThreads} workers. The data is read
+     * on the calling thread and handed over in blocks; every worker keeps its
+     * own hit counts which are merged at the end. Since only integer counts
+     * are summed, the result does not depend on the number of workers. The
+     * learner has to be safe for concurrent prediction.
+     */
+    public static TreeMap<String,Double> computePrecisionAtk(AbstractLearner learner, DataManager data, int k, int numOfThreads) {
+    	PrecisionAtK result = new PrecisionAtK(learner, k);
+
+    	if (numOfThreads <= 1) {
+    		while( data.hasNext() == true ) {
+    			EvaluationBlock block = readBlock(data);
+    			result.add(block);
+    			logProgress(result.numOfInstances, block.n);
+    		}
+    		return result.toMap();
+    	}
+
+    	BlockingQueue<EvaluationBlock> queue = new ArrayBlockingQueue<EvaluationBlock>(2 * numOfThreads);
+    	ExecutorService workers = Executors.newFixedThreadPool(numOfThreads);
+    	List<Future<PrecisionAtK>> partialResults = new ArrayList<Future<PrecisionAtK>>();
+    	for( int i = 0; i < numOfThreads; i++ ) {
+    		partialResults.add(workers.submit(new PrecisionAtKWorker(learner, k, queue)));
+    	}
+
+    	try {
+    		long numOfInstances = 0;
+    		while( data.hasNext() == true ) {
+    			EvaluationBlock block = readBlock(data);
+    			queue.put(block);
+    			numOfInstances += block.n;
+    			logProgress(numOfInstances, block.n);
+    		}
+    		for( int i = 0; i < numOfThreads; i++ ) {
+    			queue.put(EvaluationBlock.end);
+    		}
+
+    		for (Future<PrecisionAtK> partialResult : partialResults) {
+    			result.merge(partialResult.get());
+    		}
+    	} catch (InterruptedException | ExecutionException e) {
+    		throw new IllegalStateException("Parallel evaluation failed", e);
+    	} finally {
+    		workers.shutdownNow();
+    	}
+
+    	return result.toMap();
+    }
+
+    protected static EvaluationBlock readBlock(DataManager data) {
+    	EvaluationBlock block = new EvaluationBlock(blockSize);
+    	while( (block.n < blockSize) && (data.hasNext() == true) ) {
     		Instance instance  = data.getNextInstance();
-    		numOfInstance++;
-    		
-    		TreeSet<EstimatePair> predictedLabels = learner.getTopKEstimates(instance.x, k); //.getPositiveLabelsAndPosteriors(data.x[i]);
-    		
-    		
-    		HashSet<Integer> trueLabels = new HashSet<Integer>();
-			
-			for(int m = 0; m < instance.y.length; m++) {
-				trueLabels.add(instance.y[m]);
-				//numLabels[data.y[i][m]]++;
-			}
-			
-    		
-    		//Hashtable<Integer,Integer> topklabel = new Hashtable<>();
-    		//for( int j = 0; j < k; j++ ){
-    		//	if ( predictedLabels.isEmpty() ) break;
-    		//	ComparablePair p = predictedLabels.poll();
-    		//	topklabel.put(p.getValue(), j);
-    		//}
-    		
-    		//for( int j = 0; j < k; j++ ) iscorrectprediction[j] = 0;
+    		block.xs[block.n] = instance.x;
+    		block.ys[block.n] = instance.y;
+    		block.n++;
+    	}
+    	return block;
+    }
 
-			int[] iscorrectprediction = new int[k];
-	    	int[] nunmofcorrectpredictionuptok = new int[k];
-	    	
-			int index = 0;
-			while(!predictedLabels.isEmpty()) {
-				
-				EstimatePair eP = predictedLabels.pollFirst();
-				
-				int label = eP.getLabel();
-				double p = eP.getP();
-				
-				//logger.info(index + " label: " + label + " p: " + p);
-				
-				if(trueLabels.contains(label)) {
-					iscorrectprediction[index]++;
-				}
-				
-				index++;
-				
-			}
-			
-			nunmofcorrectpredictionuptok[0] = iscorrectprediction[0];
-			for( int j = 1; j < k; j++ ) {
-				nunmofcorrectpredictionuptok[j] = nunmofcorrectpredictionuptok[j-1] + iscorrectprediction[j];
-			}
-			
-			for( int j = 0; j < k; j++ ) {
-				precisionatK[j] += (nunmofcorrectpredictionuptok[j] / ((double) (j+1)));
-			}			
+    protected static void logProgress(long numOfInstances, int lastBlock) {
+    	if ((numOfInstances / 100000) != ((numOfInstances - lastBlock) / 100000)) {
+    		logger.info( "----->\t Prec@ computation: "+ numOfInstances  );
 
-			
-			if ((numOfInstance % 100000) == 0) {
-				logger.info( "----->\t Prec@ computation: "+ numOfInstance  );
-				
-				DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-				Date date = new Date();
-				logger.info("\t\t" + dateFormat.format(date));								
-			}
-			
-			
+    		DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+    		Date date = new Date();
+    		logger.info("\t\t" + dateFormat.format(date));
     	}
-		
-		
-    	
-		for( int j = 0; j < k; j++ ) {
-			precisionatK[j] /= ((double) numOfInstance);
-		}
-    	
-    	
-		//for(int i = 0; i < numLabels.length; i++) {
-		//	logger.info("Label: " + i + " num: " + numLabels[i]);
-		//}
-		//logger.info("Num instances: " + data.n);
-		
-		TreeMap<String,Double> arr = new TreeMap<String,Double>();
-		for(int i=0; i < k; i++){
-			arr.put( "PrecAtK["+(i+1)+"]", precisionatK[i] );
-		}
-		
-    	return arr;
+    }
+
+    protected static class EvaluationBlock {
+    	protected static final EvaluationBlock end = new EvaluationBlock(0);
+
+    	public SparseVector[] xs;
+    	public int[][] ys;
+    	public int n = 0;
+
+    	public EvaluationBlock(int size) {
+    		this.xs = new SparseVector[size];
+    		this.ys = new int[size][];
+    	}
+    }
+
+    /**
+     * Hit counts of the top k predictions; numOfCorrect[j] is the number of
+     * true labels among the first j+1 predictions summed over the instances.
+     */
+    protected static class PrecisionAtK {
+    	protected AbstractLearner learner;
+    	protected int k;
+    	protected long[] numOfCorrect;
+    	protected long numOfInstances = 0;
+
+    	protected int[][] predictedLabels = null;
+    	protected float[][] predictedScores = null;
+
+    	public PrecisionAtK(AbstractLearner learner, int k) {
+    		this.learner = learner;
+    		this.k = k;
+    		this.numOfCorrect = new long[k];
+    	}
+
+    	public void add(EvaluationBlock block) {
+    		if (this.predictedLabels == null) {
+    			this.predictedLabels = new int[blockSize][this.k];
+    			this.predictedScores = new float[blockSize][this.k];
+    		}
+    		this.learner.predictTopK(block.xs, block.n, this.k, this.predictedLabels, this.predictedScores);
+
+    		for( int i = 0; i < block.n; i++ ) {
+    			int numOfCorrectUpToJ = 0;
+    			for( int j = 0; j < this.k; j++ ) {
+    				if (isTrueLabel(block.ys[i], this.predictedLabels[i][j])) {
+    					numOfCorrectUpToJ++;
+    				}
+    				this.numOfCorrect[j] += numOfCorrectUpToJ;
+    			}
+    		}
+    		this.numOfInstances += block.n;
+    	}
+
+    	public void merge(PrecisionAtK other) {
+    		for( int j = 0; j < this.k; j++ ) {
+    			this.numOfCorrect[j] += other.numOfCorrect[j];
+    		}
+    		this.numOfInstances += other.numOfInstances;
+    	}
+
+    	public TreeMap<String,Double> toMap() {
+    		TreeMap<String,Double> arr = new TreeMap<String,Double>();
+    		for(int i=0; i < this.k; i++){
+    			arr.put( "PrecAtK["+(i+1)+"]", this.numOfCorrect[i] / ((double) (i+1) * this.numOfInstances) );
+    		}
+    		return arr;
+    	}
+    }
+
+    protected static class PrecisionAtKWorker implements Callable<PrecisionAtK> {
+    	protected PrecisionAtK result;
+    	protected BlockingQueue<EvaluationBlock> queue;
+
+    	public PrecisionAtKWorker(AbstractLearner learner, int k, BlockingQueue<EvaluationBlock> queue) {
+    		this.result = new PrecisionAtK(learner, k);
+    		this.queue = queue;
+    	}
+
+    	@Override
+    	public PrecisionAtK call() throws Exception {
+    		while (true) {
+    			EvaluationBlock block = this.queue.take();
+    			if (block == EvaluationBlock.end)
+    				break;
+    			this.result.add(block);
+    		}
+    		return this.result;
+    	}
+    }
+
+    protected static boolean isTrueLabel(int[] trueLabels, int label) {
+    	if (label < 0)
+    		return false;
+    	for (int trueLabel : trueLabels) {
+    		if (trueLabel == label)
+    			return true;
+    	}
+    	return false;
     }
 
     /* 
@@ -295,11 +393,12 @@ public class Evaluator {
 		logger.info("--> Computing Hamming loss and F-measure...");
 
 		double macroF = 0.0;
+		int m = numberOfLabels(data, positiveLabelsArray);
 		
 		
-		int[] tp = new int[data.m];
-		int[] yloc = new int[data.m];
-		int[] haty = new int[data.m];
+		int[] tp = new int[m];
+		int[] yloc = new int[m];
+		int[] haty = new int[m];
 		
 		double HL = 0.0;
 		
@@ -320,12 +419,10 @@ public class Evaluator {
 						
 			if ((data.y[i] != null) || (data.y[i].length >= 0) ) {				
 				for(int trueLabel: data.y[i]) {
-					if (trueLabel < data.m ) { // this label was seen in the training
-						if(predictedLabels.contains(trueLabel)) {
-							tploc++;
-						} else {
-							fnloc++;
-						}
+					if(predictedLabels.contains(trueLabel)) {
+						tploc++;
+					} else {
+						fnloc++;
 					}
 				}			
 			}
@@ -336,8 +433,6 @@ public class Evaluator {
 			// F-score
 			if ((data.y[i] != null) && (data.y[i].length > 0) ) {
 				for(int trueLabel: data.y[i]) {
-					if (trueLabel>= data.m) continue; // this label is not seen in the training
-					
 					if(predictedLabels.contains(trueLabel)) {
 						tp[trueLabel]++;
 					}
@@ -363,12 +458,12 @@ public class Evaluator {
 		}
 				
 		HL = HL / ((double)data.n);
-		double normalizedHL = (HL / (double)data.m);
+		double normalizedHL = (HL / (double)m);
 		double macroF0 = 0.0;
 
 		int presentedlabels = 0;
 		int presentedOrForecasted = 0;		
-		for(int i = 0; i < data.m; i++) {			
+		for(int i = 0; i < m; i++) {			
 			int denum =  (yloc[i] + haty[i]);
 			
 			if (yloc[i]>0)
@@ -384,7 +479,7 @@ public class Evaluator {
 			}
 		}
 						
-		double normalizedmacroF = macroF/data.m;
+		double normalizedmacroF = macroF/m;
 		
 		
 		TreeMap<String,Double> arr = new TreeMap<String,Double>();
@@ -392,18 +487,18 @@ public class Evaluator {
 		arr.put(" macro F-measure", macroF);
 		//arr.put(" Presented Label", macroF);
 		
-		arr.put( " m (d1)", (double) data.m);
+		arr.put( " m (d1)", (double) m);
 		arr.put( " presented (d2)", (double) presentedlabels);
 		arr.put( " presented and forecasted (d3)", (double) presentedOrForecasted);
 		
 		arr.put( " unormalized Fscore with 1 (e1)", macroF);
 		arr.put( " unormalized Fscore with 0 (e2)", macroF0 );
 		
-		arr.put( " e1/d1", macroF / data.m );
+		arr.put( " e1/d1", macroF / m );
 		arr.put( " e1/d2", macroF / presentedlabels );
 		arr.put( " e1/d3", macroF / presentedOrForecasted );
 
-		arr.put( " e2/d1", macroF0  / data.m );
+		arr.put( " e2/d1", macroF0  / m );
 		arr.put( " e2/d2", macroF0 / presentedlabels );
 		arr.put( " e2/d3", macroF0 / presentedOrForecasted );
 		
@@ -423,12 +518,13 @@ public class Evaluator {
     public static double[] computeFscores(HashSet<Integer>[] positiveLabelsArray, AVTable data) {
 		logger.info("--> Computing Hamming loss and F-measure...");
 
-		double[] Fscores = new double[data.m];
+		int m = numberOfLabels(data, positiveLabelsArray);
+		double[] Fscores = new double[m];
 		
 		
-		int[] tp = new int[data.m];
-		int[] yloc = new int[data.m];
-		int[] haty = new int[data.m];
+		int[] tp = new int[m];
+		int[] yloc = new int[m];
+		int[] haty = new int[m];
 		
 		int numOfPositives = 0;
 		
@@ -444,8 +540,6 @@ public class Evaluator {
 			// F-score
 			if ((data.y[i] != null) && (data.y[i].length > 0) ) {
 				for(int trueLabel: data.y[i]) {
-					if (trueLabel>= data.m) continue; // this label is not seen in the training
-					
 					if(predictedLabels.contains(trueLabel)) {
 						tp[trueLabel]++;
 					}
@@ -471,7 +565,7 @@ public class Evaluator {
 		}
 				
 		int presentedlabels = 0;
-		for(int i = 0; i < data.m; i++) {
+		for(int i = 0; i < m; i++) {
 			int denum =  (yloc[i] + haty[i]);
 			if ( denum == 0) 
 			{
@@ -485,7 +579,37 @@ public class Evaluator {
 		return Fscores;
 
     }
-    
+
+	/**
+	 * @return The number of labels to evaluate: at least {@code m}, and
+	 *         enough for every true label of {@code data}.
+	 */
+	protected static int numberOfLabels(AVTable data, int m) {
+		m = Math.max(m, data.m);
+		for (int i = 0; i < data.n; i++) {
+			if (data.y[i] != null) {
+				for (int label : data.y[i]) {
+					m = Math.max(m, label + 1);
+				}
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * @return The number of labels to evaluate: enough for every true and
+	 *         every predicted label.
+	 */
+	protected static int numberOfLabels(AVTable data, HashSet<Integer>[] positiveLabelsArray) {
+		int m = 0;
+		for (HashSet<Integer> predictedLabels : positiveLabelsArray) {
+			for (int label : predictedLabels) {
+				m = Math.max(m, label + 1);
+			}
+		}
+		return numberOfLabels(data, m);
+	}
+
 	public static void main(String[] args) {
 		// TODO Auto-generated method stub
 
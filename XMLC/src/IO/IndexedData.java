@@ -0,0 +1,15 @@
+package IO;
+
+import Data.Instance;
+
+/**
+ * A data manager whose instances can be read in any order.
+ */
+public interface IndexedData {
+	/**
+	 * @return The number of instances.
+	 */
+	public int size();
+
+	public Instance getInstance(int i);
+}
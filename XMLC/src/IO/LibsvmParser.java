@@ -0,0 +1,339 @@
+package IO;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import Data.Instance;
+import Data.SparseVector;
+
+/**
+ * Parses a data file in the libsvm format directly from the bytes read from
+ * a {@link FileChannel}, without creating a {@code String} per line or token.
+ * A line holds the labels and the {@code index:value} features separated by
+ * white space or commas; the feature indices start at one in the file and at
+ * zero in the parsed data. Every line is an instance, empty lines included.
+ *
+ * {@link #next()} parses the next line into reusable buffers:
+ * {@code labels[0..numOfLabels)} (in the order of the file) and
+ * {@code indices, values [0..numOfFeatures)}. The values are the same as
+ * {@code Double.parseDouble(token)}: numbers with at most 18
+ * significant digits and a small exponent are converted exactly with one
+ * double operation, others fall back to {@link Double#parseDouble(String)}.
+ */
+public class LibsvmParser implements Closeable {
+	protected static final double[] powersOfTen = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	protected static final boolean[] isSeparator = new boolean[256];
+	static {
+		isSeparator[' '] = true;
+		isSeparator[','] = true;
+		isSeparator['\t'] = true;
+		isSeparator['\r'] = true;
+		isSeparator['\f'] = true;
+	}
+
+	protected FileChannel channel = null;
+	protected ByteBuffer buffer = null;
+	protected byte[] bytes = null;
+	// the unparsed bytes are bytes[position..limit)
+	protected int position = 0;
+	protected int limit = 0;
+	// bytes[position..linesEnd) are complete lines
+	protected int linesEnd = 0;
+	protected boolean endOfFile = false;
+	protected long lineNumber = 0;
+
+	// the fields of the header line
+	public int n = 0;
+	public int d = 0;
+	public int m = 0;
+
+	// the current line
+	public int[] labels = new int[16];
+	public int numOfLabels = 0;
+	public int[] indices = new int[256];
+	public double[] values = new double[256];
+	public int numOfFeatures = 0;
+
+	public LibsvmParser(String fileName) throws IOException {
+		this(fileName, 1 << 20);
+	}
+
+	public LibsvmParser(String fileName, int bufferSize) throws IOException {
+		this.channel = new FileInputStream(fileName).getChannel();
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.bytes = this.buffer.array();
+	}
+
+	/**
+	 * Parses the lines of {@code bytes[0..length)} instead of a file. The
+	 * last line may lack its newline if the array has room for one more byte.
+	 */
+	public LibsvmParser(byte[] bytes, int length) {
+		this.setChunk(bytes, length);
+	}
+
+	/**
+	 * Continues with the lines of {@code bytes[0..length)}, see
+	 * {@link #LibsvmParser(byte[], int)}.
+	 */
+	public void setChunk(byte[] bytes, int length) {
+		this.bytes = bytes;
+		this.position = 0;
+		this.limit = length;
+		this.linesEnd = 0;
+		this.endOfFile = true;
+	}
+
+	/**
+	 * Reads the header line "n d m".
+	 */
+	public void readHeader() throws IOException {
+		if (!this.next() || (this.numOfLabels < 3)) {
+			throw new EOFException("No header line");
+		}
+		this.n = this.labels[0];
+		this.d = this.labels[1];
+		this.m = this.labels[2];
+	}
+
+	/**
+	 * Parses the next line.
+	 *
+	 * @return False at the end of the file.
+	 */
+	public boolean next() throws IOException {
+		if ((this.position >= this.linesEnd) && !this.fillLines())
+			return false;
+
+		this.numOfLabels = 0;
+		this.numOfFeatures = 0;
+		byte[] b = this.bytes;
+		int i = this.position;
+		// the line ends with a newline, which stops every scan below
+		while (true) {
+			while (isSeparator[b[i] & 0xFF]) {
+				i++;
+			}
+			if (b[i] == '\n')
+				break;
+
+			int start = i;
+			boolean negative = (b[i] == '-');
+			if (negative || (b[i] == '+'))
+				i++;
+			int digitsStart = i;
+			long number = 0;
+			int digit;
+			while ((digit = b[i] - '0') >= 0 && (digit <= 9)) {
+				number = 10 * number + digit;
+				i++;
+			}
+			if ((i == digitsStart) || (i - digitsStart > 9)) {
+				throw this.error(start);
+			}
+
+			if (b[i] == ':') { // feature
+				if (this.numOfFeatures == this.indices.length) {
+					this.indices = Arrays.copyOf(this.indices, 2 * this.indices.length);
+					this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+				}
+				this.indices[this.numOfFeatures] = (int) (negative ? -number : number) - 1;
+				i = this.parseValue(i + 1);
+				this.numOfFeatures++;
+			} else { // label
+				if (this.numOfLabels == this.labels.length)
+					this.labels = Arrays.copyOf(this.labels, 2 * this.labels.length);
+				this.labels[this.numOfLabels++] = (int) (negative ? -number : number);
+			}
+
+			if (!isSeparator[b[i] & 0xFF] && (b[i] != '\n')) {
+				throw this.error(start);
+			}
+		}
+
+		this.position = i + 1;
+		this.lineNumber++;
+		return true;
+	}
+
+	/**
+	 * Parses the value starting at {@code i} into {@code values[numOfFeatures]}
+	 * and returns the position after it.
+	 */
+	protected int parseValue(int i) {
+		byte[] b = this.bytes;
+		int start = i;
+		boolean negative = (b[i] == '-');
+		if (negative || (b[i] == '+'))
+			i++;
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean anyDigit = false;
+		int digit;
+		while ((digit = b[i] - '0') >= 0 && (digit <= 9)) {
+			if (digits < 18) {
+				mantissa = 10 * mantissa + digit;
+				if (mantissa > 0)
+					digits++;
+			} else {
+				exact = false;
+			}
+			anyDigit = true;
+			i++;
+		}
+		if (b[i] == '.') {
+			i++;
+			while ((digit = b[i] - '0') >= 0 && (digit <= 9)) {
+				if (digits < 18) {
+					mantissa = 10 * mantissa + digit;
+					if (mantissa > 0)
+						digits++;
+					exponent--;
+				} else {
+					exact = false;
+				}
+				anyDigit = true;
+				i++;
+			}
+		}
+		if (!anyDigit)
+			exact = false; // e.g. NaN or Infinity
+		if ((b[i] == 'e') || (b[i] == 'E')) {
+			i++;
+			boolean negativeExponent = (b[i] == '-');
+			if ((b[i] == '-') || (b[i] == '+'))
+				i++;
+			int e = 0;
+			int exponentStart = i;
+			while ((digit = b[i] - '0') >= 0 && (digit <= 9)) {
+				if (e < 100000)
+					e = 10 * e + digit;
+				i++;
+			}
+			if (i == exponentStart)
+				exact = false;
+			exponent += negativeExponent ? -e : e;
+		}
+
+		double value;
+		if (exact && (mantissa < (1L << 53)) && (exponent >= -22) && (exponent <= 22)) {
+			// both operands are exact, so the result is correctly rounded
+			value = (exponent < 0) ? mantissa / powersOfTen[-exponent] : mantissa * powersOfTen[exponent];
+		} else {
+			// take the whole token, e.g. NaN or Infinity
+			i = this.endOfToken(start);
+			value = Double.parseDouble(new String(b, start, i - start, StandardCharsets.US_ASCII));
+			negative = false; // the sign was parsed with the token
+		}
+		this.values[this.numOfFeatures] = negative ? -value : value;
+		return i;
+	}
+
+	protected int endOfToken(int i) {
+		while (!isSeparator[this.bytes[i] & 0xFF] && (this.bytes[i] != '\n')) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads until the buffer holds at least one complete line after
+	 * {@code position} and sets {@code linesEnd} behind the last complete
+	 * line. The buffer grows for lines longer than the buffer.
+	 *
+	 * @return False at the end of the file.
+	 */
+	protected boolean fillLines() throws IOException {
+		while (true) {
+			// the unparsed bytes of a file contain no newline
+			int searched = this.limit - this.position;
+			if (this.endOfFile) {
+				if (this.position < this.limit) {
+					// the last line has no newline, pretend it had one
+					if (this.bytes[this.limit - 1] != '\n') {
+						if (this.limit == this.bytes.length)
+							this.grow();
+						this.bytes[this.limit++] = '\n';
+					}
+					this.linesEnd = this.limit;
+					return true;
+				}
+				return false;
+			}
+			this.fill();
+			for (int i = this.limit - 1; i >= searched; i--) {
+				if (this.bytes[i] == '\n') {
+					this.linesEnd = i + 1;
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the unparsed bytes to the front of the buffer and reads more.
+	 */
+	protected void fill() throws IOException {
+		int remaining = this.limit - this.position;
+		if (remaining == this.bytes.length) {
+			this.grow();
+		} else if (this.position > 0) {
+			System.arraycopy(this.bytes, this.position, this.bytes, 0, remaining);
+		}
+		this.position = 0;
+		this.limit = remaining;
+
+		this.buffer.clear();
+		this.buffer.position(this.limit);
+		int read = this.channel.read(this.buffer);
+		if (read < 0)
+			this.endOfFile = true;
+		else
+			this.limit += read;
+	}
+
+	protected void grow() {
+		ByteBuffer larger = ByteBuffer.allocate(2 * this.bytes.length);
+		System.arraycopy(this.bytes, this.position, larger.array(), 0, this.limit - this.position);
+		this.limit -= this.position;
+		this.position = 0;
+		this.buffer = larger;
+		this.bytes = larger.array();
+	}
+
+	protected NumberFormatException error(int start) {
+		int tokenEnd = this.endOfToken(start);
+		return new NumberFormatException("Line " + (this.lineNumber + 1) + ": cannot parse \""
+				+ new String(this.bytes, start, tokenEnd - start, StandardCharsets.US_ASCII) + "\"");
+	}
+
+	/**
+	 * @return The current line as a new instance with sorted labels.
+	 */
+	public Instance getInstance() {
+		int[] y = Arrays.copyOf(this.labels, this.numOfLabels);
+		Arrays.sort(y);
+		float[] x = new float[this.numOfFeatures];
+		for (int i = 0; i < this.numOfFeatures; i++) {
+			x[i] = (float) this.values[i];
+		}
+		return new Instance(new SparseVector(Arrays.copyOf(this.indices, this.numOfFeatures), x), y);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null)
+			this.channel.close();
+	}
+}
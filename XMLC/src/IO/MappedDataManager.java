@@ -0,0 +1,134 @@
+package IO;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import Data.Instance;
+import Data.SparseVector;
+
+/**
+ * Serves the instances of a binary data file written by
+ * {@link BinaryDataConverter} directly from a memory mapping. Nothing is
+ * parsed after opening the file, and a reset only rewinds the cursor, so
+ * every epoch after the first one reads from the page cache.
+ */
+public class MappedDataManager extends DataManager implements IndexedData {
+	protected MappedFile file = null;
+
+	protected int n = 0;
+	protected int d = 0;
+	protected int m = 0;
+
+	protected long labelOffsetsStart = 0;
+	protected long featureOffsetsStart = 0;
+	protected long labelsStart = 0;
+	protected long indicesStart = 0;
+	protected long valuesStart = 0;
+
+	protected int currentIndex = 0;
+
+	public MappedDataManager(String filename) {
+		try {
+			this.file = new MappedFile(filename);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		this.readHeader();
+	}
+
+	protected MappedDataManager(MappedFile file) {
+		this.file = file;
+		this.readHeader();
+	}
+
+	protected void readHeader() {
+		if ((this.file.length() < BinaryDataConverter.headerSize)
+				|| (this.file.getInt(0) != BinaryDataConverter.magic)) {
+			logger.error("Not a binary data file: " + this.file.getFilename());
+			System.exit(-1);
+		}
+		if (this.file.getInt(4) != BinaryDataConverter.version) {
+			logger.error("Unsupported binary data version " + this.file.getInt(4) + " in " + this.file.getFilename());
+			System.exit(-1);
+		}
+
+		this.n = this.file.getInt(8);
+		this.d = this.file.getInt(12);
+		this.m = this.file.getInt(16);
+		long numOfLabelEntries = this.file.getLong(20);
+		long numOfFeatureEntries = this.file.getLong(28);
+
+		this.labelOffsetsStart = BinaryDataConverter.headerSize;
+		this.featureOffsetsStart = this.labelOffsetsStart + 4L * (this.n + 1);
+		this.labelsStart = this.featureOffsetsStart + 8L * (this.n + 1);
+		this.indicesStart = this.labelsStart + 4L * numOfLabelEntries;
+		this.valuesStart = this.indicesStart + 4L * numOfFeatureEntries;
+
+		this.currentIndex = 0;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return this.currentIndex < this.n;
+	}
+
+	@Override
+	public Instance getNextInstance() {
+		Instance instance = this.getInstance(this.currentIndex);
+		this.currentIndex++;
+		return instance;
+	}
+
+	@Override
+	public int size() {
+		return this.n;
+	}
+
+	@Override
+	public Instance getInstance(int i) {
+		long labelStart = this.file.getInt(this.labelOffsetsStart + 4L * i);
+		long labelEnd = this.file.getInt(this.labelOffsetsStart + 4L * (i + 1));
+		long featureStart = this.file.getLong(this.featureOffsetsStart + 8L * i);
+		long featureEnd = this.file.getLong(this.featureOffsetsStart + 8L * (i + 1));
+
+		int[] y = new int[(int) (labelEnd - labelStart)];
+		for (int j = 0; j < y.length; j++) {
+			y[j] = this.file.getInt(this.labelsStart + 4L * (labelStart + j));
+		}
+
+		int[] indices = new int[(int) (featureEnd - featureStart)];
+		float[] values = new float[indices.length];
+		for (int j = 0; j < indices.length; j++) {
+			indices[j] = this.file.getInt(this.indicesStart + 4L * (featureStart + j));
+			values[j] = this.file.getFloat(this.valuesStart + 4L * (featureStart + j));
+		}
+
+		return new Instance(new SparseVector(indices, values), y);
+	}
+
+	@Override
+	public int getNumberOfFeatures() {
+		return this.d;
+	}
+
+	@Override
+	public int getNumberOfLabels() {
+		return this.m;
+	}
+
+	@Override
+	public void setInputStream(InputStreamReader input) {
+
+	}
+
+	@Override
+	public void reset() {
+		this.currentIndex = 0;
+	}
+
+	@Override
+	public DataManager getCopy() {
+		return new MappedDataManager(this.file);
+	}
+}
@@ -0,0 +1,80 @@
+package IO;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a file of arbitrary size. A single
+ * MappedByteBuffer cannot address more than 2GB, so the file is mapped in
+ * segments of 2^30 bytes by default. Every segment reaches 8 bytes into the next one,
+ * hence a primitive value never has to be assembled from two segments.
+ * The absolute getters do not touch the buffer positions, so one instance can
+ * be read by many threads.
+ */
+public class MappedFile {
+	protected static final int defaultSegmentBits = 30;
+	protected static final int overlap = 8;
+
+	protected final int segmentBits;
+	protected final long segmentMask;
+
+	protected String filename = null;
+	protected long length = 0;
+	protected MappedByteBuffer[] segments = null;
+
+	public MappedFile(String filename) throws IOException {
+		this(filename, defaultSegmentBits);
+	}
+
+	/**
+	 * Maps the file in segments of 2^segmentBits bytes; small segments let the
+	 * tests cross a segment boundary with small files.
+	 */
+	protected MappedFile(String filename, int segmentBits) throws IOException {
+		this.filename = filename;
+		this.segmentBits = segmentBits;
+		this.segmentMask = (1L << segmentBits) - 1;
+
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			this.length = channel.size();
+
+			int numOfSegments = (int) ((this.length + segmentMask) >>> segmentBits);
+			this.segments = new MappedByteBuffer[Math.max(1, numOfSegments)];
+			for (int i = 0; i < this.segments.length; i++) {
+				long start = ((long) i) << segmentBits;
+				long size = Math.min(segmentMask + 1 + overlap, this.length - start);
+				this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, size));
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	public String getFilename() {
+		return this.filename;
+	}
+
+	public long length() {
+		return this.length;
+	}
+
+	public int getInt(long position) {
+		return this.segments[(int) (position >>> segmentBits)].getInt((int) (position & segmentMask));
+	}
+
+	public long getLong(long position) {
+		return this.segments[(int) (position >>> segmentBits)].getLong((int) (position & segmentMask));
+	}
+
+	public float getFloat(long position) {
+		return this.segments[(int) (position >>> segmentBits)].getFloat((int) (position & segmentMask));
+	}
+
+	public double getDouble(long position) {
+		return this.segments[(int) (position >>> segmentBits)].getDouble((int) (position & segmentMask));
+	}
+}
@@ -1,18 +1,11 @@
 package IO;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.StringTokenizer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
 
-import Data.AVPair;
 import Data.Instance;
 
 public class OnlineDataManager extends DataManager {
@@ -34,12 +27,15 @@ public class OnlineDataManager extends DataManager {
 		this.nLabels = this.readerthread.m;
 		
 		this.rthread = new Thread(this.readerthread);
+		this.rthread.setDaemon(true);
 		this.rthread.start();		
 	}
 
 	@Override
 	public boolean hasNext() {
-		return ((this.blockingQueue.size() > 0) || (! this.readerthread.isEndOfFile() ));
+		if (this.blockingQueue.size() > 0)
+			return true;
+		return this.readerthread.hasMoreInstances();
 	}
 
 	@Override
@@ -77,6 +73,7 @@ public class OnlineDataManager extends DataManager {
 		this.blockingQueue = new ArrayBlockingQueue<Instance>(this.bufferSize);
 		this.readerthread = new ReaderThread(this.blockingQueue, this.filename);
 		this.rthread = new Thread(this.readerthread);
+		this.rthread.setDaemon(true);
 		this.rthread.start();				
 	}
 
@@ -98,24 +95,19 @@ public class OnlineDataManager extends DataManager {
 		  protected volatile boolean endOfFile = false;
 		  public volatile boolean flag = true;
 		  
-		  BufferedReader br = null;
+		  LibsvmParser parser = null;
 		  
 		  public ReaderThread(BlockingQueue<Instance> blockingQueue, String filename){
 		    this.blockingQueue = blockingQueue;
 		    this.filename = filename;
 		    
 		    try {
-				this.br = new BufferedReader(new FileReader(new File(this.filename)));
-				String line = this.br.readLine();
-				// process line
-				String[] tokens = line.split(" ");
+				this.parser = new LibsvmParser(this.filename);
+				this.parser.readHeader();
 				
-				this.n = Integer.parseInt(tokens[0]);
-				this.d = Integer.parseInt(tokens[1]);
-				this.m = Integer.parseInt(tokens[2]);				
-			} catch (FileNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				this.n = this.parser.n;
+				this.d = this.parser.d;
+				this.m = this.parser.m;
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -127,20 +119,20 @@ public class OnlineDataManager extends DataManager {
 		  public void run() {		    
 		     try {		    	 
 		    	 	available.acquire();
-		            String buffer = br.readLine();
-		            if (buffer == null ) {
+		            boolean hasLine = parser.next();
+		            if (hasLine == false ) {
 		            	this.endOfFile = true;
 		            }
 		            available.release();
 	            		
 	            	if (this.endOfFile == false ) {     			            
 			            while(true){		            	
-			            	Instance instance = processLine(buffer);			            	
+			            	Instance instance = parser.getInstance();			            	
 			            	
 			            	available.acquire();
 			            	blockingQueue.put(instance);			            	
-			            	buffer = br.readLine();
-			            	if (buffer == null ) {
+			            	hasLine = parser.next();
+			            	if (hasLine == false ) {
 			            		this.endOfFile = true;
 			            		available.release();
 			            		break;
@@ -154,7 +146,7 @@ public class OnlineDataManager extends DataManager {
 		            e.printStackTrace();
 		        }finally{
 		            try {
-		                br.close();
+		                parser.close();
 		            } catch (IOException e) {
 		                e.printStackTrace();
 		            }
@@ -191,49 +183,22 @@ public class OnlineDataManager extends DataManager {
 		synchronized public boolean isEndOfFile() {
 			return this.endOfFile;			
 		}
-		
-		protected Instance processLine(String line ){
-			line = line.replace(",", " " );
-			StringTokenizer st = new StringTokenizer(line," \t\n\r\f");			
-			int m = st.countTokens();
-			String[] stArr = new String[m];
-			
-			int numOfFeatures = 0;
-			int numOfLabels = 0;
-			for(int j=0;j<m;j++)
-			{
-				stArr[j] = st.nextToken();
-				if (stArr[j].contains(":") ) numOfFeatures++;
-				else numOfLabels++;
-			}
-			
-			
-												
-			AVPair[] x = new AVPair[numOfFeatures];
-			int[] y = new int[numOfLabels];
-			int indexx = 0;
-			int indexy = 0;
-			for(int j=0;j<m;j++)
-			{
-				String[] tokens = stArr[j].split(":");
-				//logger.info( stArr[j] );
-				if ( tokens.length == 1 ) {  // label
-					//logger.info( tokens[0].replace(",", "") );					
-					y[indexy]= Integer.parseInt(tokens[0].replace(",", ""));
-					indexy++;
-				} else {  // features
-					x[indexx] = new AVPair();
-					x[indexx].index = Integer.parseInt(tokens[0])-1;         // the indexing starts at 0
-					x[indexx++].value = Double.parseDouble(tokens[1]);							
-				}
-			}
-			
-			Arrays.sort(y);
-			
-			return new Instance(x, y);
 
-		  }
-		}	
+		/**
+		 * The reader holds {@code available} from putting an instance until it
+		 * has checked for the end of the file, so the queue and the flag are
+		 * looked at consistently here. Otherwise a fast consumer could take the
+		 * last instance before the flag is set and block forever.
+		 */
+		public boolean hasMoreInstances() {
+			available.acquireUninterruptibly();
+			try {
+				return (this.blockingQueue.size() > 0) || (! this.endOfFile);
+			} finally {
+				available.release();
+			}
+		}
+	}	
 
 	protected void finalize() {
 		this.close();
@@ -0,0 +1,329 @@
+package IO;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Data.Instance;
+
+/**
+ * Streams a data file like {@link OnlineDataManager}, but splits the reading
+ * from the parsing: one thread reads the file and cuts it into chunks that end
+ * at a newline, and {@code numOfParsers} threads parse the chunks with
+ * {@link LibsvmParser}. The instances are handed over chunk by chunk, in the
+ * order of the file ({@code ordered}) or in the order the chunks are parsed.
+ */
+public class ParallelOnlineDataManager extends DataManager {
+	protected static final int defaultChunkSize = 1 << 20;
+	protected static final Chunk endOfFile = new Chunk(null, 0);
+
+	protected String filename = null;
+	protected int numOfParsers = 1;
+	protected boolean ordered = true;
+	protected int chunkSize = defaultChunkSize;
+
+	protected int nFeatures = 0;
+	protected int nLabels = 0;
+
+	protected BlockingQueue<Chunk> work = null;
+	protected BlockingQueue<Chunk> output = null;
+	protected List<Thread> threads = null;
+
+	// the chunk handed over to the consumer
+	protected Instance[] instances = null;
+	protected int numOfInstances = 0;
+	protected int current = 0;
+	protected boolean finished = false;
+
+	public ParallelOnlineDataManager(String filename) {
+		this(filename, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), true);
+	}
+
+	public ParallelOnlineDataManager(String filename, int numOfParsers, boolean ordered) {
+		this(filename, numOfParsers, ordered, defaultChunkSize);
+	}
+
+	public ParallelOnlineDataManager(String filename, int numOfParsers, boolean ordered, int chunkSize) {
+		this.filename = filename;
+		this.numOfParsers = numOfParsers;
+		this.ordered = ordered;
+		this.chunkSize = chunkSize;
+
+		try {
+			LibsvmParser parser = new LibsvmParser(this.filename);
+			parser.readHeader();
+			parser.close();
+			this.nFeatures = parser.d;
+			this.nLabels = parser.m;
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+
+		this.start();
+	}
+
+	/**
+	 * Lines of the file, parsed once {@code parsed} is released.
+	 */
+	protected static class Chunk {
+		public final byte[] bytes;
+		public final int length;
+		public final CountDownLatch parsed = new CountDownLatch(1);
+		public Instance[] instances = null;
+		public int numOfInstances = 0;
+		public Throwable error = null;
+
+		public Chunk(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+	}
+
+	protected void start() {
+		this.work = new ArrayBlockingQueue<Chunk>(2 * this.numOfParsers);
+		this.output = new ArrayBlockingQueue<Chunk>(4 * this.numOfParsers);
+		this.threads = new ArrayList<Thread>();
+		this.instances = null;
+		this.numOfInstances = 0;
+		this.current = 0;
+		this.finished = false;
+
+		AtomicInteger runningParsers = new AtomicInteger(this.numOfParsers);
+		this.threads.add(new Thread(new Reader()));
+		for (int i = 0; i < this.numOfParsers; i++) {
+			this.threads.add(new Thread(new Parser(runningParsers)));
+		}
+		for (Thread thread : this.threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Cuts the file behind the header line into chunks of whole lines.
+	 */
+	protected class Reader implements Runnable {
+		@Override
+		public void run() {
+			try {
+				FileChannel channel = new FileInputStream(filename).getChannel();
+				try {
+					readChunks(channel);
+				} finally {
+					channel.close();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Throwable e) {
+				Chunk chunk = new Chunk(null, 0);
+				chunk.error = e;
+				chunk.parsed.countDown();
+				try {
+					output.put(chunk);
+				} catch (InterruptedException interrupted) {
+					return;
+				}
+			}
+			try {
+				for (int i = 0; i < numOfParsers; i++) {
+					work.put(endOfFile);
+				}
+				if (ordered)
+					output.put(endOfFile);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+
+		protected void readChunks(FileChannel channel) throws IOException, InterruptedException {
+			ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+			boolean header = true;
+			while (true) {
+				int read = channel.read(buffer);
+				byte[] bytes = buffer.array();
+				int limit = buffer.position();
+
+				int start = 0;
+				if (header) {
+					while ((start < limit) && (bytes[start] != '\n')) {
+						start++;
+					}
+					if (start == limit) {
+						if (read < 0)
+							return;
+						buffer = grow(buffer, limit);
+						continue;
+					}
+					start++;
+					header = false;
+				}
+
+				int end = limit;
+				if (read >= 0) {
+					// cut behind the last newline
+					while ((end > start) && (bytes[end - 1] != '\n')) {
+						end--;
+					}
+					if (end == start) {
+						buffer = grow(buffer, limit);
+						if (start > 0)
+							buffer = rest(buffer.array(), start, limit, buffer.capacity());
+						continue;
+					}
+				}
+
+				if (end > start) {
+					// one more byte for the parser to end a last line without newline
+					byte[] chunk = new byte[end - start + 1];
+					System.arraycopy(bytes, start, chunk, 0, end - start);
+					Chunk c = new Chunk(chunk, end - start);
+					work.put(c);
+					if (ordered)
+						output.put(c);
+				}
+				if (read < 0)
+					return;
+
+				buffer = rest(bytes, end, limit, Math.max(chunkSize, buffer.capacity()));
+			}
+		}
+
+		protected ByteBuffer grow(ByteBuffer buffer, int limit) {
+			ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+			System.arraycopy(buffer.array(), 0, larger.array(), 0, limit);
+			larger.position(limit);
+			return larger;
+		}
+
+		/**
+		 * @return A new buffer starting with {@code bytes[start..limit)}.
+		 */
+		protected ByteBuffer rest(byte[] bytes, int start, int limit, int capacity) {
+			ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			System.arraycopy(bytes, start, buffer.array(), 0, limit - start);
+			buffer.position(limit - start);
+			return buffer;
+		}
+	}
+
+	protected class Parser implements Runnable {
+		protected AtomicInteger runningParsers = null;
+
+		public Parser(AtomicInteger runningParsers) {
+			this.runningParsers = runningParsers;
+		}
+
+		@Override
+		public void run() {
+			LibsvmParser parser = new LibsvmParser(new byte[0], 0);
+			try {
+				while (true) {
+					Chunk chunk = work.take();
+					if (chunk == endOfFile)
+						break;
+
+					try {
+						parser.setChunk(chunk.bytes, chunk.length);
+						Instance[] parsed = new Instance[64];
+						int n = 0;
+						while (parser.next()) {
+							if (n == parsed.length)
+								parsed = Arrays.copyOf(parsed, 2 * n);
+							parsed[n++] = parser.getInstance();
+						}
+						chunk.instances = parsed;
+						chunk.numOfInstances = n;
+					} catch (Throwable e) {
+						chunk.error = e;
+					}
+					chunk.parsed.countDown();
+					if (!ordered)
+						output.put(chunk);
+				}
+				if (!ordered && (this.runningParsers.decrementAndGet() == 0))
+					output.put(endOfFile);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (this.current == this.numOfInstances) {
+			if (this.finished)
+				return false;
+			try {
+				Chunk chunk = this.output.take();
+				if (chunk == endOfFile) {
+					this.finished = true;
+					return false;
+				}
+				chunk.parsed.await();
+				if (chunk.error != null)
+					throw new IllegalStateException("Cannot read " + this.filename, chunk.error);
+				this.instances = chunk.instances;
+				this.numOfInstances = chunk.numOfInstances;
+				this.current = 0;
+			} catch (InterruptedException e) {
+				throw new IllegalStateException("Reading " + this.filename + " was interrupted", e);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Instance getNextInstance() {
+		if (!this.hasNext())
+			return null;
+		Instance instance = this.instances[this.current];
+		this.instances[this.current++] = null;
+		return instance;
+	}
+
+	@Override
+	public int getNumberOfFeatures() {
+		return this.nFeatures;
+	}
+
+	@Override
+	public int getNumberOfLabels() {
+		return this.nLabels;
+	}
+
+	@Override
+	public void setInputStream(InputStreamReader input) {
+
+	}
+
+	@Override
+	public void reset() {
+		this.close();
+		this.start();
+	}
+
+	@Override
+	public DataManager getCopy() {
+		return new ParallelOnlineDataManager(this.filename, this.numOfParsers, this.ordered, this.chunkSize);
+	}
+
+	@Override
+	public void close() {
+		if (this.threads != null) {
+			for (Thread thread : this.threads) {
+				thread.interrupt();
+			}
+			this.threads = null;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package IO;
+
+import java.io.InputStreamReader;
+import java.util.Random;
+
+import Data.Instance;
+import util.MasterSeed;
+
+/**
+ * Serves the instances of another data manager in a new random order in every
+ * epoch. An {@link IndexedData} source (a {@link BatchDataManager} or a
+ * {@link MappedDataManager}) is read through a full permutation. Any other
+ * source is streamed through a buffer of {@code bufferSize} instances: the
+ * next instance is drawn uniformly from the buffer, and its slot is refilled
+ * from the source. An instance thus moves at most about {@code bufferSize}
+ * positions forward, so the buffer should cover a few label blocks of sorted
+ * data. The random order is seeded through {@link MasterSeed}.
+ */
+public class ShuffledDataManager extends DataManager {
+	public static final int defaultBufferSize = 100000;
+
+	protected DataManager source = null;
+	protected Random random = null;
+
+	// the permutation of an indexed source
+	protected int[] permutation = null;
+	protected int current = 0;
+
+	// the shuffle buffer of a streamed source
+	protected int bufferSize = defaultBufferSize;
+	protected Instance[] buffer = null;
+	protected int numOfBuffered = 0;
+
+	public ShuffledDataManager(DataManager source, int bufferSize) {
+		this(source, bufferSize, MasterSeed.nextRandom());
+	}
+
+	protected ShuffledDataManager(DataManager source, int bufferSize, Random random) {
+		this.source = source;
+		this.bufferSize = bufferSize;
+		this.random = random;
+
+		if (source instanceof IndexedData) {
+			logger.info("#### Shuffling the data with a full permutation");
+			int n = ((IndexedData) source).size();
+			this.permutation = new int[n];
+			for (int i = 0; i < n; i++) {
+				this.permutation[i] = i;
+			}
+			this.shufflePermutation();
+		} else {
+			logger.info("#### Shuffling the data with a buffer of " + this.bufferSize + " instances");
+			this.buffer = new Instance[this.bufferSize];
+		}
+	}
+
+	protected void shufflePermutation() {
+		for (int i = this.permutation.length - 1; i > 0; i--) {
+			int j = this.random.nextInt(i + 1);
+			int tmp = this.permutation[i];
+			this.permutation[i] = this.permutation[j];
+			this.permutation[j] = tmp;
+		}
+		this.current = 0;
+	}
+
+	protected void fillBuffer() {
+		while ((this.numOfBuffered < this.bufferSize) && this.source.hasNext()) {
+			this.buffer[this.numOfBuffered++] = this.source.getNextInstance();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (this.permutation != null)
+			return this.current < this.permutation.length;
+
+		this.fillBuffer();
+		return this.numOfBuffered > 0;
+	}
+
+	@Override
+	public Instance getNextInstance() {
+		if (this.permutation != null)
+			return ((IndexedData) this.source).getInstance(this.permutation[this.current++]);
+
+		this.fillBuffer();
+		int i = this.random.nextInt(this.numOfBuffered);
+		Instance instance = this.buffer[i];
+		this.numOfBuffered--;
+		this.buffer[i] = this.buffer[this.numOfBuffered];
+		this.buffer[this.numOfBuffered] = null;
+		return instance;
+	}
+
+	@Override
+	public int getNumberOfFeatures() {
+		return this.source.getNumberOfFeatures();
+	}
+
+	@Override
+	public int getNumberOfLabels() {
+		return this.source.getNumberOfLabels();
+	}
+
+	@Override
+	public void setInputStream(InputStreamReader input) {
+
+	}
+
+	@Override
+	public void reset() {
+		if (this.permutation != null) {
+			this.shufflePermutation();
+		} else {
+			for (int i = 0; i < this.numOfBuffered; i++) {
+				this.buffer[i] = null;
+			}
+			this.numOfBuffered = 0;
+			this.source.reset();
+		}
+	}
+
+	@Override
+	public DataManager getCopy() {
+		return new ShuffledDataManager(this.source.getCopy(), this.bufferSize, new Random(this.random.nextLong()));
+	}
+
+	@Override
+	public void close() {
+		this.source.close();
+	}
+}
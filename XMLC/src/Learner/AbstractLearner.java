@@ -25,6 +25,7 @@ import Data.AVPair;
 import Data.ComparablePair;
 import Data.EstimatePair;
 import Data.Instance;
+import Data.SparseVector;
 import IO.DataManager;
 import threshold.ThresholdTuner;
 import util.IoUtils;
@@ -55,16 +56,44 @@ public abstract class AbstractLearner implements Serializable{
 	public abstract void allocateClassifiers( DataManager data );
 	public abstract void train( DataManager data );
 	//public abstract Evaluator test( AVTable data );
-	public abstract double getPosteriors(AVPair[] x, int label);
+	public abstract double getPosteriors(SparseVector x, int label);
+
+	/**
+	 * Prepares a loaded model for {@link #train(DataManager)} on new
+	 * {@code data} instead of {@link #allocateClassifiers(DataManager)},
+	 * which would start from zero. Only valid if
+	 * {@link #supportsContinuedTraining()}.
+	 */
+	public abstract void prepareContinuedTraining( DataManager data, Properties properties );
+
+	/**
+	 * @return True if the model keeps what its training needs to go on, see
+	 *         {@link #prepareContinuedTraining(DataManager, Properties)}.
+	 */
+	public boolean supportsContinuedTraining() {
+		return false;
+	}
 
 	public void savemodel(String fname ) throws IOException{
 		IoUtils.serialize(this, Paths.get(fname));
 	}
 	public static AbstractLearner loadmodel(String fname ) throws FileNotFoundException, ClassNotFoundException, IOException{
+		return loadmodel(fname, true);
+	}
+
+	/**
+	 * @param mapWeights
+	 *            Read the weights of a binary model file from a read-only
+	 *            mapping instead of copying them. Serialized models are always
+	 *            copied.
+	 */
+	public static AbstractLearner loadmodel(String fname, boolean mapWeights ) throws FileNotFoundException, ClassNotFoundException, IOException{
+		if (PLTModelFile.isModelFile(fname))
+			return PLTModelFile.read(fname, mapWeights);
 		return (AbstractLearner) IoUtils.deserialize(Paths.get(fname));
 	}
 
-	public int getPrediction(AVPair[] x, int label){
+	public int getPrediction(SparseVector x, int label){
 		if ( this.thresholds[label] <= getPosteriors(x, label) ) {
 			return 1;
 		} else {
@@ -126,7 +155,7 @@ public abstract class AbstractLearner implements Serializable{
 
 
 	// naive implementation checking all labels
-	public HashSet<Integer> getPositiveLabels(AVPair[] x) {
+	public HashSet<Integer> getPositiveLabels(SparseVector x) {
 		HashSet<Integer> positiveLabels = new HashSet<Integer>();
 
 		for( int i = 0; i < this.m; i++ ) {
@@ -139,7 +168,7 @@ public abstract class AbstractLearner implements Serializable{
 	}
 	
 	// naive implementation checking all labels
-	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(AVPair[] x) {
+	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(SparseVector x) {
 		PriorityQueue<ComparablePair> positiveLabels = new PriorityQueue<>();
 
 		for( int i = 0; i < this.m; i++ ) {
@@ -152,7 +181,7 @@ public abstract class AbstractLearner implements Serializable{
 		return positiveLabels;
 	}
 	
-	public int[] getTopkLabels(AVPair[] x, int k) {
+	public int[] getTopkLabels(SparseVector x, int k) {
 		PriorityQueue<ComparablePair> pq = new PriorityQueue<ComparablePair>();
 		
 		for( int i = 0; i < this.m; i++ ) {
@@ -193,7 +222,7 @@ public abstract class AbstractLearner implements Serializable{
 //		
 //	}
 	
-	public HashSet<EstimatePair> getSparseProbabilityEstimates(AVPair[] x, double threshold) {
+	public HashSet<EstimatePair> getSparseProbabilityEstimates(SparseVector x, double threshold) {
 		
 		HashSet<EstimatePair> positiveLabels = new HashSet<EstimatePair>();
 		
@@ -206,7 +235,7 @@ public abstract class AbstractLearner implements Serializable{
 		return positiveLabels;
 	}
 	
-	public TreeSet<EstimatePair> getTopKEstimates(AVPair[] x, int k) {
+	public TreeSet<EstimatePair> getTopKEstimates(SparseVector x, int k) {
 		TreeSet<EstimatePair> positiveLabels = new TreeSet<EstimatePair>();
 		
 		for(int i = 0; i < this.m; i++) {
@@ -222,6 +251,86 @@ public abstract class AbstractLearner implements Serializable{
 		
 	}
 		
+	/**
+	 * Computes the top {@code k} labels of each instance of a block.
+	 * 
+	 * @param xs
+	 *            The instances of the block.
+	 * @param k
+	 *            Number of labels per instance.
+	 * @param outLabels
+	 *            For every instance an array of at least {@code k} entries
+	 *            which receives the labels in decreasing order of their
+	 *            posteriors. Missing labels are set to -1.
+	 * @param outScores
+	 *            The corresponding posteriors.
+	 */
+	public void predictTopK(SparseVector[] xs, int k, int[][] outLabels, float[][] outScores) {
+		predictTopK(xs, xs.length, k, outLabels, outScores);
+	}
+
+	/**
+	 * Same as {@link #predictTopK(SparseVector[], int, int[][], float[][])} for
+	 * the first {@code n} instances of {@code xs}.
+	 */
+	public void predictTopK(SparseVector[] xs, int n, int k, int[][] outLabels, float[][] outScores) {
+		predictTopKByEstimates(xs, n, k, outLabels, outScores);
+	}
+
+	protected void predictTopKByEstimates(SparseVector[] xs, int n, int k, int[][] outLabels, float[][] outScores) {
+		for (int i = 0; i < n; i++) {
+			TreeSet<EstimatePair> estimates = getTopKEstimates(xs[i], k);
+			int j = 0;
+			while (!estimates.isEmpty() && (j < k)) {
+				EstimatePair pair = estimates.pollFirst();
+				outLabels[i][j] = pair.getLabel();
+				outScores[i][j] = (float) pair.getP();
+				j++;
+			}
+			for (; j < k; j++) {
+				outLabels[i][j] = -1;
+				outScores[i][j] = 0.0f;
+			}
+		}
+	}
+		
+	// adapters for callers holding AVPair rows, e.g. tables read by DataReader
+	public double getPosteriors(AVPair[] x, int label) {
+		return getPosteriors(SparseVector.fromAVPairs(x), label);
+	}
+
+	public int getPrediction(AVPair[] x, int label) {
+		return getPrediction(SparseVector.fromAVPairs(x), label);
+	}
+
+	public HashSet<Integer> getPositiveLabels(AVPair[] x) {
+		return getPositiveLabels(SparseVector.fromAVPairs(x));
+	}
+
+	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(AVPair[] x) {
+		return getPositiveLabelsAndPosteriors(SparseVector.fromAVPairs(x));
+	}
+
+	public int[] getTopkLabels(AVPair[] x, int k) {
+		return getTopkLabels(SparseVector.fromAVPairs(x), k);
+	}
+
+	public HashSet<EstimatePair> getSparseProbabilityEstimates(AVPair[] x, double threshold) {
+		return getSparseProbabilityEstimates(SparseVector.fromAVPairs(x), threshold);
+	}
+
+	public TreeSet<EstimatePair> getTopKEstimates(AVPair[] x, int k) {
+		return getTopKEstimates(SparseVector.fromAVPairs(x), k);
+	}
+
+	public void predictTopK(AVPair[][] xs, int k, int[][] outLabels, float[][] outScores) {
+		SparseVector[] rows = new SparseVector[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			rows[i] = SparseVector.fromAVPairs(xs[i]);
+		}
+		predictTopK(rows, rows.length, k, outLabels, outScores);
+	}
+
 	public Properties getProperties() {
 		return properties;
 	}
@@ -4,10 +4,10 @@ import java.util.HashSet;
 import java.util.PriorityQueue;
 import java.util.Properties;
 
-import Data.AVPair;
 import Data.AVTable;
 import Data.ComparablePair;
 import Data.EstimatePair;
+import Data.SparseVector;
 import IO.DataManager;
 import IO.DataReader;
 
@@ -21,17 +21,17 @@ public class ConstantLearner extends AbstractLearner {
 		// TODO Auto-generated constructor stub
 	}
 
-	public int getPrediction(AVPair[] x, int label){
+	public int getPrediction(SparseVector x, int label){
 		return 0;
 	}
 	
-	public HashSet<EstimatePair> getSparseProbabilityEstimates(AVPair[] x, double threshold){
+	public HashSet<EstimatePair> getSparseProbabilityEstimates(SparseVector x, double threshold){
 		return new HashSet<EstimatePair>();
 	}
 	
 	
 	// naive implementation checking all labels
-	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(AVPair[] x) {
+	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(SparseVector x) {
 		PriorityQueue<ComparablePair> positiveLabels = new PriorityQueue<>();
 		return positiveLabels;
 	}
@@ -44,6 +44,19 @@ public class ConstantLearner extends AbstractLearner {
 		this.d = data.getNumberOfLabels();
 	}
 
+	/**
+	 * There is nothing to keep, so the training starts anew.
+	 */
+	@Override
+	public void prepareContinuedTraining(DataManager data, Properties properties) {
+		allocateClassifiers(data);
+	}
+
+	@Override
+	public boolean supportsContinuedTraining() {
+		return true;
+	}
+
 	@Override
 	public void train(DataManager data) {
 		// TODO Auto-generated method stub
@@ -51,7 +64,7 @@ public class ConstantLearner extends AbstractLearner {
 	}
 
 	@Override
-	public double getPosteriors(AVPair[] x, int label) {
+	public double getPosteriors(SparseVector x, int label) {
 		// TODO Auto-generated method stub
 		return 0;
 	}
@@ -18,18 +18,19 @@ import org.apache.commons.math3.analysis.function.Sigmoid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import Data.AVPair;
+import com.google.common.primitives.Ints;
+
 import Data.AVTable;
 import Data.EstimatePair;
 import Data.Instance;
 import Data.NodeComparatorPLT;
 import Data.NodePLT;
+import Data.SparseVector;
 import IO.DataManager;
 import preprocessing.FeatureHasher;
 import preprocessing.FeatureHasherFactory;
-import util.CompleteTree;
-import util.HuffmanTree;
-import util.PrecomputedTree;
+import util.Optimizer;
+import util.OptimizerFactory;
 import util.Tree;
 
 public class DeepPLT extends PLT {
@@ -44,6 +45,12 @@ public class DeepPLT extends PLT {
 	transient protected int[] Tarrayhidden = null;
 	protected double[] scalararrayhidden = null;
 	protected double[] updatevec = null;
+	/**
+	 * Optimizer of {@code hiddenWeights}; slot {@code hi * hiddendim + j}.
+	 * The optimizer of the tree layer {@code w} uses the slots
+	 * {@code label * hiddendim + i}.
+	 */
+	transient protected Optimizer hiddenOptimizer = null;
 	
 	protected String hiddenVectorsFile = null;
 	
@@ -100,26 +107,21 @@ public class DeepPLT extends PLT {
 	}
 	
 	
+	/**
+	 * The update counts of the hidden layer are not kept in the model.
+	 */
+	@Override
+	public boolean supportsContinuedTraining() {
+		return false;
+	}
+
 	@Override
 	public void allocateClassifiers(DataManager data) {
 		this.traindata = data;
 		this.m = data.getNumberOfLabels();
 		this.d = data.getNumberOfFeatures();
 		
-		switch (this.treeType){
-			case CompleteTree.name:
-				this.tree = new CompleteTree(this.k, this.m);
-				break;
-			case PrecomputedTree.name:
-				this.tree = new PrecomputedTree(this.treeFile);
-				break;
-			case HuffmanTree.name:
-				this.tree = new HuffmanTree(data, this.treeFile);
-				break;
-			default:
-				System.err.println("Unknown tree type!");
-				System.exit(-1);
-		}
+		this.tree = createTree(data);
 		this.t = this.tree.getSize(); 
 
 		logger.info( "#### Num. of labels: " + this.m + " Dim: " + this.d );
@@ -131,7 +133,7 @@ public class DeepPLT extends PLT {
 		logger.info( "Allocate the learners..." );
 
 		Random r = new Random();
-		this.hiddenWeights = new double[this.hd][];
+		this.hiddenWeights = new double[Ints.checkedCast(this.hd)][];
 		for(int i = 0; i < this.hd; i++ ) {
 			this.hiddenWeights[i] = new double[this.hiddendim];
 			for(int j = 0; j < this.hiddendim; j++ ){
@@ -160,12 +162,18 @@ public class DeepPLT extends PLT {
 		Arrays.fill(this.Tarray, 1);
 		Arrays.fill(this.scalararray, 1.0);
 
-		this.Tarrayhidden = new int[this.hd];
-		this.scalararrayhidden = new double[this.hd];
+		this.Tarrayhidden = new int[Ints.checkedCast(this.hd)];
+		this.scalararrayhidden = new double[Ints.checkedCast(this.hd)];
 		Arrays.fill(this.Tarrayhidden, 1);
 		Arrays.fill(this.scalararrayhidden, 1.0);		
 
 		this.updatevec = new double[this.hiddendim];
+
+		if (this.optimizerType.compareTo("sgd") != 0) {
+			this.weightOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, ((long) this.t) * this.hiddendim, "double", false);
+			this.biasOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.t, "double", false);
+			this.hiddenOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.hd * this.hiddendim, "double", false);
+		}
 		
 		logger.info( "Done." );
 	}
@@ -175,7 +183,7 @@ public class DeepPLT extends PLT {
 		for (int ep = 0; ep < this.epochs; ep++) {
 
 			logger.info("#############--> BEGIN of Epoch: {} ({})", (ep + 1), this.epochs );
-			// random permutation
+			// the data manager decides the order, see IO.ShuffledDataManager
 			
 			
 			while( data.hasNext() == true ){
@@ -210,7 +218,8 @@ public class DeepPLT extends PLT {
 						
 						if(!this.tree.isLeaf(positiveNode)) {
 							
-							for(int childNode: this.tree.getChildNodes(positiveNode)) {
+							for (int c = this.tree.childStart(positiveNode); c < this.tree.childEnd(positiveNode); c++) {
+								int childNode = this.tree.childAt(c);
 								
 								if(!positiveTreeIndices.contains(childNode)) {
 									negativeTreeIndices.add(childNode);
@@ -264,18 +273,27 @@ public class DeepPLT extends PLT {
 	protected void updateHiddenRepresentation( Instance instance ) {		
 
 		double sum = 0.0;
-		for(int j = 0; j < instance.x.length; j++ ){
-			sum += instance.x[j].value;
+		for(int j = instance.x.start; j < instance.x.end; j++ ){
+			sum += instance.x.values[j];
 		}
 		if (sum > 0.000001) {
 			sum = 1.0/sum;
 		}
 		
 				
-		for( int i = 0; i < instance.x.length; i++ ) {
-			int hi = fh.getIndex(1,  instance.x[i].index); 
-			//int sign = fh.getSign(1, instance.x[i].index);
+		for( int i = instance.x.start; i < instance.x.end; i++ ) {
+			int hi = fh.getIndex(1,  instance.x.indices[i]); 
+			//int sign = fh.getSign(1, instance.x.indices[i]);
 		
+			if (this.hiddenOptimizer != null) {
+				double stepFactor = this.hiddenOptimizer.getStepFactor(this.Tarrayhidden[hi]++);
+				long offset = ((long) hi) * this.hiddendim;
+				for(int j = 0; j < this.hiddendim; j++ ){
+					double gradient = this.updatevec[j] * sum * instance.x.values[i] + this.lambda * this.hiddenWeights[hi][j];
+					this.hiddenWeights[hi][j] -= this.hiddenOptimizer.step(offset + j, gradient, stepFactor);
+				}
+				continue;
+			}
 			
 			this.learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarrayhidden[hi]);
 			this.Tarrayhidden[hi]++;
@@ -283,8 +301,8 @@ public class DeepPLT extends PLT {
 			
 			
 			for(int j = 0; j < this.hiddendim; j++ ){
-				//double gradient = this.scalararrayhidden[hi] * inc * this.w[ind][j] * sum * instance.x[i].value;
-				double gradient = this.scalararrayhidden[hi] * this.updatevec[j] * sum * instance.x[i].value;
+				//double gradient = this.scalararrayhidden[hi] * inc * this.w[ind][j] * sum * instance.x.values[i];
+				double gradient = this.scalararrayhidden[hi] * this.updatevec[j] * sum * instance.x.values[i];
 				double update = (this.learningRate * gradient);// / this.scalar;		
 				this.hiddenWeights[hi][j] -= update; 				
 			}
@@ -293,17 +311,17 @@ public class DeepPLT extends PLT {
 	}
 
 	
-	protected double[] getHiddenRepresentation( AVPair[] x ) {
+	protected double[] getHiddenRepresentation( SparseVector x ) {
 		double[] hiddenRepresentation = new double[this.hiddendim];
 		// aggregate the the word2vec representation
 		double sum = 0;
-		for (int i = 0; i < x.length; i++) {
-			int hi = fh.getIndex(1,  x[i].index); 
-			//int sign = fh.getSign(1, x[i].index);
+		for (int i = x.start; i < x.end; i++) {
+			int hi = fh.getIndex(1,  x.indices[i]); 
+			//int sign = fh.getSign(1, x.indices[i]);
 			
 			for(int j = 0; j < this.hiddendim; j++ ){
-				hiddenRepresentation[ j ] +=  x[i].value * (1.0 / this.scalararrayhidden[hi]) * this.hiddenWeights[hi][j];
-				sum += x[i].value;
+				hiddenRepresentation[ j ] +=  x.values[i] * (1.0 / this.scalararrayhidden[hi]) * this.hiddenWeights[hi][j];
+				sum += x.values[i];
 			}
 			
 		}
@@ -319,6 +337,19 @@ public class DeepPLT extends PLT {
 	
 	
 	protected void updatedTreePosteriors( double[] x, int label, double inc) {
+		if (this.weightOptimizer != null) {
+			int step = this.Tarray[label]++;
+			double stepFactor = this.weightOptimizer.getStepFactor(step);
+			long offset = ((long) label) * this.hiddendim;
+			for(int i = 0; i < this.hiddendim; i++) {
+				double gradient = inc * x[i] + this.lambda * this.w[label][i];
+				this.w[label][i] -= this.weightOptimizer.step(offset + i, gradient, stepFactor);
+
+				this.updatevec[i] += inc * this.w[label][i];
+			}
+			this.bias[label] -= this.biasOptimizer.step(label, inc, this.biasOptimizer.getStepFactor(step));
+			return;
+		}
 			
 		this.learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarray[label]);
 		this.Tarray[label]++;
@@ -341,7 +372,7 @@ public class DeepPLT extends PLT {
 	
 	
 	@Override
-	public double getPosteriors(AVPair[] x, int label) {
+	public double getPosteriors(SparseVector x, int label) {
 		double posterior = 1.0;
 
 		double[] hiddenRepresentation = this.getHiddenRepresentation(x);
@@ -375,7 +406,7 @@ public class DeepPLT extends PLT {
 
 	}
 	
-	public TreeSet<EstimatePair> getTopKEstimates(AVPair[] x, int k) {
+	public TreeSet<EstimatePair> getTopKEstimates(SparseVector x, int k) {
 		double[] hiddenRepresentation = this.getHiddenRepresentation(x);
 		
 		TreeSet<EstimatePair> positiveLabels = new TreeSet<EstimatePair>();
@@ -396,7 +427,8 @@ public class DeepPLT extends PLT {
 			
 			if(!this.tree.isLeaf(node.treeIndex)) {
 				
-				for(int childNode: this.tree.getChildNodes(node.treeIndex)) {
+				for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+					int childNode = this.tree.childAt(c);
 					queue.add(new NodePLT(childNode, currentP * getPartialPosteriors(hiddenRepresentation, childNode)));
 				}
 				
@@ -411,6 +443,11 @@ public class DeepPLT extends PLT {
 		return positiveLabels;
 	}
 
+	@Override
+	public void predictTopK(SparseVector[] xs, int n, int k, int[][] outLabels, float[][] outScores) {
+		predictTopKByEstimates(xs, n, k, outLabels, outScores);
+	}
+
 	public void writeHiddenVectors( String outfname ) 
 	{
 		try{
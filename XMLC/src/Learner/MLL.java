@@ -14,21 +14,36 @@ import org.apache.commons.math3.analysis.function.Sigmoid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import Data.AVPair;
 import Data.AVTable;
 import Data.Instance;
+import Data.PreparedRow;
+import Data.SparseVector;
 import IO.DataManager;
 import preprocessing.FeatureHasher;
 import preprocessing.FeatureHasherFactory;
 import util.MasterSeed;
+import util.Optimizer;
+import util.OptimizerFactory;
+import util.WeightStore;
+import util.WeightStoreFactory;
 
 public class MLL extends AbstractLearner {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 	private static Logger logger = LoggerFactory.getLogger(MLL.class);
 	
 	transient protected int epochs = 1;
 	protected int fhseed = 1;
-	protected double[] w = null;
+	protected WeightStore w = null;
+	/**
+	 * Storage type of {@code w}: double, float, int16 or int8.
+	 */
+	protected String weightPrecision = "double";
+	/**
+	 * Keep {@code w} outside of the Java heap, optionally as a mapping of
+	 * {@code weightFile}. Needed for more than 2^31 hashed features.
+	 */
+	transient protected boolean offHeapWeights = false;
+	transient protected String weightFile = null;
 
 	transient protected double gamma = 0; // learning rate
 	transient protected int step = 0;
@@ -42,7 +57,7 @@ public class MLL extends AbstractLearner {
 	/**
 	 * Hashed dimension, i.e. number of ML hashed features.
 	 */	
-	protected int hd;
+	protected long hd;
 
 
 	protected double[] bias;
@@ -62,6 +77,30 @@ public class MLL extends AbstractLearner {
 
 	protected int[] Tarray = null;	
 	protected double[] scalararray = null;
+
+	/**
+	 * Number of instances whose updates are grouped by label and applied
+	 * together. One means an SGD step per label and instance.
+	 */
+	transient protected int batchSize = 1;
+	transient protected PreparedRow[] batchRows = null;
+	transient protected int batchLength = 0;
+	/**
+	 * One entry per label and instance of the batch:
+	 * {@code label << 32 | instance << 1 | isPositive}.
+	 */
+	transient protected long[] batchEntries = null;
+	transient protected int numOfBatchEntries = 0;
+	transient protected double[] batchIncs = null;
+
+	/**
+	 * Update rule of the weights: sgd, adagrad or adam, see
+	 * {@link PLT#optimizerType}.
+	 */
+	transient protected String optimizerType = "sgd";
+	transient protected Optimizer weightOptimizer = null;
+	transient protected Optimizer biasOptimizer = null;
+	transient protected PreparedRow preparedRow = new PreparedRow();
 	
 	
 	
@@ -70,25 +109,19 @@ public class MLL extends AbstractLearner {
 		
 		System.out.println("#####################################################" );
 		System.out.println("#### Learner: MLL" );
-		// learning rate
-		this.gamma = Double.parseDouble(this.properties.getProperty("gamma", "1.0"));
-		logger.info("#### gamma: " + this.gamma );
-
-		// scalar
-		this.lambda = Double.parseDouble(this.properties.getProperty("lambda", "1.0"));
-		logger.info("#### lambda: " + this.lambda );
-
-		// epochs
-		this.epochs = Integer.parseInt(this.properties.getProperty("epochs", "30"));
-		logger.info("#### epochs: " + this.epochs );
+		readTrainingProperties();
 
 		// epochs
 		this.hasher = this.properties.getProperty("hasher", "Universal");
 		logger.info("#### Hasher: " + this.hasher );
 		
 		
-		this.hd = Integer.parseInt(this.properties.getProperty("MLFeatureHashing", "50000000")); 
+		this.hd = Long.parseLong(this.properties.getProperty("MLFeatureHashing", "50000000")); 
 		logger.info("#### Num of ML hashed features: " + this.hd );
+
+		this.weightPrecision = this.properties.getProperty("weightPrecision", "double");
+		logger.info("#### Weight precision: " + this.weightPrecision );
+
 		
 		// sampling ratio 
 		this.samplingRatio = Integer.parseInt(this.properties.getProperty("samplingRate", "1"));
@@ -98,6 +131,59 @@ public class MLL extends AbstractLearner {
 		
 	}
 
+	/**
+	 * Reads the parameters that are not kept in the model, so that a loaded
+	 * model can be trained further.
+	 */
+	protected void readTrainingProperties() {
+		// learning rate
+		this.gamma = Double.parseDouble(this.properties.getProperty("gamma", "1.0"));
+		logger.info("#### gamma: " + this.gamma );
+
+		// scalar
+		this.lambda = Double.parseDouble(this.properties.getProperty("lambda", "1.0"));
+		logger.info("#### lambda: " + this.lambda );
+
+		// epochs
+		this.epochs = Integer.parseInt(this.properties.getProperty("epochs", "30"));
+		logger.info("#### epochs: " + this.epochs );
+
+		this.offHeapWeights = Boolean.parseBoolean(this.properties.getProperty("offHeapWeights", "false"));
+		logger.info("#### Off-heap weights: " + this.offHeapWeights );
+
+		this.weightFile = this.properties.getProperty("weightFile", null);
+		logger.info("#### Weight file: " + this.weightFile );
+
+		this.batchSize = Integer.parseInt(this.properties.getProperty("batchSize", "1"));
+		logger.info("#### Batch size: " + this.batchSize );
+
+		this.optimizerType = this.properties.getProperty("optimizer", "sgd");
+		logger.info("#### Optimizer: " + this.optimizerType );
+	}
+
+	/**
+	 * Prepares a loaded model for training on {@code data}: the parameters
+	 * that are not kept in the model are read from {@code properties}. The
+	 * hashed indices of the labels depend on their number, so the data must
+	 * not have more labels than the model.
+	 */
+	@Override
+	public void prepareContinuedTraining(DataManager data, Properties properties) {
+		if (data.getNumberOfLabels() > this.m)
+			throw new IllegalArgumentException("The data has " + data.getNumberOfLabels() + " labels, the model only "
+					+ this.m);
+		this.properties = properties;
+		this.traindata = data;
+		readTrainingProperties();
+		this.d = Math.max(this.d, data.getNumberOfFeatures());
+		allocateOptimizers();
+	}
+
+	@Override
+	public boolean supportsContinuedTraining() {
+		return true;
+	}
+
 	@Override
 	public void allocateClassifiers(DataManager data) {
 		this.traindata = data;
@@ -110,7 +196,8 @@ public class MLL extends AbstractLearner {
 		logger.info( "Num. of labels: " + this.m + " Dim: " + this.d + " Hash dim: " + this.hd );
 		logger.info( "Allocate the learners..." );
 
-		this.w = new double[this.hd];
+		this.w = WeightStoreFactory.createWeightStore(this.weightPrecision, this.hd, this.offHeapWeights, this.weightFile);
+		logger.info( "Weight memory: " + (this.w.getMemorySize() >> 20) + " MB" );
 		this.thresholds = new double[this.m];
 		this.bias = new double[this.m];
 
@@ -122,6 +209,7 @@ public class MLL extends AbstractLearner {
 		this.scalararray = new double[this.m];
 		Arrays.fill(this.Tarray, 1);
 		Arrays.fill(this.scalararray, 1.0);
+		allocateOptimizers();
 
 		
 		this.numOfUpdates = new int[this.m]; 
@@ -136,22 +224,35 @@ public class MLL extends AbstractLearner {
 	
 	
 
-	protected void updatedPosteriors( AVPair[] x, int label, double inc) {
+	protected void allocateOptimizers() {
+		this.weightOptimizer = null;
+		this.biasOptimizer = null;
+		if (this.optimizerType.compareTo("sgd") != 0) {
+			this.weightOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.hd, this.weightPrecision, this.offHeapWeights);
+			this.biasOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.m, "double", false);
+			logger.info( "Optimizer memory: " + (this.weightOptimizer.getMemorySize() >> 20) + " MB" );
+		}
+	}
+
+	protected void updatedPosteriors( SparseVector x, int label, double inc) {
+		if (this.weightOptimizer != null) {
+			this.fh.prepareRow(x, this.preparedRow);
+			adaptiveUpdate(this.preparedRow, label, inc);
+			return;
+		}
 	
 		this.learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarray[label]);
 		this.Tarray[label]++;
 		this.scalararray[label] *= (1 + this.learningRate * this.lambda);
 
-		int n = x.length;
-		
-		for(int i = 0; i < n; i++) {
+		for(int i = x.start; i < x.end; i++) {
 
-			int index = fh.getIndex(label, x[i].index);
-			int sign = fh.getSign(label, x[i].index);
+			long index = fh.getLongIndex(label, x.indices[i]);
+			int sign = fh.getSign(label, x.indices[i]);
 			
-			double gradient = this.scalararray[label] * inc * (x[i].value * sign);
+			double gradient = this.scalararray[label] * inc * (x.values[i] * sign);
 			double update = (this.learningRate * gradient);		
-			this.w[index] -= update; 
+			this.w.add(index, -update); 
 		}
 
 		
@@ -162,6 +263,106 @@ public class MLL extends AbstractLearner {
 	}
 
 
+	/**
+	 * Applies the gradient {@code inc * x + lambda * w} of {@code label} with
+	 * the adaptive optimizers; the scalar of the label stays one.
+	 */
+	protected void adaptiveUpdate( PreparedRow row, int label, double inc) {
+		int step = this.Tarray[label]++;
+		double stepFactor = this.weightOptimizer.getStepFactor(step);
+		for (int i = 0; i < row.length; i++) {
+			long index = fh.getLongIndex(row, i, label);
+			int sign = fh.getSign(row, i, label);
+			double gradient = inc * (row.values[i] * sign) + this.lambda * this.w.get(index);
+			this.w.add(index, -this.weightOptimizer.step(index, gradient, stepFactor));
+		}
+		this.bias[label] -= this.biasOptimizer.step(label, inc, this.biasOptimizer.getStepFactor(step));
+	}
+
+
+	/**
+	 * Adds {@code instance} to the mini-batch. The row is copied, so the data
+	 * manager may reuse it.
+	 *
+	 * @return True if the batch is full.
+	 */
+	protected boolean addToBatch(Instance instance, HashSet<Integer> positiveLabels, HashSet<Integer> negativeLabels) {
+		int b = this.batchLength++;
+		this.fh.prepareRow(instance.x, this.batchRows[b]);
+
+		for (int j : positiveLabels) {
+			addBatchEntry(j, b, true);
+		}
+		for (int j : negativeLabels) {
+			addBatchEntry(j, b, false);
+		}
+
+		return this.batchLength == this.batchRows.length;
+	}
+
+	protected void addBatchEntry(int label, int instance, boolean isPositive) {
+		if (this.numOfBatchEntries == this.batchEntries.length)
+			this.batchEntries = Arrays.copyOf(this.batchEntries, 2 * this.numOfBatchEntries);
+		this.batchEntries[this.numOfBatchEntries++] = (((long) label) << 32) | (instance << 1) | (isPositive ? 1 : 0);
+	}
+
+	/**
+	 * Applies the updates of the mini-batch label by label and empties the
+	 * batch. The posteriors of a label are computed for all its instances
+	 * before its weights change, and its learning rate schedule advances
+	 * once by the number of these instances.
+	 */
+	protected void trainBatch() {
+		long[] entries = this.batchEntries;
+		Arrays.sort(entries, 0, this.numOfBatchEntries);
+
+		int start = 0;
+		while (start < this.numOfBatchEntries) {
+			int label = (int) (entries[start] >>> 32);
+			int end = start + 1;
+			while ((end < this.numOfBatchEntries) && ((int) (entries[end] >>> 32) == label)) {
+				end++;
+			}
+
+			for (int e = start; e < end; e++) {
+				double posterior = getUncalibratedPosteriors(this.batchRows[((int) entries[e]) >>> 1], label);
+				boolean isPositive = (entries[e] & 1) == 1;
+				this.batchIncs[e - start] = isPositive ? -(1.0 - posterior) : -(0.0 - posterior);
+			}
+
+			int n = end - start;
+			if (this.weightOptimizer != null) {
+				for (int e = start; e < end; e++) {
+					adaptiveUpdate(this.batchRows[((int) entries[e]) >>> 1], label, this.batchIncs[e - start]);
+				}
+				start = end;
+				continue;
+			}
+			this.learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarray[label]);
+			this.Tarray[label] += n;
+			this.scalararray[label] *= Math.pow(1 + this.learningRate * this.lambda, n);
+			double stepSize = this.learningRate * this.scalararray[label];
+
+			double sumOfIncs = 0.0;
+			for (int e = start; e < end; e++) {
+				PreparedRow row = this.batchRows[((int) entries[e]) >>> 1];
+				double step = stepSize * this.batchIncs[e - start];
+				for (int i = 0; i < row.length; i++) {
+					long index = fh.getLongIndex(row, i, label);
+					int sign = fh.getSign(row, i, label);
+					this.w.add(index, -step * (row.values[i] * sign));
+				}
+				sumOfIncs += this.batchIncs[e - start];
+			}
+			this.bias[label] -= stepSize * sumOfIncs;
+
+			start = end;
+		}
+
+		this.batchLength = 0;
+		this.numOfBatchEntries = 0;
+	}
+
 	@Override
 	public void train(DataManager data) {
 		
@@ -169,6 +370,15 @@ public class MLL extends AbstractLearner {
 		HashSet<Integer> negativeLabels = new HashSet<>();
 		
 		Random random = new Random(1);
+
+		if (this.batchSize > 1) {
+			this.batchRows = new PreparedRow[this.batchSize];
+			for (int i = 0; i < this.batchSize; i++) {
+				this.batchRows[i] = new PreparedRow();
+			}
+			this.batchEntries = new long[4 * this.batchSize];
+			this.batchIncs = new double[this.batchSize];
+		}
 		
 		for (int ep = 0; ep < this.epochs; ep++) {
 
@@ -205,22 +415,29 @@ public class MLL extends AbstractLearner {
 				//System.out.println("Positive labels: " + positiveLabels.toString());
 				
 				//System.out.println("Negative labels: " + negativeLabels.toString());
+
+				if (this.batchRows != null) {
+					if (addToBatch(instance, positiveLabels, negativeLabels))
+						trainBatch();
+				} else {
 				
-				for(int j:positiveLabels) {
+					for(int j:positiveLabels) {
 
-					double posterior = getUncalibratedPosteriors(instance.x,j);
-					double inc = -(1.0 - posterior); 
+						double posterior = getUncalibratedPosteriors(instance.x,j);
+						double inc = -(1.0 - posterior); 
 
-					updatedPosteriors(instance.x, j, inc);
-				}
+						updatedPosteriors(instance.x, j, inc);
+					}
 
-				for(int j:negativeLabels) {
+					for(int j:negativeLabels) {
 
-					double posterior = getUncalibratedPosteriors(instance.x,j);
-					double inc = -(0.0 - posterior); 
+						double posterior = getUncalibratedPosteriors(instance.x,j);
+						double inc = -(0.0 - posterior); 
 					
-					updatedPosteriors(instance.x, j, inc);
-				}	
+						updatedPosteriors(instance.x, j, inc);
+					}	
+
+				}
 				
 				//if(i == 5) System.exit(1);
 				
@@ -234,22 +451,23 @@ public class MLL extends AbstractLearner {
 				}
 
 			}
+			if (this.batchLength > 0)
+				trainBatch();
 			data.reset();
 			
 			System.out.println("--> END of Epoch: " + (ep + 1) + " (" + this.epochs + ")" );
 		}
 		
-		int zeroW = 0;
+		long zeroW = 0;
 		double sumW = 0;
-		int maxNonZero = 0;
-		int index = 0;
-		for(double weight : w) {
+		long maxNonZero = 0;
+		for(long index = 0; index < w.size(); index++) {
+			double weight = w.get(index);
 			if(weight == 0) zeroW++;
 			else maxNonZero = index;
 			sumW += weight;
-			index++;
 		}
-		System.out.println("Hash weights (lenght, zeros, nonzeros, ratio, sumW, last nonzero): " + w.length + ", " + zeroW + ", " + (w.length - zeroW) + ", " + (double) (w.length - zeroW)/(double) w.length + ", " + sumW + ", " + maxNonZero);
+		System.out.println("Hash weights (lenght, zeros, nonzeros, ratio, sumW, last nonzero): " + w.size() + ", " + zeroW + ", " + (w.size() - zeroW) + ", " + (double) (w.size() - zeroW)/(double) w.size() + ", " + sumW + ", " + maxNonZero);
 
 		for(int i = 0; i < this.m; i++) {
 			this.contextChange[i] = this.computeContextChange(this.numOfPositiveUpdates[i], this.numOfUpdates[i], (this.T * this.epochs));
@@ -271,7 +489,7 @@ public class MLL extends AbstractLearner {
 	
 	
 	@Override
-	public double getPosteriors(AVPair[] x, int label) {
+	public double getPosteriors(SparseVector x, int label) {
 	 
 		double posterior = getUncalibratedPosteriors(x, label);
 		//System.out.print(label + "\t" + posterior);
@@ -281,15 +499,15 @@ public class MLL extends AbstractLearner {
 
 	}
 
-	public double getUncalibratedPosteriors(AVPair[] x, int label) {
+	public double getUncalibratedPosteriors(SparseVector x, int label) {
 		
 		double posterior = 0.0;
 		
-		for (int i = 0; i < x.length; i++) {
+		for (int i = x.start; i < x.end; i++) {
 			
-			int hi = fh.getIndex(label,  x[i].index); 
-			int sign = fh.getSign(label, x[i].index);
-			posterior += (x[i].value *sign) * (1/this.scalararray[label]) * this.w[hi];
+			long hi = fh.getLongIndex(label,  x.indices[i]); 
+			int sign = fh.getSign(label, x.indices[i]);
+			posterior += (x.values[i] *sign) * (1/this.scalararray[label]) * this.w.get(hi);
 		}
 		
 		posterior += (1/this.scalararray[label]) * this.bias[label]; 
@@ -298,4 +516,32 @@ public class MLL extends AbstractLearner {
 		return posterior;
 
 	}
+
+	protected double getUncalibratedPosteriors(PreparedRow row, int label) {
+
+		double posterior = 0.0;
+
+		for (int i = 0; i < row.length; i++) {
+			long hi = fh.getLongIndex(row, i, label);
+			int sign = fh.getSign(row, i, label);
+			posterior += (row.values[i] * sign) * this.w.get(hi);
+		}
+
+		posterior = (posterior + this.bias[label]) / this.scalararray[label];
+		posterior = s.value(posterior);
+
+		return posterior;
+	}
+
+	public WeightStore getWeightStore() {
+		return this.w;
+	}
+
+	protected Object readResolve() {
+		this.fh = FeatureHasherFactory.createFeatureHasher(this.hasher, fhseed, this.hd, this.m);
+		this.s = new Sigmoid();
+		this.preparedRow = new PreparedRow();
+		this.T = 1;
+		return this;
+	}
 }
@@ -1,7 +1,10 @@
 package Learner;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.TreeSet;
@@ -10,24 +13,36 @@ import org.apache.commons.math3.analysis.function.Sigmoid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import Data.AVPair;
 //import Data.AVTable;
 import Data.ComparablePair;
 import Data.EstimatePair;
+import Data.HashedRow;
 import Data.Instance;
 import Data.NodeComparatorPLT;
 import Data.NodePLT;
+import Data.PreparedRow;
+import Data.SparseVector;
 import IO.DataManager;
 import preprocessing.FeatureHasher;
 import preprocessing.FeatureHasherFactory;
+import preprocessing.PartitionedHasher;
 import threshold.ThresholdTunerFactory;
+import util.CompiledTree;
 import util.CompleteTree;
+import util.GrowingTree;
 import util.HuffmanTree;
+import util.MappedWeightStore;
+import util.NodeSet;
+import util.Optimizer;
+import util.OptimizerFactory;
 import util.PrecomputedTree;
+import util.SparseWeightStore;
 import util.Tree;
+import util.WeightStore;
+import util.WeightStoreFactory;
 
 public class PLT extends AbstractLearner {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 	private static Logger logger = LoggerFactory.getLogger(PLT.class);
 	/**
 	 * Number of node of the trees
@@ -49,16 +64,87 @@ public class PLT extends AbstractLearner {
 	transient protected FeatureHasher fh = null;
 	protected String hasher = "Universal";
 	protected int fhseed = 1;
+	/**
+	 * Number of tasks the hasher was created with. The hashed indices depend
+	 * on it, so it stays fixed when nodes are added to the tree.
+	 */
+	protected int fhTasks = 0;
 	/**
 	 * Hashed dimension, i.e. number of ML hashed features.
 	 */
-	protected int hd;
+	protected long hd;
 
 	protected double[] bias;
-	protected double[] w = null;
+	protected WeightStore w = null;
+	/**
+	 * Storage type of {@code w}: double, float, int16 or int8.
+	 */
+	protected String weightPrecision = "double";
+	/**
+	 * Keep {@code w} outside of the Java heap, optionally as a mapping of
+	 * {@code weightFile}. Needed for more than 2^31 hashed features.
+	 */
+	transient protected boolean offHeapWeights = false;
+	transient protected String weightFile = null;
+	/**
+	 * Format of the saved model: serialized or binary, see
+	 * {@link PLTModelFile}.
+	 */
+	protected String modelFormat = "serialized";
+	/**
+	 * A binary model file keeps only the non-zero weights if they are fewer
+	 * than this fraction, as floats or as int16 levels ({@code sparseModelValues}).
+	 */
+	transient protected double sparseModelDensity = 0.0;
+	transient protected String sparseModelValues = "float";
 
-	transient protected int[] Tarray = null;
+	/**
+	 * Number of updates of each node, which sets its learning rate. It is
+	 * kept in the model so that the training can be continued.
+	 */
+	protected int[] Tarray = null;
+	/**
+	 * The weights of node {@code label} are kept scaled, i.e. the effective
+	 * weights are {@code w/scalararray[label]}, so that the L2 shrinkage of a
+	 * step is a single multiplication of the scalar.
+	 */
 	protected double[] scalararray = null;
+	/**
+	 * When the scalar of a node exceeds this bound, it is folded back into the
+	 * weights of the node and reset to one. This needs a hasher that gives
+	 * every node its own slots, see {@link #ownsHashedSlots()}: only the Mask
+	 * hasher with a power of two of at least d*t hashed features. With any
+	 * other hasher or size the scalars are never renormalized.
+	 */
+	transient protected double scalarBound = 1e6;
+	/**
+	 * Score single rows by hashing them into a buffer first and gathering the
+	 * weights in a second pass, as training does. Without vector instructions
+	 * this is slower than the per-feature loop when the hashed row is not
+	 * reused, so it is off by default.
+	 */
+	transient protected boolean twoPassScoring = false;
+	/**
+	 * Hashing buffers of the threads calling
+	 * {@link #getPartialPosteriors(SparseVector, int)} or
+	 * {@link #updatedPosteriors(SparseVector, int, double)} directly.
+	 */
+	protected static final ThreadLocal<HashedRow> rowBuffers = new ThreadLocal<HashedRow>() {
+		@Override
+		protected HashedRow initialValue() {
+			return new HashedRow();
+		}
+	};
+	/**
+	 * Prepared rows of the threads running a query, see
+	 * {@link #prepareRow(SparseVector)}.
+	 */
+	protected static final ThreadLocal<PreparedRow> preparedRows = new ThreadLocal<PreparedRow>() {
+		@Override
+		protected PreparedRow initialValue() {
+			return new PreparedRow();
+		}
+	};
 
 	protected double gamma = 0; // learning rate
 	transient protected int step = 0;
@@ -68,6 +154,88 @@ public class PLT extends AbstractLearner {
 	protected double lambda = 0.00001;
 	protected int epochs = 1;
 
+	/**
+	 * Number of Hogwild-style SGD workers sharing {@code w}, {@code bias},
+	 * {@code Tarray} and {@code scalararray}. One means the serial path.
+	 * The parallel modes run in a {@link PLTTrainer}.
+	 */
+	transient protected int trainThreads = 1;
+	/**
+	 * If set, the serial path is used regardless of {@code trainThreads}, so
+	 * that two runs with the same data produce the same model.
+	 */
+	transient protected boolean deterministicTraining = false;
+	/**
+	 * Number of instances whose updates are grouped by node and applied
+	 * together, see {@link PLTTrainer}. One means an SGD step per node and
+	 * instance.
+	 */
+	transient protected int batchSize = 1;
+	/**
+	 * Update rule of the weights: sgd (the scaled L2 schedule above),
+	 * adagrad or adam. The adaptive rules keep the scalars at one and take
+	 * the L2 term of a slot into its gradient when the slot is updated.
+	 */
+	transient protected String optimizerType = "sgd";
+	transient protected Optimizer weightOptimizer = null;
+	transient protected Optimizer biasOptimizer = null;
+	/**
+	 * Sharded training: this learner only trains the nodes owned by shard
+	 * {@code shard} of {@code numOfShards}, see {@link #assignShards()}. The
+	 * shards are merged with {@link #mergeShard(PLT)}.
+	 */
+	protected int numOfShards = 1;
+	protected int shard = 0;
+	transient protected int[] nodeShards = null;
+	/**
+	 * Subtree-parallel training: the subtrees are split into
+	 * {@code numOfPartitions} partitions, see {@link #partitionNodes(int)},
+	 * each trained by its own thread in its own region of {@code w} (see
+	 * {@link PartitionedHasher}). The nodes above the subtrees are trained by
+	 * the thread reading the data.
+	 */
+	protected int numOfPartitions = 1;
+	transient protected int[] nodePartitions = null;
+	protected static final int coordinatorPartition = -1;
+	protected static final int allPartitions = -2;
+	/**
+	 * Bias of the new leaf of the label of a split leaf. Its posterior is
+	 * above {@code 1 - 1e-6}, so the label keeps its marginal until the new
+	 * leaf is trained.
+	 */
+	protected static final double movedLabelBias = 14.0;
+	/**
+	 * Striped locks guarding the per-node learning rate bookkeeping (
+	 * {@code Tarray}, {@code scalararray}) of the parallel workers. The
+	 * weight updates themselves are lock-free.
+	 */
+	transient protected Object[] nodeLocks = null;
+	/**
+	 * Capacity of the queues between the thread reading the data and the
+	 * training threads.
+	 */
+	protected static final int defaultQueueSize = 16384;
+	transient protected int queueSize = defaultQueueSize;
+	/**
+	 * Add the labels of the training data that are not in the tree when they
+	 * are first seen, see {@link #addLabel(int, SparseVector)}.
+	 */
+	transient protected boolean growTree = false;
+	/**
+	 * Instances with labels to add at the end of the epoch, only used while
+	 * the workers of a parallel epoch run, see
+	 * {@link #addNewLabels(Instance)}.
+	 */
+	transient protected List<Instance> pendingInstances = null;
+	transient protected boolean deferNewLabels = false;
+
+	/**
+	 * For {@link PLTModelFile}.
+	 */
+	protected PLT() {
+		super(null);
+	}
+
 	public PLT(Properties properties) {
 		super(properties);
 
@@ -89,9 +257,15 @@ public class PLT extends AbstractLearner {
 		this.hasher = this.properties.getProperty("hasher", "Mask");
 		logger.info("#### Hasher: " + this.hasher);
 
-		this.hd = Integer.parseInt(this.properties.getProperty("MLFeatureHashing", "50000000"));
+		this.hd = Long.parseLong(this.properties.getProperty("MLFeatureHashing", "50000000"));
 		logger.info("#### Number of ML hashed features: " + this.hd);
 
+		this.weightPrecision = this.properties.getProperty("weightPrecision", "double");
+		logger.info("#### weight precision: " + this.weightPrecision);
+
+		this.modelFormat = this.properties.getProperty("modelFormat", "serialized");
+		logger.info("#### model format: " + this.modelFormat);
+
 		// k-ary tree
 		this.k = Integer.parseInt(this.properties.getProperty("k", "2"));
 		logger.info("#### k (order of the tree): " + this.k);
@@ -104,10 +278,78 @@ public class PLT extends AbstractLearner {
 		this.treeFile = this.properties.getProperty("treeFile", null);
 		logger.info("#### tree file name " + this.treeFile);
 
+		this.numOfPartitions = Integer.parseInt(this.properties.getProperty("subtreeThreads", "1"));
+		logger.info("#### subtree threads: " + this.numOfPartitions);
+
+		this.numOfShards = Integer.parseInt(this.properties.getProperty("numOfShards", "1"));
+		this.shard = Integer.parseInt(this.properties.getProperty("shard", "0"));
+		logger.info("#### shard: " + this.shard + " (" + this.numOfShards + ")");
+
+		readTrainingProperties();
+
 		System.out.println("#####################################################");
 
 	}
 
+	/**
+	 * Reads the transient parameters of the training, which are not kept in
+	 * the model.
+	 */
+	protected void readTrainingProperties() {
+		this.offHeapWeights = Boolean.parseBoolean(this.properties.getProperty("offHeapWeights", "false"));
+		logger.info("#### off-heap weights: " + this.offHeapWeights);
+
+		this.weightFile = this.properties.getProperty("weightFile", null);
+		logger.info("#### weight file: " + this.weightFile);
+
+		this.sparseModelDensity = Double.parseDouble(this.properties.getProperty("sparseModelDensity", "0.0"));
+		this.sparseModelValues = this.properties.getProperty("sparseModelValues", "float");
+		logger.info("#### sparse model: density below " + this.sparseModelDensity + ", " + this.sparseModelValues
+				+ " values");
+
+		// number of parallel SGD workers
+		this.trainThreads = Integer.parseInt(this.properties.getProperty("trainThreads", "1"));
+		logger.info("#### training threads: " + this.trainThreads);
+
+		this.deterministicTraining = Boolean.parseBoolean(this.properties.getProperty("deterministicTraining", "false"));
+		logger.info("#### deterministic training: " + this.deterministicTraining);
+
+		this.batchSize = Integer.parseInt(this.properties.getProperty("batchSize", "1"));
+		logger.info("#### batch size: " + this.batchSize);
+
+		this.scalarBound = Double.parseDouble(this.properties.getProperty("scalarBound", "1e6"));
+		logger.info("#### scalar bound: " + this.scalarBound);
+
+		this.optimizerType = this.properties.getProperty("optimizer", "sgd");
+		logger.info("#### optimizer: " + this.optimizerType);
+
+		this.twoPassScoring = Boolean.parseBoolean(this.properties.getProperty("twoPassScoring", "false"));
+		logger.info("#### two-pass scoring: " + this.twoPassScoring);
+
+		this.growTree = Boolean.parseBoolean(this.properties.getProperty("growTree", "false"));
+		logger.info("#### grow tree: " + this.growTree);
+
+		// the field is transient, so a deserialized model has to get it back
+		this.queueSize = defaultQueueSize;
+	}
+
+	public WeightStore getWeightStore() {
+		return this.w;
+	}
+
+	@Override
+	public void savemodel(String fname) throws IOException {
+		trimToSize();
+		if (PLTModelFile.name.equals(this.modelFormat)) {
+			if (this.getClass() == PLT.class) {
+				PLTModelFile.write(this, fname);
+				return;
+			}
+			logger.info("Binary model files are only written for PLT, serializing " + this.getClass().getSimpleName());
+		}
+		super.savemodel(fname);
+	}
+
 	public void printParameters() {
 		super.printParameters();
 		logger.info("#### gamma: " + this.gamma);
@@ -115,9 +357,15 @@ public class PLT extends AbstractLearner {
 		logger.info("#### epochs: " + this.epochs);
 		logger.info("#### Hasher: " + this.hasher);
 		logger.info("#### Number of ML hashed features: " + this.hd);
+		logger.info("#### weight precision: " + this.weightPrecision);
 		logger.info("#### k (order of the tree): " + this.k);
 		logger.info("#### tree type: " + this.treeType);
 		logger.info("#### tree file: " + this.treeFile);
+		logger.info("#### training threads: " + this.trainThreads);
+		logger.info("#### batch size: " + this.batchSize);
+		logger.info("#### scalar bound: " + this.scalarBound);
+		logger.info("#### optimizer: " + this.optimizerType);
+		logger.info("#### subtree threads: " + this.numOfPartitions);
 	}
 
 	@Override
@@ -126,21 +374,11 @@ public class PLT extends AbstractLearner {
 		this.m = data.getNumberOfLabels();
 		this.d = data.getNumberOfFeatures();
 
-		switch (this.treeType) {
-		case CompleteTree.name:
-			this.tree = new CompleteTree(this.k, this.m);
-			break;
-		case PrecomputedTree.name:
-			this.tree = new PrecomputedTree(this.treeFile);
-			break;
-		case HuffmanTree.name:
-			this.tree = new HuffmanTree(data, this.treeFile);
-			break;
-		default:
-			System.err.println("Unknown tree type!");
-			System.exit(-1);
-		}
+		this.tree = createTree(data);
 		this.t = this.tree.getSize();
+		this.fhTasks = this.t;
+		if (this.growTree)
+			enableTreeGrowth();
 
 		thresholdTuner = ThresholdTunerFactory.createThresholdTuner(m, properties);
 		if (thresholdTuner != null)
@@ -153,11 +391,13 @@ public class PLT extends AbstractLearner {
 		logger.info("#### Num. of node of the trees: " + this.t);
 		logger.info("#####################################################");
 
-		this.fh = FeatureHasherFactory.createFeatureHasher(this.hasher, fhseed, this.hd, this.t);
+		this.fh = createFeatureHasher();
 
 		logger.info("Allocate the learners...");
 
-		this.w = new double[this.hd];
+		this.w = WeightStoreFactory.createWeightStore(this.weightPrecision, this.hd, this.offHeapWeights,
+				this.weightFile);
+		logger.info("Weight memory: " + (this.w.getMemorySize() >> 20) + " MB");
 		this.thresholds = new double[this.t];
 		this.bias = new double[this.t];
 
@@ -172,110 +412,517 @@ public class PLT extends AbstractLearner {
 		this.scalararray = new double[this.t];
 		Arrays.fill(this.Tarray, 1);
 		Arrays.fill(this.scalararray, 1.0);
+
+		allocateOptimizers();
+
+		if (this.numOfShards > 1)
+			assignShards();
 	}
 
+	/**
+	 * Prepares a loaded model for training on {@code data}: the training
+	 * parameters are read from {@code properties}, where gamma, lambda and
+	 * epochs default to those of the model, the labels of {@code data} missing
+	 * from the tree are added as new leaves (with {@code growTree} when they
+	 * are first seen), and the weights are made writable. The learning rates
+	 * continue from the kept {@code Tarray}, the state of an adaptive
+	 * optimizer starts anew.
+	 */
 	@Override
-	public void train(DataManager data) {
-		for (int ep = 0; ep < this.epochs; ep++) {
+	public void prepareContinuedTraining(DataManager data, Properties properties) {
+		if (!supportsContinuedTraining())
+			throw new IllegalStateException("The training of " + this.getClass().getSimpleName()
+					+ " cannot be continued");
+		if (this.numOfShards > 1)
+			throw new IllegalStateException("Shard " + this.shard + " of " + this.numOfShards
+					+ " cannot be trained further, merge the shards first");
+		this.properties = properties;
+		this.traindata = data;
+		this.gamma = Double.parseDouble(properties.getProperty("gamma", Double.toString(this.gamma)));
+		this.lambda = Double.parseDouble(properties.getProperty("lambda", Double.toString(this.lambda)));
+		this.epochs = Integer.parseInt(properties.getProperty("epochs", Integer.toString(this.epochs)));
+		this.modelFormat = properties.getProperty("modelFormat", this.modelFormat);
+		logger.info("#### gamma: " + this.gamma);
+		logger.info("#### lambda: " + this.lambda);
+		logger.info("#### epochs: " + this.epochs);
+		logger.info("#### model format: " + this.modelFormat);
+		readTrainingProperties();
 
-			logger.info("#############--> BEGIN of Epoch: {} ({})", (ep + 1), this.epochs);
-			// random permutation
+		this.d = Math.max(this.d, data.getNumberOfFeatures());
+		if (this.growTree)
+			enableTreeGrowth();
+		else
+			addLabels(data.getNumberOfLabels());
+		allocateTrainableWeights();
 
-			while (data.hasNext() == true) {
+		thresholdTuner = ThresholdTunerFactory.createThresholdTuner(this.m, properties);
+		allocateOptimizers();
+		logger.info("#### Num. of labels: " + this.m + " Dim: " + this.d);
+		logger.info("#### Num. of node of the trees: " + this.t);
+	}
 
-				Instance instance = data.getNextInstance();
+	@Override
+	public boolean supportsContinuedTraining() {
+		return true;
+	}
 
-				HashSet<Integer> positiveTreeIndices = new HashSet<Integer>();
-				HashSet<Integer> negativeTreeIndices = new HashSet<Integer>();
+	/**
+	 * Adds the labels below {@code m} that are not in the tree yet, see
+	 * {@link CompiledTree#addLabels(int)}. The node-indexed arrays grow with the
+	 * tree; a leaf that is split keeps its node and classifier as the parent
+	 * of its label, whose new leaf starts with {@code movedLabelBias}.
+	 */
+	protected void addLabels(int m) {
+		CompiledTree tree = ((CompiledTree) this.tree).addLabels(m);
+		if (tree == this.tree)
+			return;
+		int t = tree.getSize();
+		logger.info("The tree grows from " + this.t + " to " + t + " nodes for " + m + " labels");
+
+		ensureNodeCapacity(t);
+		for (int node = this.t; node < t; node++) {
+			inheritPartition(node, tree.getParent(node));
+			if (tree.isLeaf(node) && this.tree.hasLabel(tree.getLabelIndex(node)))
+				this.bias[node] = movedLabelBias;
+		}
+		this.tree = tree;
+		this.t = t;
+		this.m = tree.getNumberOfLeaves();
+	}
 
-				for (int j = 0; j < instance.y.length; j++) {
+	/**
+	 * Replaces the tree by a {@link GrowingTree}, unless it is one already.
+	 */
+	protected void enableTreeGrowth() {
+		if (this.numOfShards > 1)
+			throw new IllegalArgumentException("The tree of a shard cannot grow");
+		if (!(this.tree instanceof GrowingTree))
+			this.tree = new GrowingTree(this.tree);
+	}
 
-					int treeIndex = this.tree.getTreeIndex(instance.y[j]); // +
-																			// traindata.m
-																			// -
-																			// 1;
-					positiveTreeIndices.add(treeIndex);
+	/**
+	 * Adds {@code label} to the tree while other threads may train or query
+	 * the model. Starting at the root, the child with the highest posterior of
+	 * {@code x} is followed down to the first node with room for another
+	 * child, to which the label is attached, or to a leaf, which it splits.
+	 * The leaf keeps its classifier as the parent of its old label, whose new
+	 * leaf starts with {@code movedLabelBias}. The node-indexed arrays grow by
+	 * doubling and are replaced before the tree shows the new nodes, so they
+	 * must not be full while other threads train the model, see
+	 * {@link #addNewLabels(Instance)}.
+	 */
+	public synchronized void addLabel(int label, SparseVector x) {
+		if (this.tree.hasLabel(label))
+			return;
+		enableTreeGrowth();
+		GrowingTree tree = (GrowingTree) this.tree;
+
+		PreparedRow row = prepareRow(x);
+		int node = 0;
+		while ((tree.getFreeChildren(node) == 0) && !tree.isLeaf(node)) {
+			int best = -1;
+			double bestPosterior = -1.0;
+			for (int c = tree.childStart(node); c < tree.childEnd(node); c++) {
+				int child = tree.childAt(c);
+				double posterior = getPartialPosteriors(row, child);
+				if (posterior > bestPosterior) {
+					best = child;
+					bestPosterior = posterior;
+				}
+			}
+			node = best;
+		}
 
-					while (treeIndex > 0) {
+		boolean split = tree.isLeaf(node);
+		int t = this.t + (split ? 2 : 1);
+		ensureNodeCapacity(t);
+		for (int newNode = this.t; newNode < t; newNode++) {
+			inheritPartition(newNode, node);
+		}
+		// the tree moves the old label to the first new node
+		if (split)
+			this.bias[this.t] = movedLabelBias;
+		tree.addLabel(label, node);
+		this.t = t;
+		this.m = tree.getNumberOfLeaves();
+	}
 
-						treeIndex = (int) this.tree.getParent(treeIndex); // Math.floor((treeIndex
-																			// -
-																			// 1)/2);
-						positiveTreeIndices.add(treeIndex);
+	/**
+	 * Adds the labels of {@code instance} that are not in the tree. While
+	 * the workers of a parallel epoch run, the node-indexed arrays must not be
+	 * replaced, so a label that does not fit into them is added at the end of
+	 * the epoch. In subtree-parallel training every label is, because the
+	 * place of a label would depend on the thread schedule otherwise. The
+	 * instance is trained without these labels until then.
+	 */
+	protected void addNewLabels(Instance instance) {
+		for (int label : instance.y) {
+			if (this.tree.hasLabel(label))
+				continue;
+			if ((this.pendingInstances != null) && (this.deferNewLabels || !hasNodeCapacity(this.t + 2))) {
+				this.pendingInstances.add(instance);
+				return;
+			}
+			addLabel(label, instance.x);
+		}
+	}
 
-					}
-				}
+	/**
+	 * Adds the labels deferred by {@link #addNewLabels(Instance)}. Only
+	 * called while no worker runs.
+	 */
+	protected void addPendingLabels() {
+		List<Instance> pendingInstances = this.pendingInstances;
+		if (pendingInstances.isEmpty())
+			return;
+		this.pendingInstances = null;
+		for (Instance instance : pendingInstances) {
+			addNewLabels(instance);
+		}
+		logger.info("Added the pending labels of {} instances, the tree has {} labels", pendingInstances.size(),
+				this.m);
+		pendingInstances.clear();
+		this.pendingInstances = pendingInstances;
+	}
 
-				if (positiveTreeIndices.size() == 0) {
+	/**
+	 * Makes room for the nodes of the labels of {@code data} that are not in
+	 * the tree, so that the node-indexed arrays are not replaced while the
+	 * workers run.
+	 */
+	protected void reserveNodeCapacity(DataManager data) {
+		int missing = 0;
+		for (int label = 0; label < data.getNumberOfLabels(); label++) {
+			if (!this.tree.hasLabel(label))
+				missing++;
+		}
+		ensureNodeCapacity(this.t + 2 * missing);
+	}
 
-					negativeTreeIndices.add(0);
+	/**
+	 * Puts a new node into the partition of {@code parent}. The regions of
+	 * the hashed weights stay as they are, so the old nodes keep their
+	 * weights.
+	 */
+	protected void inheritPartition(int node, int parent) {
+		if (this.nodePartitions == null)
+			return;
+		int partition = this.nodePartitions[parent];
+		this.nodePartitions[node] = partition;
+		((PartitionedHasher) this.fh).addTask(node,
+				(partition == coordinatorPartition) ? this.numOfPartitions : partition);
+	}
 
-				} else {
+	/**
+	 * @return True if the node-indexed arrays have room for {@code t} nodes.
+	 */
+	protected boolean hasNodeCapacity(int t) {
+		return (t <= this.bias.length) && (t <= this.thresholds.length) && (t <= this.scalararray.length)
+				&& ((this.Tarray == null) || (t <= this.Tarray.length))
+				&& ((this.nodePartitions == null) || (t <= this.nodePartitions.length));
+	}
 
-					for (int positiveNode : positiveTreeIndices) {
+	/**
+	 * Makes room for {@code t} nodes in the node-indexed arrays. They at least
+	 * double, so that adding nodes one by one takes amortised constant time.
+	 * The arrays are copied, so no other thread may update them meanwhile.
+	 */
+	protected void ensureNodeCapacity(int t) {
+		if (hasNodeCapacity(t))
+			return;
+		int capacity = Math.max(t, 2 * this.bias.length);
+
+		double[] thresholds = Arrays.copyOf(this.thresholds, capacity);
+		Arrays.fill(thresholds, this.t, capacity, 0.5);
+		double[] bias = Arrays.copyOf(this.bias, capacity);
+		Arrays.fill(bias, this.t, capacity, 0.0);
+		double[] scalararray = Arrays.copyOf(this.scalararray, capacity);
+		Arrays.fill(scalararray, this.t, capacity, 1.0);
+		this.thresholds = thresholds;
+		this.bias = bias;
+		this.scalararray = scalararray;
+		if (this.Tarray != null) {
+			int[] Tarray = Arrays.copyOf(this.Tarray, capacity);
+			Arrays.fill(Tarray, this.t, capacity, 1);
+			this.Tarray = Tarray;
+		}
+		if (this.nodePartitions != null)
+			this.nodePartitions = Arrays.copyOf(this.nodePartitions, capacity);
+		if (this.biasOptimizer != null) {
+			Optimizer biasOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, capacity,
+					"double", false);
+			biasOptimizer.copyState(this.biasOptimizer, this.t);
+			this.biasOptimizer = biasOptimizer;
+		}
+	}
 
-						if (!this.tree.isLeaf(positiveNode)) {
+	/**
+	 * Cuts the node-indexed arrays to the number of nodes.
+	 */
+	protected void trimToSize() {
+		if (this.bias.length == this.t)
+			return;
+		this.thresholds = Arrays.copyOf(this.thresholds, this.t);
+		this.bias = Arrays.copyOf(this.bias, this.t);
+		this.scalararray = Arrays.copyOf(this.scalararray, this.t);
+		if (this.Tarray != null)
+			this.Tarray = Arrays.copyOf(this.Tarray, this.t);
+	}
 
-							for (int childNode : this.tree.getChildNodes(positiveNode)) {
+	/**
+	 * Replaces the read-only or sparse weights of a loaded model by a store of
+	 * {@code weightPrecision}, which can be trained by many threads.
+	 */
+	protected void allocateTrainableWeights() {
+		if (!(this.w instanceof MappedWeightStore) && !(this.w instanceof SparseWeightStore))
+			return;
+		WeightStore w = WeightStoreFactory.createWeightStore(this.weightPrecision, this.hd, this.offHeapWeights,
+				this.weightFile);
+		for (long index = 0; index < this.w.size(); index++) {
+			double weight = this.w.get(index);
+			if (weight != 0.0)
+				w.add(index, weight);
+		}
+		this.w = w;
+		logger.info("Weight memory: " + (this.w.getMemorySize() >> 20) + " MB");
+	}
 
-								if (!positiveTreeIndices.contains(childNode)) {
-									negativeTreeIndices.add(childNode);
-								}
+	/**
+	 * Builds the tree of {@code treeType}. The model keeps the compiled
+	 * arrays only, so it does not need the tree file after the training.
+	 */
+	protected Tree createTree(DataManager data) {
+		Tree tree = null;
+		switch (this.treeType) {
+		case CompleteTree.name:
+			tree = new CompleteTree(this.k, this.m);
+			break;
+		case PrecomputedTree.name:
+			tree = new PrecomputedTree(this.treeFile);
+			break;
+		case HuffmanTree.name:
+			tree = new HuffmanTree(data, this.treeFile);
+			break;
+		default:
+			System.err.println("Unknown tree type!");
+			System.exit(-1);
+		}
+		return new CompiledTree(tree);
+	}
 
-							}
+	/**
+	 * Creates the hasher of the nodes. With subtree threads the hashed
+	 * weights are split into one region per partition. The regions are laid
+	 * out for the first {@code fhTasks} nodes, the nodes added to the tree
+	 * later are put into the regions of their parents.
+	 */
+	protected FeatureHasher createFeatureHasher() {
+		FeatureHasher featureHasher = FeatureHasherFactory.createFeatureHasher(this.hasher, fhseed, this.hd,
+				this.fhTasks);
+		if (this.numOfPartitions > 1) {
+			if (this.nodePartitions == null)
+				this.nodePartitions = partitionNodes(this.numOfPartitions);
+			int[] regions = new int[this.fhTasks];
+			for (int node = 0; node < this.fhTasks; node++) {
+				regions[node] = (this.nodePartitions[node] == coordinatorPartition) ? this.numOfPartitions
+						: this.nodePartitions[node];
+			}
+			PartitionedHasher partitionedHasher = new PartitionedHasher(featureHasher, this.hd, regions,
+					this.numOfPartitions + 1);
+			for (int node = this.fhTasks; node < this.t; node++) {
+				partitionedHasher.addTask(node, (this.nodePartitions[node] == coordinatorPartition)
+						? this.numOfPartitions : this.nodePartitions[node]);
+			}
+			featureHasher = partitionedHasher;
+		}
+		return featureHasher;
+	}
 
-						}
+	/**
+	 * Splits the nodes into {@code numOfParts} parts: the subtrees under the
+	 * first level of the tree with at least {@code numOfParts} nodes are
+	 * distributed round robin, the levels above it get
+	 * {@code coordinatorPartition}. Since the update of a node only depends
+	 * on the instance and on the weights of the node, the parts can be
+	 * trained independently on the same data. The levels only count the first
+	 * {@code fhTasks} nodes, so the nodes of a grown tree are in the part of
+	 * their parents and the old nodes stay where they were.
+	 */
+	protected int[] partitionNodes(int numOfParts) {
+		int[] parts = new int[this.t];
+		Arrays.fill(parts, coordinatorPartition);
+
+		List<Integer> level = new ArrayList<Integer>();
+		level.add(0);
+		while (level.size() < numOfParts) {
+			List<Integer> nextLevel = new ArrayList<Integer>();
+			for (int node : level) {
+				if (!this.tree.isLeaf(node)) {
+					for (int c = this.tree.childStart(node); c < this.tree.childEnd(node); c++) {
+						if (this.tree.childAt(c) < this.fhTasks)
+							nextLevel.add(this.tree.childAt(c));
+					}
+				}
+			}
+			if (nextLevel.isEmpty())
+				break;
+			level = nextLevel;
+		}
 
+		List<Integer> stack = new ArrayList<Integer>();
+		for (int i = 0; i < level.size(); i++) {
+			int part = i % numOfParts;
+			stack.add(level.get(i));
+			while (!stack.isEmpty()) {
+				int node = stack.remove(stack.size() - 1);
+				parts[node] = part;
+				if (!this.tree.isLeaf(node)) {
+					for (int c = this.tree.childStart(node); c < this.tree.childEnd(node); c++) {
+						stack.add(this.tree.childAt(c));
 					}
 				}
+			}
+		}
+		return parts;
+	}
 
-				// logger.info("Negative tree indices: " +
-				// negativeTreeIndices.toString());
+	/**
+	 * Assigns the nodes to the shards with {@link #partitionNodes(int)}; the
+	 * levels above the subtrees are owned by shard zero.
+	 */
+	protected void assignShards() {
+		this.nodeShards = partitionNodes(this.numOfShards);
+
+		int owned = 0;
+		for (int node = 0; node < this.t; node++) {
+			if (this.nodeShards[node] == coordinatorPartition)
+				this.nodeShards[node] = 0;
+			if (this.nodeShards[node] == this.shard)
+				owned++;
+		}
+		logger.info("Shard {} of {} owns {} nodes", this.shard, this.numOfShards, owned);
+	}
 
-				for (int j : positiveTreeIndices) {
+	protected boolean ownsNode(int node) {
+		return (this.nodeShards == null) || (this.nodeShards[node] == this.shard);
+	}
 
-					double posterior = getPartialPosteriors(instance.x, j);
-					double inc = -(1.0 - posterior);
+	/**
+	 * @return True if {@code node} is trained by the thread of
+	 *         {@code scratch}.
+	 */
+	protected boolean trainsNode(int node, TrainingScratch scratch) {
+		return ownsNode(node) && ((scratch.partition == allPartitions) || (this.nodePartitions[node] == scratch.partition));
+	}
 
-					updatedPosteriors(instance.x, j, inc);
-				}
+	/**
+	 * Adds the nodes of {@code other}, another shard trained with the same
+	 * configuration, to this learner. The hashed weights are summed: every
+	 * shard only changes the slots of its own nodes, and slots shared by
+	 * nodes of different shards get the sum of their updates, as in a single
+	 * process.
+	 */
+	public void mergeShard(PLT other) {
+		if ((other.t != this.t) || (other.hd != this.hd) || (other.hasher.compareTo(this.hasher) != 0)
+				|| (other.fhseed != this.fhseed) || (other.numOfShards != this.numOfShards)
+				|| (other.numOfPartitions != this.numOfPartitions)) {
+			throw new IllegalArgumentException("The shard was trained with a different configuration");
+		}
+		if (this.nodeShards == null)
+			assignShards();
 
-				for (int j : negativeTreeIndices) {
+		for (long index = 0; index < other.w.size(); index++) {
+			double weight = other.w.get(index);
+			if (weight != 0.0)
+				this.w.add(index, weight);
+		}
 
-					if (j >= this.t)
-						logger.info("ALARM");
+		for (int node = 0; node < this.t; node++) {
+			if (this.nodeShards[node] == other.shard) {
+				this.bias[node] = other.bias[node];
+				this.scalararray[node] = other.scalararray[node];
+				this.Tarray[node] = other.Tarray[node];
+				this.thresholds[node] = other.thresholds[node];
+			}
+		}
+	}
 
-					double posterior = getPartialPosteriors(instance.x, j);
-					double inc = -(0.0 - posterior);
+	/**
+	 * Turns a merged shard into a model of the whole tree.
+	 */
+	public void finishMerge() {
+		this.numOfShards = 1;
+		this.shard = 0;
+		this.nodeShards = null;
+	}
 
-					updatedPosteriors(instance.x, j, inc);
-				}
+	/**
+	 * Creates the optimizers of {@code w} and {@code bias} unless plain SGD is
+	 * used.
+	 */
+	protected void allocateOptimizers() {
+		if (this.optimizerType.compareTo("sgd") == 0)
+			return;
+		this.weightOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.hd,
+				this.weightPrecision, this.offHeapWeights);
+		this.biasOptimizer = OptimizerFactory.createOptimizer(this.optimizerType, this.gamma, this.t, "double",
+				false);
+		logger.info("Optimizer memory: " + (this.weightOptimizer.getMemorySize() >> 20) + " MB");
+	}
 
-				this.T++;
+	/**
+	 * Trains the model for {@code epochs} epochs. The parallel and mini-batch
+	 * modes are trained by a {@link PLTTrainer}, the plain SGD loop is here.
+	 */
+	@Override
+	public void train(DataManager data) {
+		if (this.growTree)
+			reserveNodeCapacity(data);
+		if (!ownsHashedSlots())
+			logger.info("The nodes share hashed weights, so their scalars are not renormalized");
+		PLTTrainer trainer = PLTTrainer.isNeeded(this) ? new PLTTrainer(this) : null;
+		TrainingScratch scratch = createTrainingScratch();
+
+		for (int ep = 0; ep < this.epochs; ep++) {
 
-				if ((this.T % 100000) == 0) {
-					logger.info("\t --> Epoch: " + (ep + 1) + " (" + this.epochs + ")" + "\tSample: " + this.T);
+			logger.info("#############--> BEGIN of Epoch: {} ({})", (ep + 1), this.epochs);
+			// the data manager decides the order, see IO.ShuffledDataManager
+
+			if (trainer == null) {
+				while (data.hasNext() == true) {
+					Instance instance = data.getNextInstance();
+					if (this.growTree)
+						addNewLabels(instance);
+					trainInstance(instance, scratch);
+					this.T++;
+					logProgress(ep);
 				}
+			} else {
+				trainer.trainEpoch(data, ep);
 			}
+			if (this.pendingInstances != null)
+				addPendingLabels();
 			data.reset();
 
 			logger.info("--> END of Epoch: " + (ep + 1) + " (" + this.epochs + ")");
 		}
 
-		int zeroW = 0;
+		if (trainer != null)
+			trainer.shutdown();
+
+		long zeroW = 0;
 		double sumW = 0;
-		int maxNonZero = 0;
-		int index = 0;
-		for (double weight : w) {
+		long maxNonZero = 0;
+		for (long index = 0; index < w.size(); index++) {
+			double weight = w.get(index);
 			if (weight == 0)
 				zeroW++;
 			else
 				maxNonZero = index;
 			sumW += weight;
-			index++;
 		}
-		logger.info("Hash weights (lenght, zeros, nonzeros, ratio, sumW, last nonzero): " + w.length + ", " + zeroW
-				+ ", " + (w.length - zeroW) + ", " + (double) (w.length - zeroW) / (double) w.length + ", " + sumW
+		logger.info("Hash weights (lenght, zeros, nonzeros, ratio, sumW, last nonzero): " + w.size() + ", " + zeroW
+				+ ", " + (w.size() - zeroW) + ", " + (double) (w.size() - zeroW) / (double) w.size() + ", " + sumW
 				+ ", " + maxNonZero);
 
 		// tuning thresholds from learner is optional as of now. if made
@@ -285,32 +932,332 @@ public class PLT extends AbstractLearner {
 		}
 	}
 
-	
+	protected void logProgress(int ep) {
+		if ((this.T % 100000) == 0) {
+			logger.info("\t --> Epoch: " + (ep + 1) + " (" + this.epochs + ")" + "\tSample: " + this.T);
+		}
+	}
 
-	protected void updatedPosteriors(AVPair[] x, int label, double inc) {
+	protected void allocateNodeLocks(int numOfWorkers) {
+		int stripes = Integer.highestOneBit(Math.max(1, Math.min(this.t, 64 * numOfWorkers)) * 2 - 1);
+		this.nodeLocks = new Object[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.nodeLocks[i] = new Object();
+		}
+	}
 
-		this.learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarray[label]);
-		this.Tarray[label]++;
-		this.scalararray[label] *= (1 + this.learningRate * this.lambda);
+	/**
+	 * Per-thread buffers of the training path, so that an instance can be
+	 * processed without allocating.
+	 */
+	protected static class TrainingScratch {
+		public NodeSet positive = null;
+		public NodeSet negative = null;
+		public PreparedRow prepared = new PreparedRow();
+		public HashedRow row = new HashedRow();
+		/**
+		 * Partition of the nodes trained with this scratch, see
+		 * {@code nodePartitions}.
+		 */
+		public int partition = allPartitions;
+
+		public TrainingScratch(int numberOfNodes) {
+			this.positive = new NodeSet(numberOfNodes);
+			this.negative = new NodeSet(numberOfNodes);
+		}
+	}
 
-		int n = x.length;
+	protected TrainingScratch createTrainingScratch() {
+		return new TrainingScratch(this.t);
+	}
 
-		for (int i = 0; i < n; i++) {
+	/**
+	 * Collects the nodes updated by {@code instance} into
+	 * {@code scratch.positive} and {@code scratch.negative}: the paths from the
+	 * labels to the root, and the children of these nodes off the paths. An
+	 * instance without labels is a negative of the root.
+	 */
+	protected void collectNodes(Instance instance, TrainingScratch scratch) {
+		NodeSet positiveTreeIndices = scratch.positive;
+		NodeSet negativeTreeIndices = scratch.negative;
+		positiveTreeIndices.clear();
+		negativeTreeIndices.clear();
+
+		for (int j = 0; j < instance.y.length; j++) {
+			// a new label may wait for the end of the epoch
+			if (this.growTree && !this.tree.hasLabel(instance.y[j]))
+				continue;
+
+			int treeIndex = this.tree.getTreeIndex(instance.y[j]);
+
+			// the path is shared with an earlier label from here up to the root
+			while (positiveTreeIndices.add(treeIndex) && (treeIndex > 0)) {
+				treeIndex = this.tree.getParent(treeIndex);
+			}
+		}
+
+		if (positiveTreeIndices.isEmpty()) {
+
+			negativeTreeIndices.add(0);
+
+		} else {
+
+			for (int i = 0; i < positiveTreeIndices.size(); i++) {
+				int positiveNode = positiveTreeIndices.get(i);
+
+				if (!this.tree.isLeaf(positiveNode)) {
+
+					for (int c = this.tree.childStart(positiveNode); c < this.tree.childEnd(positiveNode); c++) {
+						int childNode = this.tree.childAt(c);
+
+						if (!positiveTreeIndices.contains(childNode)) {
+							negativeTreeIndices.add(childNode);
+						}
+
+					}
+
+				}
+
+			}
+		}
+
+	}
+
+	/**
+	 * Performs the SGD updates of all tree nodes affected by one instance.
+	 * Safe to call from several threads at the same time as long as each of
+	 * them uses its own {@code scratch}.
+	 */
+	protected void trainInstance(Instance instance, TrainingScratch scratch) {
+		collectNodes(instance, scratch);
+		NodeSet positiveTreeIndices = scratch.positive;
+		NodeSet negativeTreeIndices = scratch.negative;
+
+		// the row is hashed once per node for both the posterior and the update
+		PreparedRow prepared = scratch.prepared;
+		HashedRow row = scratch.row;
+		fh.prepareRow(instance.x, prepared);
+
+		for (int i = 0; i < positiveTreeIndices.size(); i++) {
+			int j = positiveTreeIndices.get(i);
+			if (!trainsNode(j, scratch))
+				continue;
+
+			hashRow(prepared, j, row);
+			double posterior = getPartialPosteriors(row, j);
+			double inc = -(1.0 - posterior);
+
+			updatedPosteriors(row, j, inc);
+		}
+
+		for (int i = 0; i < negativeTreeIndices.size(); i++) {
+			int j = negativeTreeIndices.get(i);
+			if (!trainsNode(j, scratch))
+				continue;
+
+			hashRow(prepared, j, row);
+			double posterior = getPartialPosteriors(row, j);
+			double inc = -(0.0 - posterior);
+
+			updatedPosteriors(row, j, inc);
+		}
+	}
+
+	/**
+	 * Advances the learning rate schedule of node {@code label} and returns
+	 * the learning rate of the current step.
+	 */
+	protected double nextLearningRate(int label) {
+		return nextLearningRate(label, 1);
+	}
+
+	/**
+	 * Advances the learning rate schedule of node {@code label} by
+	 * {@code steps} steps taken with the same learning rate, which is
+	 * returned.
+	 */
+	protected double nextLearningRate(int label, int steps) {
+		double learningRate = this.gamma / (1 + this.gamma * this.lambda * this.Tarray[label]);
+		this.Tarray[label] += steps;
+		double shrinkage = 1 + learningRate * this.lambda;
+		this.scalararray[label] *= (steps == 1) ? shrinkage : Math.pow(shrinkage, steps);
+		return learningRate;
+	}
+
+	/**
+	 * Advances the schedule of node {@code label} by {@code steps} steps and
+	 * returns the factor of the gradients in the scaled weights, i.e. the
+	 * learning rate times the scalar of the node.
+	 */
+	protected double nextStepSize(int label, int steps) {
+		double learningRate, scalar;
+		if (this.nodeLocks == null) {
+			learningRate = nextLearningRate(label, steps);
+			// with several workers this is done at the end of the epoch
+			if ((this.scalararray[label] > this.scalarBound) && ownsHashedSlots())
+				renormalize(label);
+			scalar = this.scalararray[label];
+		} else {
+			synchronized (this.nodeLocks[label & (this.nodeLocks.length - 1)]) {
+				learningRate = nextLearningRate(label, steps);
+				scalar = this.scalararray[label];
+			}
+		}
+		return learningRate * scalar;
+	}
+
+	/**
+	 * Hashes {@code x} for node {@code label} into {@code row}.
+	 */
+	protected void hashRow(SparseVector x, int label, HashedRow row) {
+		row.ensureCapacity(x.size());
+		int length = 0;
+		for (int i = x.start; i < x.end; i++) {
+			row.indices[length] = fh.getLongIndex(label, x.indices[i]);
+			row.values[length] = x.values[i] * fh.getSign(label, x.indices[i]);
+			length++;
+		}
+		row.length = length;
+	}
+
+	/**
+	 * Hashes a prepared row for node {@code label} into {@code row}.
+	 */
+	protected void hashRow(PreparedRow prepared, int label, HashedRow row) {
+		row.ensureCapacity(prepared.length);
+		for (int i = 0; i < prepared.length; i++) {
+			row.indices[i] = fh.getLongIndex(prepared, i, label);
+			row.values[i] = prepared.values[i] * fh.getSign(prepared, i, label);
+		}
+		row.length = prepared.length;
+	}
+
+	/**
+	 * Prepares {@code x} for scoring by several nodes in the buffer of the
+	 * calling thread. The buffer is overwritten by the next call on the same
+	 * thread.
+	 */
+	protected PreparedRow prepareRow(SparseVector x) {
+		PreparedRow row = preparedRows.get();
+		fh.prepareRow(x, row);
+		return row;
+	}
+
+	protected void updatedPosteriors(SparseVector x, int label, double inc) {
+		HashedRow row = rowBuffers.get();
+		hashRow(x, label, row);
+		updatedPosteriors(row, label, inc);
+	}
 
-			int index = fh.getIndex(label, x[i].index);
-			int sign = fh.getSign(label, x[i].index);
+	protected void updatedPosteriors(HashedRow row, int label, double inc) {
+		if (this.weightOptimizer != null) {
+			adaptiveUpdate(row, label, inc, nextStep(label));
+			return;
+		}
+		double step = nextStepSize(label, 1) * inc;
+
+		this.w.addScaled(row.indices, row.values, row.length, -step);
+		this.bias[label] -= step;
+	}
+
+	/**
+	 * Applies the updates of {@code n} instances of a mini-batch to node
+	 * {@code label} with a single learning rate.
+	 */
+	protected void updatedPosteriors(HashedRow[] rows, double[] incs, int n, int label) {
+		if (this.weightOptimizer != null) {
+			// the adaptive rules have per-slot learning rates, so the
+			// instances of the batch are applied one by one
+			for (int j = 0; j < n; j++) {
+				adaptiveUpdate(rows[j], label, incs[j], nextStep(label));
+			}
+			return;
+		}
+		double stepSize = nextStepSize(label, n);
 
-			double gradient = this.scalararray[label] * inc * (x[i].value * sign);
-			double update = (this.learningRate * gradient);// / this.scalar;
-			this.w[index] -= update;
+		double sumOfIncs = 0.0;
+		for (int j = 0; j < n; j++) {
+			this.w.addScaled(rows[j].indices, rows[j].values, rows[j].length, -stepSize * incs[j]);
+			sumOfIncs += incs[j];
+		}
+		this.bias[label] -= stepSize * sumOfIncs;
+	}
 
+	/**
+	 * Counts an update of node {@code label} and returns its number, starting
+	 * at one.
+	 */
+	protected int nextStep(int label) {
+		if (this.nodeLocks == null)
+			return this.Tarray[label]++;
+		synchronized (this.nodeLocks[label & (this.nodeLocks.length - 1)]) {
+			return this.Tarray[label]++;
 		}
+	}
 
-		double gradient = this.scalararray[label] * inc;
-		double update = (this.learningRate * gradient);// / this.scalar;
-		this.bias[label] -= update;
-		// logger.info("bias -> gradient, scalar, update: " + gradient + ", " +
-		// scalar +", " + update);
+	/**
+	 * Applies the gradient {@code inc * row + lambda * w} of node
+	 * {@code label} with the adaptive optimizers. The scalar of the node stays
+	 * one.
+	 */
+	protected void adaptiveUpdate(HashedRow row, int label, double inc, int step) {
+		double stepFactor = this.weightOptimizer.getStepFactor(step);
+		for (int i = 0; i < row.length; i++) {
+			long slot = row.indices[i];
+			double gradient = inc * row.values[i] + this.lambda * this.w.get(slot);
+			this.w.add(slot, -this.weightOptimizer.step(slot, gradient, stepFactor));
+		}
+		this.bias[label] -= this.biasOptimizer.step(label, inc, this.biasOptimizer.getStepFactor(step));
+	}
+
+	/**
+	 * @return True if no hashed slot is shared by two nodes or by two
+	 *         features of a node, so that the scalar of a node can be folded
+	 *         into its slots without changing any other weight.
+	 */
+	protected boolean ownsHashedSlots() {
+		return this.fh.isTaskDisjoint(this.d, this.t);
+	}
+
+	/**
+	 * Folds the scalar of node {@code label} into its hashed weights and its
+	 * bias, which leaves the posteriors of the node unchanged. Only valid if
+	 * {@link #ownsHashedSlots()}, since a shared slot would be rescaled for the
+	 * other nodes as well. Must not run concurrently with updates of the node.
+	 */
+	protected void renormalize(int label) {
+		double scalar = this.scalararray[label];
+		if (scalar == 1.0)
+			return;
+
+		double factor = 1.0 / scalar - 1.0;
+		for (int f = 0; f < this.d; f++) {
+			long slot = fh.getLongIndex(label, f);
+			double weight = this.w.get(slot);
+			if (weight != 0.0)
+				this.w.add(slot, weight * factor);
+		}
+
+		this.bias[label] /= scalar;
+		this.scalararray[label] = 1.0;
+	}
+
+	/**
+	 * Renormalizes every node whose scalar exceeds {@code scalarBound}, unless
+	 * the nodes share hashed slots.
+	 */
+	protected void renormalizeNodes() {
+		if (!ownsHashedSlots())
+			return;
+		int count = 0;
+		for (int label = 0; label < this.t; label++) {
+			if (this.scalararray[label] > this.scalarBound) {
+				renormalize(label);
+				count++;
+			}
+		}
+		if (count > 0)
+			logger.info("Renormalized the weights of {} nodes", count);
 	}
 
 	/**
@@ -324,56 +1271,77 @@ public class PLT extends AbstractLearner {
 	 *         given instance {@code x}, as per current weight vector and bias
 	 *         at node {@code label}.
 	 */
-	public double getPartialPosteriors(AVPair[] x, int label) {
+	public double getPartialPosteriors(SparseVector x, int label) {
+		if (this.twoPassScoring) {
+			HashedRow row = rowBuffers.get();
+			hashRow(x, label, row);
+			return getPartialPosteriors(row, label);
+		}
+
 		double posterior = 0.0;
 
-		for (int i = 0; i < x.length; i++) {
+		for (int i = x.start; i < x.end; i++) {
 
-			int hi = fh.getIndex(label, x[i].index);
-			int sign = fh.getSign(label, x[i].index);
-			posterior += (x[i].value * sign) * (1 / this.scalararray[label]) * this.w[hi];
+			long hi = fh.getLongIndex(label, x.indices[i]);
+			int sign = fh.getSign(label, x.indices[i]);
+			posterior += (x.values[i] * sign) * this.w.get(hi);
 		}
 
-		posterior += (1 / this.scalararray[label]) * this.bias[label];
+		posterior = (posterior + this.bias[label]) / this.scalararray[label];
 		posterior = s.value(posterior);
 
 		return posterior;
+	}
 
+	/**
+	 * Same as {@link #getPartialPosteriors(SparseVector, int)} for a row
+	 * already hashed for node {@code label}.
+	 */
+	protected double getPartialPosteriors(HashedRow row, int label) {
+		double posterior = this.w.dot(row.indices, row.values, row.length);
+		posterior = (posterior + this.bias[label]) / this.scalararray[label];
+		return s.value(posterior);
 	}
 
-	protected Object readResolve() {
-		switch (this.treeType) {
-		case CompleteTree.name:
-			this.tree = new CompleteTree(this.k, this.m);
-			break;
-		case PrecomputedTree.name:
-			this.tree = new PrecomputedTree(this.treeFile);
-			break;
-		case HuffmanTree.name:
-			this.tree = new HuffmanTree(this.treeFile);
-			break;
-		default:
-			System.err.println("Unknown tree type!");
-			System.exit(-1);
+	/**
+	 * Same as {@link #getPartialPosteriors(SparseVector, int)} for a prepared
+	 * row, which only adds the node dependent part of the hash of each
+	 * feature.
+	 */
+	protected double getPartialPosteriors(PreparedRow row, int label) {
+		double posterior = 0.0;
+
+		for (int i = 0; i < row.length; i++) {
+
+			long hi = fh.getLongIndex(row, i, label);
+			int sign = fh.getSign(row, i, label);
+			posterior += (row.values[i] * sign) * this.w.get(hi);
 		}
+
+		posterior = (posterior + this.bias[label]) / this.scalararray[label];
+		return s.value(posterior);
+	}
+
+	protected Object readResolve() {
 		this.t = this.tree.getSize();
-		this.fh = FeatureHasherFactory.createFeatureHasher(this.hasher, fhseed, this.hd, this.t);
+		this.fh = createFeatureHasher();
 		return this;
 	}
 
 	@Override
-	public double getPosteriors(AVPair[] x, int label) {
+	public double getPosteriors(SparseVector x, int label) {
+		PreparedRow row = prepareRow(x);
 		double posterior = 1.0;
 
 		int treeIndex = this.tree.getTreeIndex(label);
 
-		posterior *= getPartialPosteriors(x, treeIndex);
+		posterior *= getPartialPosteriors(row, treeIndex);
 
 		while (treeIndex > 0) {
 
 			treeIndex = this.tree.getParent(treeIndex); // Math.floor((treeIndex
 														// - 1)/2);
-			posterior *= getPartialPosteriors(x, treeIndex);
+			posterior *= getPartialPosteriors(row, treeIndex);
 
 		}
 		// if(posterior > 0.5) logger.info("Posterior: " + posterior + "Label: "
@@ -382,7 +1350,7 @@ public class PLT extends AbstractLearner {
 	}
 
 	@Override
-	public HashSet<Integer> getPositiveLabels(AVPair[] x) {
+	public HashSet<Integer> getPositiveLabels(SparseVector x) {
 
 		HashSet<Integer> positiveLabels = new HashSet<Integer>();
 
@@ -391,18 +1359,20 @@ public class PLT extends AbstractLearner {
 		PriorityQueue<NodePLT> queue = new PriorityQueue<NodePLT>(11, nodeComparator);
 
 		queue.add(new NodePLT(0, 1.0));
+		PreparedRow row = prepareRow(x);
 
 		while (!queue.isEmpty()) {
 
 			NodePLT node = queue.poll();
 
-			double currentP = node.p * getPartialPosteriors(x, node.treeIndex);
+			double currentP = node.p * getPartialPosteriors(row, node.treeIndex);
 
 			if (currentP >= this.thresholds[node.treeIndex]) {
 
 				if (!this.tree.isLeaf(node.treeIndex)) {
 
-					for (int childNode : this.tree.getChildNodes(node.treeIndex)) {
+					for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+						int childNode = this.tree.childAt(c);
 						queue.add(new NodePLT(childNode, currentP));
 					}
 
@@ -420,7 +1390,7 @@ public class PLT extends AbstractLearner {
 	}
 
 	@Override
-	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(AVPair[] x) {
+	public PriorityQueue<ComparablePair> getPositiveLabelsAndPosteriors(SparseVector x) {
 		PriorityQueue<ComparablePair> positiveLabels = new PriorityQueue<>();
 
 		NodeComparatorPLT nodeComparator = new NodeComparatorPLT();
@@ -428,18 +1398,20 @@ public class PLT extends AbstractLearner {
 		PriorityQueue<NodePLT> queue = new PriorityQueue<NodePLT>(11, nodeComparator);
 
 		queue.add(new NodePLT(0, 1.0));
+		PreparedRow row = prepareRow(x);
 
 		while (!queue.isEmpty()) {
 
 			NodePLT node = queue.poll();
 
-			double currentP = node.p * getPartialPosteriors(x, node.treeIndex);
+			double currentP = node.p * getPartialPosteriors(row, node.treeIndex);
 
 			if (currentP > this.thresholds[node.treeIndex]) {
 
 				if (!this.tree.isLeaf(node.treeIndex)) {
 
-					for (int childNode : this.tree.getChildNodes(node.treeIndex)) {
+					for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+						int childNode = this.tree.childAt(c);
 						queue.add(new NodePLT(childNode, currentP));
 					}
 
@@ -457,7 +1429,7 @@ public class PLT extends AbstractLearner {
 	}
 
 	@Override
-	public int[] getTopkLabels(AVPair[] x, int k) {
+	public int[] getTopkLabels(SparseVector x, int k) {
 		int[] positiveLabels = new int[k];
 		int indi = 0;
 
@@ -466,16 +1438,18 @@ public class PLT extends AbstractLearner {
 		PriorityQueue<NodePLT> queue = new PriorityQueue<>(11, nodeComparator);
 
 		queue.add(new NodePLT(0, 1.0));
+		PreparedRow row = prepareRow(x);
 
 		while (!queue.isEmpty()) {
 
 			NodePLT node = queue.poll();
 
-			double currentP = node.p * getPartialPosteriors(x, node.treeIndex);
+			double currentP = node.p * getPartialPosteriors(row, node.treeIndex);
 
 			if (!this.tree.isLeaf(node.treeIndex)) {
 
-				for (int childNode : this.tree.getChildNodes(node.treeIndex)) {
+				for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+					int childNode = this.tree.childAt(c);
 					queue.add(new NodePLT(childNode, currentP));
 				}
 
@@ -502,7 +1476,8 @@ public class PLT extends AbstractLearner {
 		while (treeIndex > 0) {
 			treeIndex = this.tree.getParent(treeIndex);
 			double minThreshold = Double.MAX_VALUE;
-			for (int childNode : this.tree.getChildNodes(treeIndex)) {
+			for (int c = this.tree.childStart(treeIndex); c < this.tree.childEnd(treeIndex); c++) {
+				int childNode = this.tree.childAt(c);
 				minThreshold = this.thresholds[childNode] < minThreshold ? this.thresholds[childNode] : minThreshold;
 			}
 			this.thresholds[treeIndex] = minThreshold;
@@ -516,10 +1491,14 @@ public class PLT extends AbstractLearner {
 			this.thresholds[this.tree.getTreeIndex(j)] = t[j];
 		}
 
-		for (int j = this.tree.getNumberOfInternalNodes() - 1; j >= 0; j--) {
+		// the children of a node come after it, also in a grown tree
+		for (int j = this.t - 1; j >= 0; j--) {
+			if (this.tree.isLeaf(j))
+				continue;
 
 			double minThreshold = Double.MAX_VALUE;
-			for (int childNode : this.tree.getChildNodes(j)) {
+			for (int c = this.tree.childStart(j); c < this.tree.childEnd(j); c++) {
+				int childNode = this.tree.childAt(c);
 				minThreshold = this.thresholds[childNode] < minThreshold ? this.thresholds[childNode] : minThreshold;
 			}
 
@@ -533,7 +1512,7 @@ public class PLT extends AbstractLearner {
 	}
 
 	@Override
-	public HashSet<EstimatePair> getSparseProbabilityEstimates(AVPair[] x, double threshold) {
+	public HashSet<EstimatePair> getSparseProbabilityEstimates(SparseVector x, double threshold) {
 
 		HashSet<EstimatePair> positiveLabels = new HashSet<EstimatePair>();
 
@@ -542,18 +1521,20 @@ public class PLT extends AbstractLearner {
 		PriorityQueue<NodePLT> queue = new PriorityQueue<NodePLT>(11, nodeComparator);
 
 		queue.add(new NodePLT(0, 1.0));
+		PreparedRow row = prepareRow(x);
 
 		while (!queue.isEmpty()) {
 
 			NodePLT node = queue.poll();
 
-			double currentP = node.p * getPartialPosteriors(x, node.treeIndex);
+			double currentP = node.p * getPartialPosteriors(row, node.treeIndex);
 
 			if (currentP >= threshold) {
 
 				if (!this.tree.isLeaf(node.treeIndex)) {
 
-					for (int childNode : this.tree.getChildNodes(node.treeIndex)) {
+					for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+						int childNode = this.tree.childAt(c);
 						queue.add(new NodePLT(childNode, currentP));
 					}
 
@@ -570,7 +1551,15 @@ public class PLT extends AbstractLearner {
 		return positiveLabels;
 	}
 
-	public TreeSet<EstimatePair> getTopKEstimates(AVPair[] x, int k) {
+	@Override
+	public void predictTopK(SparseVector[] xs, int n, int k, int[][] outLabels, float[][] outScores) {
+		TopKSearcher searcher = new TopKSearcher(this);
+		for (int i = 0; i < n; i++) {
+			searcher.search(xs[i], k, outLabels[i], outScores[i]);
+		}
+	}
+
+	public TreeSet<EstimatePair> getTopKEstimates(SparseVector x, int k) {
 
 		TreeSet<EstimatePair> positiveLabels = new TreeSet<EstimatePair>();
 
@@ -581,6 +1570,7 @@ public class PLT extends AbstractLearner {
 		PriorityQueue<NodePLT> queue = new PriorityQueue<NodePLT>(11, nodeComparator);
 
 		queue.add(new NodePLT(0, 1.0));
+		PreparedRow row = prepareRow(x);
 
 		while (!queue.isEmpty() && (foundTop < k)) {
 
@@ -590,8 +1580,9 @@ public class PLT extends AbstractLearner {
 
 			if (!this.tree.isLeaf(node.treeIndex)) {
 
-				for (int childNode : this.tree.getChildNodes(node.treeIndex)) {
-					queue.add(new NodePLT(childNode, currentP * getPartialPosteriors(x, childNode)));
+				for (int c = this.tree.childStart(node.treeIndex); c < this.tree.childEnd(node.treeIndex); c++) {
+					int childNode = this.tree.childAt(c);
+					queue.add(new NodePLT(childNode, currentP * getPartialPosteriors(row, childNode)));
 				}
 
 			} else {
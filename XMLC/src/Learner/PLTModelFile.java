@@ -0,0 +1,386 @@
+package Learner;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import IO.MappedFile;
+import util.CompiledTree;
+import util.MappedWeightStore;
+import util.SparseWeightStore;
+import util.WeightStore;
+import util.WeightStoreFactory;
+
+/**
+ * Binary model file of a {@link PLT} (modelFormat = binary). All numbers are
+ * big-endian:
+ *
+ * <pre>
+ * int    magic, version
+ * long   offset of the weights
+ * String treeType, treeFile, hasher, weightPrecision, modelFormat
+ * int    m, d, k, fhseed, epochs, numOfShards, shard, numOfPartitions
+ * long   hd
+ * double gamma, scalar, lambda
+ * int    fhTasks
+ * tree   see Tree.writeCompiled
+ * double thresholds[], bias[], scalararray[] (each preceded by its int length)
+ * int    Tarray[] (preceded by its length)
+ * int    encoding of the weights
+ * long   number of weights
+ * dense weights (encoding 8 for double precision, 4 otherwise):
+ *   ...          zeros up to the offset of the weights, a multiple of 8
+ *   double/float weights[]
+ * sparse weights (encoding sparseFloat or sparseInt16):
+ *   long         number of non-zero weights
+ *   float        scale of the levels (sparseInt16 only)
+ *   per non-zero weight in the order of the slots:
+ *     varint     the distance to the previous non-zero slot (to -1 for the first)
+ *     float      the weight, or
+ *     short      its level, the weight is level * scale
+ * </pre>
+ *
+ * A string is a boolean, false for null, followed by its modified UTF-8.
+ * Quantized weights are written as floats. The threshold tuner of the
+ * training is not kept.
+ *
+ * The loaded model reads dense weights from a read-only mapping of the file,
+ * so it cannot be trained any further unless the weights are copied. The
+ * weights are written sparse if the fraction of non-zero weights is below
+ * {@code sparseModelDensity}; they are loaded into a {@link SparseWeightStore}
+ * if that takes less memory than a dense float store.
+ */
+public class PLTModelFile {
+	private static Logger logger = LoggerFactory.getLogger(PLTModelFile.class);
+
+	public static final String name = "binary";
+	public static final int magic = 0x504C544D; // "PLTM"
+	public static final int version = 1;
+
+	public static final int denseDouble = 8;
+	public static final int denseFloat = 4;
+	public static final int sparseFloat = -4;
+	public static final int sparseInt16 = -2;
+
+	public static boolean isModelFile(String fname) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(fname));
+		try {
+			return in.readInt() == magic;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	public static void write(PLT model, String fname) throws IOException {
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		writeHeader(model, header);
+		header.close();
+
+		WeightStore w = model.w;
+		int encoding = (model.weightPrecision.compareTo("double") == 0) ? denseDouble : denseFloat;
+		long numOfNonZeros = 0;
+		double maxAbs = 0.0;
+		if (model.sparseModelDensity > 0.0) {
+			for (long i = 0; i < w.size(); i++) {
+				double value = w.get(i);
+				if (value != 0.0) {
+					numOfNonZeros++;
+					maxAbs = Math.max(maxAbs, Math.abs(value));
+				}
+			}
+			if (numOfNonZeros < model.sparseModelDensity * w.size())
+				encoding = (model.sparseModelValues.compareTo("int16") == 0) ? sparseInt16 : sparseFloat;
+			logger.info("Density of the weights: " + ((double) numOfNonZeros / w.size()) + ", writing them "
+					+ ((encoding < 0) ? "sparse" : "dense"));
+		}
+		long weightsOffset = 4 + 4 + 8 + headerBytes.size() + 4 + 8;
+		if (encoding > 0)
+			weightsOffset = (weightsOffset + 7) & ~7L;
+
+		// the file may be mapped by the model itself, so it is replaced at the end
+		String tmpName = fname + ".tmp";
+		RandomAccessFile file = new RandomAccessFile(tmpName, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+			buffer.putInt(magic);
+			buffer.putInt(version);
+			buffer.putLong(weightsOffset);
+			writeFully(channel, buffer);
+			channel.write(ByteBuffer.wrap(headerBytes.toByteArray()));
+			buffer.putInt(encoding);
+			buffer.putLong(w.size());
+			if (encoding > 0) {
+				while (channel.position() + buffer.position() < weightsOffset) {
+					buffer.put((byte) 0);
+				}
+				writeDense(channel, buffer, w, encoding);
+			} else {
+				writeSparse(channel, buffer, w, encoding, numOfNonZeros, maxAbs);
+			}
+			writeFully(channel, buffer);
+		} finally {
+			file.close();
+		}
+		Files.move(Paths.get(tmpName), Paths.get(fname), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	protected static void writeDense(FileChannel channel, ByteBuffer buffer, WeightStore w, int encoding)
+			throws IOException {
+		for (long i = 0; i < w.size(); i++) {
+			if (buffer.remaining() < 8)
+				writeFully(channel, buffer);
+			if (encoding == denseDouble)
+				buffer.putDouble(w.get(i));
+			else
+				buffer.putFloat((float) w.get(i));
+		}
+	}
+
+	protected static void writeSparse(FileChannel channel, ByteBuffer buffer, WeightStore w, int encoding,
+			long numOfNonZeros, double maxAbs) throws IOException {
+		float scale = (float) (maxAbs / Short.MAX_VALUE);
+		buffer.putLong(numOfNonZeros);
+		if (encoding == sparseInt16)
+			buffer.putFloat(scale);
+
+		long previous = -1;
+		for (long i = 0; i < w.size(); i++) {
+			double value = w.get(i);
+			if (value == 0.0)
+				continue;
+			// at most ten bytes of the varint and four of the value
+			if (buffer.remaining() < 16)
+				writeFully(channel, buffer);
+			long delta = i - previous;
+			while (delta >= 0x80) {
+				buffer.put((byte) ((delta & 0x7F) | 0x80));
+				delta >>>= 7;
+			}
+			buffer.put((byte) delta);
+			if (encoding == sparseInt16)
+				buffer.putShort((short) Math.round(value / scale));
+			else
+				buffer.putFloat((float) value);
+			previous = i;
+		}
+	}
+
+	protected static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	protected static void writeHeader(PLT model, DataOutput out) throws IOException {
+		writeString(out, model.treeType);
+		writeString(out, model.treeFile);
+		writeString(out, model.hasher);
+		writeString(out, model.weightPrecision);
+		writeString(out, name);
+
+		out.writeInt(model.m);
+		out.writeInt(model.d);
+		out.writeInt(model.k);
+		out.writeInt(model.fhseed);
+		out.writeInt(model.epochs);
+		out.writeInt(model.numOfShards);
+		out.writeInt(model.shard);
+		out.writeInt(model.numOfPartitions);
+		out.writeLong(model.hd);
+		out.writeDouble(model.gamma);
+		out.writeDouble(model.scalar);
+		out.writeDouble(model.lambda);
+		out.writeInt(model.fhTasks);
+
+		model.tree.writeCompiled(out);
+
+		writeArray(out, model.thresholds);
+		writeArray(out, model.bias);
+		writeArray(out, model.scalararray);
+		writeArray(out, model.Tarray);
+	}
+
+	protected static void writeString(DataOutput out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null)
+			out.writeUTF(s);
+	}
+
+	protected static void writeArray(DataOutput out, double[] array) throws IOException {
+		out.writeInt(array.length);
+		for (double value : array) {
+			out.writeDouble(value);
+		}
+	}
+
+	protected static void writeArray(DataOutput out, int[] array) throws IOException {
+		out.writeInt(array.length);
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * @param mapWeights
+	 *            If false, the weights are copied from the file into a
+	 *            writable store.
+	 */
+	public static PLT read(String fname, boolean mapWeights) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fname), 1 << 16));
+		PLT model = new PLT();
+		long weightsOffset = 0;
+		long numOfWeights = 0;
+		int encoding = 0;
+		try {
+			if (in.readInt() != magic)
+				throw new IOException("Not a binary PLT model: " + fname);
+			int fileVersion = in.readInt();
+			if (fileVersion != version)
+				throw new IOException("Unsupported binary model version " + fileVersion + " in " + fname);
+			weightsOffset = in.readLong();
+
+			model.treeType = readString(in);
+			model.treeFile = readString(in);
+			model.hasher = readString(in);
+			model.weightPrecision = readString(in);
+			model.modelFormat = readString(in);
+
+			model.m = in.readInt();
+			model.d = in.readInt();
+			model.k = in.readInt();
+			model.fhseed = in.readInt();
+			model.epochs = in.readInt();
+			model.numOfShards = in.readInt();
+			model.shard = in.readInt();
+			model.numOfPartitions = in.readInt();
+			model.hd = in.readLong();
+			model.gamma = in.readDouble();
+			model.scalar = in.readDouble();
+			model.lambda = in.readDouble();
+			model.fhTasks = in.readInt();
+
+			model.tree = CompiledTree.read(in);
+			model.t = model.tree.getSize();
+
+			model.thresholds = readArray(in);
+			model.bias = readArray(in);
+			model.scalararray = readArray(in);
+			model.Tarray = readIntArray(in);
+
+			encoding = in.readInt();
+			numOfWeights = in.readLong();
+		} finally {
+			in.close();
+		}
+
+		if (encoding < 0) {
+			RandomAccessFile file = new RandomAccessFile(fname, "r");
+			try {
+				model.w = readSparse(file.getChannel(), weightsOffset, encoding, numOfWeights);
+			} finally {
+				file.close();
+			}
+		}
+
+		if (encoding > 0) {
+			MappedWeightStore weights = new MappedWeightStore(new MappedFile(fname), weightsOffset, numOfWeights,
+					encoding);
+			model.w = mapWeights ? weights : weights.copy();
+		}
+		model.fh = model.createFeatureHasher();
+		logger.info("Loaded " + fname + " with " + numOfWeights + " weights into a "
+				+ model.w.getClass().getSimpleName());
+		return model;
+	}
+
+	/**
+	 * Reads the sparse weights into the store that takes less memory.
+	 */
+	protected static WeightStore readSparse(FileChannel channel, long offset, int encoding, long numOfWeights)
+			throws IOException {
+		channel.position(offset);
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+		buffer.flip();
+		fill(channel, buffer);
+		long numOfNonZeros = buffer.getLong();
+		float scale = (encoding == sparseInt16) ? buffer.getFloat() : 1.0f;
+
+		WeightStore w = null;
+		if ((numOfNonZeros < Integer.MAX_VALUE / 4) && (24 * numOfNonZeros < 4 * numOfWeights)) {
+			w = new SparseWeightStore(numOfWeights, (int) numOfNonZeros);
+		} else {
+			w = WeightStoreFactory.createWeightStore("float", numOfWeights,
+					numOfWeights > WeightStoreFactory.maxHeapSize, null);
+		}
+
+		long index = -1;
+		for (long i = 0; i < numOfNonZeros; i++) {
+			if (buffer.remaining() < 16)
+				fill(channel, buffer);
+			long delta = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = buffer.get();
+				delta |= ((long) (b & 0x7F)) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			index += delta;
+			if ((index < 0) || (index >= numOfWeights))
+				throw new IOException("Weight index " + index + " out of range " + numOfWeights);
+			w.add(index, (encoding == sparseInt16) ? buffer.getShort() * scale : buffer.getFloat());
+		}
+		return w;
+	}
+
+	/**
+	 * Moves the unread bytes of the buffer to its front and reads more.
+	 */
+	protected static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.compact();
+		while ((channel.read(buffer) > 0) && buffer.hasRemaining()) {
+		}
+		buffer.flip();
+	}
+
+	protected static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	protected static int[] readIntArray(DataInput in) throws IOException {
+		int[] array = new int[in.readInt()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readInt();
+		}
+		return array;
+	}
+
+	protected static double[] readArray(DataInput in) throws IOException {
+		double[] array = new double[in.readInt()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readDouble();
+		}
+		return array;
+	}
+}
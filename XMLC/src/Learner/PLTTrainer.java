@@ -0,0 +1,339 @@
+package Learner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Data.HashedRow;
+import Data.Instance;
+import Data.PreparedRow;
+import Data.SparseVector;
+import IO.DataManager;
+
+/**
+ * Trains the epochs of a {@link PLT} in the modes besides its serial SGD
+ * loop: Hogwild workers sharing the model ({@code trainThreads}), one thread
+ * per subtree partition ({@code subtreeThreads}) and mini-batches
+ * ({@code batchSize}), which the threads of both parallel modes use as well.
+ * The updates themselves are the ones of the PLT.
+ */
+public class PLTTrainer {
+	private static Logger logger = LoggerFactory.getLogger(PLTTrainer.class);
+	protected static final Instance endOfEpoch = new Instance((SparseVector) null, null);
+
+	protected PLT plt = null;
+	protected int numOfWorkers = 1;
+	protected boolean partitioned = false;
+	protected ExecutorService workers = null;
+	/**
+	 * Scratch of the thread reading the data.
+	 */
+	protected PLT.TrainingScratch scratch = null;
+
+	/**
+	 * @return True if {@code plt} is trained by a trainer rather than its
+	 *         serial loop.
+	 */
+	public static boolean isNeeded(PLT plt) {
+		return (plt.batchSize > 1)
+				|| (!plt.deterministicTraining && ((plt.nodePartitions != null) || (plt.trainThreads > 1)));
+	}
+
+	/**
+	 * Starts the threads of the training; they are stopped by
+	 * {@link #shutdown()}.
+	 */
+	public PLTTrainer(PLT plt) {
+		this.plt = plt;
+		this.numOfWorkers = plt.deterministicTraining ? 1 : plt.trainThreads;
+		// the partitions do not share nodes or weights, so the result does
+		// not depend on the scheduling of the threads
+		this.partitioned = (plt.nodePartitions != null) && !plt.deterministicTraining;
+		if (this.partitioned) {
+			logger.info("Subtree-parallel training with {} threads", plt.numOfPartitions);
+			this.workers = Executors.newFixedThreadPool(plt.numOfPartitions);
+		} else if (this.numOfWorkers > 1) {
+			logger.info("Hogwild training with {} workers", this.numOfWorkers);
+			this.workers = Executors.newFixedThreadPool(this.numOfWorkers);
+			plt.allocateNodeLocks(this.numOfWorkers);
+		}
+		if (plt.growTree && (this.workers != null)) {
+			plt.pendingInstances = new ArrayList<Instance>();
+			plt.deferNewLabels = this.partitioned;
+		}
+		this.scratch = createScratch(this.partitioned ? PLT.coordinatorPartition : PLT.allPartitions);
+	}
+
+	public void trainEpoch(DataManager data, int ep) {
+		if (this.partitioned) {
+			trainEpochPartitioned(data, ep);
+		} else if (this.workers != null) {
+			trainEpochParallel(data, ep);
+			// the workers are idle, so the scalars can be folded safely
+			this.plt.renormalizeNodes();
+		} else {
+			while (data.hasNext() == true) {
+				Instance instance = data.getNextInstance();
+				if (this.plt.growTree)
+					this.plt.addNewLabels(instance);
+				train(instance, this.scratch);
+				this.plt.T++;
+				this.plt.logProgress(ep);
+			}
+			flush(this.scratch);
+		}
+	}
+
+	public void shutdown() {
+		if (this.workers != null) {
+			this.workers.shutdown();
+			this.plt.nodeLocks = null;
+			this.plt.pendingInstances = null;
+		}
+	}
+
+	/**
+	 * Reads the epoch on the calling thread and hands the instances over to
+	 * {@code numOfWorkers} workers which update the shared model without
+	 * locking (Hogwild). A worker that fails keeps draining the queue so the
+	 * reader cannot block; the first failure is rethrown at the end of the
+	 * epoch.
+	 */
+	protected void trainEpochParallel(DataManager data, int ep) {
+		BlockingQueue<Instance> queue = new ArrayBlockingQueue<Instance>(this.plt.queueSize);
+		List<Future<Throwable>> results = new ArrayList<Future<Throwable>>();
+
+		for (int i = 0; i < this.numOfWorkers; i++) {
+			results.add(this.workers.submit(new TrainWorker(queue, PLT.allPartitions)));
+		}
+
+		try {
+			while (data.hasNext() == true) {
+				Instance instance = data.getNextInstance();
+				if (this.plt.growTree)
+					this.plt.addNewLabels(instance);
+				queue.put(instance);
+				this.plt.T++;
+				this.plt.logProgress(ep);
+			}
+			for (int i = 0; i < this.numOfWorkers; i++) {
+				queue.put(endOfEpoch);
+			}
+			waitFor(results);
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Parallel training was interrupted", e);
+		}
+	}
+
+	/**
+	 * Reads the epoch on the calling thread, which trains the nodes above the
+	 * subtrees, and hands every instance over to the threads of all
+	 * partitions. A thread only updates the nodes and the weight region of its
+	 * partition, so there is neither locking nor contention. The first
+	 * failure of a thread is rethrown at the end of the epoch.
+	 */
+	protected void trainEpochPartitioned(DataManager data, int ep) {
+		List<BlockingQueue<Instance>> queues = new ArrayList<BlockingQueue<Instance>>();
+		List<Future<Throwable>> results = new ArrayList<Future<Throwable>>();
+
+		for (int p = 0; p < this.plt.numOfPartitions; p++) {
+			BlockingQueue<Instance> queue = new ArrayBlockingQueue<Instance>(this.plt.queueSize);
+			queues.add(queue);
+			results.add(this.workers.submit(new TrainWorker(queue, p)));
+		}
+
+		try {
+			while (data.hasNext() == true) {
+				Instance instance = data.getNextInstance();
+				if (this.plt.growTree)
+					this.plt.addNewLabels(instance);
+				for (BlockingQueue<Instance> queue : queues) {
+					queue.put(instance);
+				}
+				train(instance, this.scratch);
+				this.plt.T++;
+				this.plt.logProgress(ep);
+			}
+			flush(this.scratch);
+			for (BlockingQueue<Instance> queue : queues) {
+				queue.put(endOfEpoch);
+			}
+			waitFor(results);
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Parallel training was interrupted", e);
+		}
+	}
+
+	protected void waitFor(List<Future<Throwable>> results) throws InterruptedException, ExecutionException {
+		for (Future<Throwable> result : results) {
+			Throwable error = result.get();
+			if (error != null) {
+				throw new IllegalStateException("Training worker failed", error);
+			}
+		}
+	}
+
+	protected class TrainWorker implements Callable<Throwable> {
+		protected BlockingQueue<Instance> queue = null;
+		protected int partition = PLT.allPartitions;
+
+		public TrainWorker(BlockingQueue<Instance> queue, int partition) {
+			this.queue = queue;
+			this.partition = partition;
+		}
+
+		@Override
+		public Throwable call() throws Exception {
+			Throwable error = null;
+			PLT.TrainingScratch scratch = createScratch(this.partition);
+			while (true) {
+				Instance instance = this.queue.take();
+				if (error == null) {
+					try {
+						if (instance == endOfEpoch)
+							flush(scratch);
+						else
+							train(instance, scratch);
+					} catch (Throwable e) {
+						logger.error("Training worker failed", e);
+						error = e;
+					}
+				}
+				if (instance == endOfEpoch)
+					break;
+			}
+			return error;
+		}
+	}
+
+	protected PLT.TrainingScratch createScratch(int partition) {
+		PLT.TrainingScratch scratch = (this.plt.batchSize > 1) ? new BatchScratch(this.plt.t, this.plt.batchSize)
+				: this.plt.createTrainingScratch();
+		scratch.partition = partition;
+		return scratch;
+	}
+
+	/**
+	 * Trains {@code instance} at once, or adds it to the mini-batch of
+	 * {@code scratch} and trains the batch when it is full.
+	 */
+	protected void train(Instance instance, PLT.TrainingScratch scratch) {
+		if (!(scratch instanceof BatchScratch))
+			this.plt.trainInstance(instance, scratch);
+		else if (addToBatch(instance, (BatchScratch) scratch))
+			trainBatch((BatchScratch) scratch);
+	}
+
+	/**
+	 * Trains the partial mini-batch of {@code scratch}, if any.
+	 */
+	protected void flush(PLT.TrainingScratch scratch) {
+		if ((scratch instanceof BatchScratch) && (((BatchScratch) scratch).batchLength > 0))
+			trainBatch((BatchScratch) scratch);
+	}
+
+	/**
+	 * Training buffers with a mini-batch.
+	 */
+	protected static class BatchScratch extends PLT.TrainingScratch {
+		public PreparedRow[] batchRows = null;
+		public int batchLength = 0;
+		/**
+		 * One entry per node and instance of the batch:
+		 * {@code node << 32 | instance << 1 | isPositive}.
+		 */
+		public long[] entries = null;
+		public int numOfEntries = 0;
+		public HashedRow[] hashedRows = null;
+		public double[] incs = null;
+
+		public BatchScratch(int numberOfNodes, int batchSize) {
+			super(numberOfNodes);
+			this.batchRows = new PreparedRow[batchSize];
+			this.hashedRows = new HashedRow[batchSize];
+			for (int i = 0; i < batchSize; i++) {
+				this.batchRows[i] = new PreparedRow();
+				this.hashedRows[i] = new HashedRow();
+			}
+			this.entries = new long[16 * batchSize];
+			this.incs = new double[batchSize];
+		}
+
+		public void addEntry(int node, int instance, boolean isPositive) {
+			if (this.numOfEntries == this.entries.length)
+				this.entries = Arrays.copyOf(this.entries, 2 * this.numOfEntries);
+			this.entries[this.numOfEntries++] = (((long) node) << 32) | (instance << 1) | (isPositive ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Adds {@code instance} to the mini-batch of {@code scratch}. The row is
+	 * copied, so the data manager may reuse it.
+	 *
+	 * @return True if the batch is full.
+	 */
+	protected boolean addToBatch(Instance instance, BatchScratch scratch) {
+		int b = scratch.batchLength++;
+		this.plt.fh.prepareRow(instance.x, scratch.batchRows[b]);
+
+		this.plt.collectNodes(instance, scratch);
+		for (int i = 0; i < scratch.positive.size(); i++) {
+			if (this.plt.trainsNode(scratch.positive.get(i), scratch))
+				scratch.addEntry(scratch.positive.get(i), b, true);
+		}
+		for (int i = 0; i < scratch.negative.size(); i++) {
+			if (this.plt.trainsNode(scratch.negative.get(i), scratch))
+				scratch.addEntry(scratch.negative.get(i), b, false);
+		}
+
+		return scratch.batchLength == scratch.batchRows.length;
+	}
+
+	/**
+	 * Applies the updates of the mini-batch of {@code scratch} node by node
+	 * and empties the batch. The posteriors of a node are computed for all
+	 * its instances before its weights change, and its learning rate
+	 * schedule advances once by the number of these instances.
+	 */
+	protected void trainBatch(BatchScratch scratch) {
+		long[] entries = scratch.entries;
+		int numOfEntries = scratch.numOfEntries;
+		Arrays.sort(entries, 0, numOfEntries);
+
+		int start = 0;
+		while (start < numOfEntries) {
+			int label = (int) (entries[start] >>> 32);
+			int end = start + 1;
+			while ((end < numOfEntries) && ((int) (entries[end] >>> 32) == label)) {
+				end++;
+			}
+
+			// a node occurs at most once per instance, so end - start <= batchSize
+			for (int e = start; e < end; e++) {
+				int b = ((int) entries[e]) >>> 1;
+				boolean isPositive = (entries[e] & 1) == 1;
+				HashedRow row = scratch.hashedRows[e - start];
+
+				this.plt.hashRow(scratch.batchRows[b], label, row);
+				double posterior = this.plt.getPartialPosteriors(row, label);
+				scratch.incs[e - start] = isPositive ? -(1.0 - posterior) : -(0.0 - posterior);
+			}
+			this.plt.updatedPosteriors(scratch.hashedRows, scratch.incs, end - start, label);
+
+			start = end;
+		}
+
+		scratch.batchLength = 0;
+		scratch.numOfEntries = 0;
+	}
+}
@@ -0,0 +1,111 @@
+package Learner;
+
+import java.util.Arrays;
+
+import Data.PreparedRow;
+import Data.SparseVector;
+import util.Tree;
+
+/**
+ * Best-first search for the k most probable labels of a PLT. The frontier is
+ * a binary max-heap kept in primitive arrays, so one searcher answers any
+ * number of queries without creating objects. The hash of the query is
+ * prepared once and shared by all nodes. A searcher must not be shared
+ * between threads.
+ */
+public class TopKSearcher {
+
+	protected PLT plt = null;
+
+	protected int[] heapNodes = new int[64];
+	protected double[] heapScores = new double[64];
+	protected int heapSize = 0;
+	protected PreparedRow row = new PreparedRow();
+
+	public TopKSearcher(PLT plt) {
+		this.plt = plt;
+	}
+
+	/**
+	 * Same search as {@link PLT#getTopKEstimates(SparseVector, int)}. Labels are
+	 * written in decreasing order of their posterior; if there are less than
+	 * {@code k} labels, the remaining entries are set to -1 and 0.
+	 *
+	 * @return The number of labels found.
+	 */
+	public int search(SparseVector x, int k, int[] outLabels, float[] outScores) {
+		Tree tree = this.plt.tree;
+		int found = 0;
+
+		this.plt.fh.prepareRow(x, this.row);
+		this.heapSize = 0;
+		push(0, 1.0);
+
+		while ((this.heapSize > 0) && (found < k)) {
+			int node = this.heapNodes[0];
+			double p = this.heapScores[0];
+			pop();
+
+			if (!tree.isLeaf(node)) {
+				int end = tree.childEnd(node);
+				for (int c = tree.childStart(node); c < end; c++) {
+					int childNode = tree.childAt(c);
+					push(childNode, p * this.plt.getPartialPosteriors(this.row, childNode));
+				}
+			} else {
+				outLabels[found] = tree.getLabelIndex(node);
+				outScores[found] = (float) p;
+				found++;
+			}
+		}
+
+		for (int i = found; i < k; i++) {
+			outLabels[i] = -1;
+			outScores[i] = 0.0f;
+		}
+
+		return found;
+	}
+
+	protected void push(int node, double score) {
+		if (this.heapSize == this.heapNodes.length) {
+			this.heapNodes = Arrays.copyOf(this.heapNodes, 2 * this.heapSize);
+			this.heapScores = Arrays.copyOf(this.heapScores, 2 * this.heapSize);
+		}
+
+		int i = this.heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.heapScores[parent] >= score)
+				break;
+			this.heapNodes[i] = this.heapNodes[parent];
+			this.heapScores[i] = this.heapScores[parent];
+			i = parent;
+		}
+		this.heapNodes[i] = node;
+		this.heapScores[i] = score;
+	}
+
+	protected void pop() {
+		int last = --this.heapSize;
+		if (last == 0)
+			return;
+
+		int node = this.heapNodes[last];
+		double score = this.heapScores[last];
+		int i = 0;
+		int half = last >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if ((child + 1 < last) && (this.heapScores[child + 1] > this.heapScores[child]))
+				child++;
+			if (score >= this.heapScores[child])
+				break;
+			this.heapNodes[i] = this.heapNodes[child];
+			this.heapScores[i] = this.heapScores[child];
+			i = child;
+		}
+		this.heapNodes[i] = node;
+		this.heapScores[i] = score;
+	}
+}
@@ -2,6 +2,8 @@ package preprocessing;
 
 import Data.AVPair;
 import Data.AVTable;
+import Data.PreparedRow;
+import Data.SparseVector;
 
 public interface FeatureHasher {
 	
@@ -9,6 +11,33 @@ public interface FeatureHasher {
 	public AVPair[] transformRowSparse(AVPair[] row, int taskid);
 	public AVTable transformSparse(AVTable data);
 	public int getIndex(int task, int feature);
+	/**
+	 * Same as {@link #getIndex(int, int)} for hashed spaces of more than
+	 * 2^31 features.
+	 */
+	public long getLongIndex(int task, int feature);
 	public int getSign( int task, int feature );
+
+	/**
+	 * Copies {@code x} into {@code row} and computes the part of the hash of
+	 * each feature that does not depend on the task.
+	 */
+	public void prepareRow(SparseVector x, PreparedRow row);
+	/**
+	 * Same as {@link #getLongIndex(int, int)} for the i-th feature of a
+	 * prepared row.
+	 */
+	public long getLongIndex(PreparedRow row, int i, int task);
+	/**
+	 * Same as {@link #getSign(int, int)} for the i-th feature of a prepared
+	 * row.
+	 */
+	public int getSign(PreparedRow row, int i, int task);
+
+	/**
+	 * @return True if no two of the first {@code numberOfTasks} tasks share
+	 *         an index for the first {@code numberOfFeatures} features.
+	 */
+	public boolean isTaskDisjoint(int numberOfFeatures, int numberOfTasks);
 	
 }
@@ -6,12 +6,16 @@ import org.slf4j.LoggerFactory;
 public class FeatureHasherFactory {
 	private static Logger logger = LoggerFactory.getLogger(FeatureHasherFactory.class);
 
-	public static FeatureHasher createFeatureHasher( String hasher, int fhseed, int hd, int d ) {
+	public static FeatureHasher createFeatureHasher( String hasher, int fhseed, long hd, int d ) {
 		FeatureHasher fh = null;
+		if ( (hd > Integer.MAX_VALUE) && (hasher.compareTo("Mask") != 0) ) {
+			throw new IllegalArgumentException("The " + hasher + " hasher supports at most " + Integer.MAX_VALUE
+					+ " hashed features, use the Mask hasher for " + hd);
+		}
 		if ( hasher.compareTo("Universal") == 0 ) {			
-			fh = new UniversalHasher(fhseed, hd, d);
+			fh = new UniversalHasher(fhseed, (int) hd, d);
 		} else if ( hasher.compareTo("Murmur") == 0 ) {
-			fh = new MurmurHasher(fhseed, hd, d);
+			fh = new MurmurHasher(fhseed, (int) hd, d);
 		} else if ( hasher.compareTo("Mask") == 0 ) {
 			fh = new MaskHasher(fhseed, hd, d);
 		} else {
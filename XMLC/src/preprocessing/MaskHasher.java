@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 
 import Data.AVPair;
 import Data.AVTable;
+import Data.PreparedRow;
+import Data.SparseVector;
 
 public class MaskHasher implements FeatureHasher {
 	private static Logger logger = LoggerFactory.getLogger(MaskHasher.class);
@@ -14,7 +16,7 @@ public class MaskHasher implements FeatureHasher {
 	private long nTasks;
 	private long mask = 1;	
 	
-	public MaskHasher( int seed, int nFeatures, int nTasks ) {
+	public MaskHasher( int seed, long nFeatures, int nTasks ) {
 		this.nFeatures = nFeatures;
 		this.nTasks = nTasks;
 				
@@ -34,12 +36,46 @@ public class MaskHasher implements FeatureHasher {
 	public int getIndex(int label, int feature) {
 		return (int) ((((feature * this.nTasks) + label)) & (this.mask)); 
 	}
+
+	public long getLongIndex(int label, int feature) {
+		return (((feature * this.nTasks) + label)) & (this.mask); 
+	}
 	
 	
 	public int getSign(int label, int feature) {
 		return  ( ( ( (label<<1-1)*feature) & 1) << 1) - 1;
 	}
 
+	/**
+	 * The index is affine in the task, so the base is {@code feature * nTasks}.
+	 */
+	public void prepareRow(SparseVector x, PreparedRow row) {
+		row.set(x);
+		for (int i = 0; i < row.length; i++) {
+			row.bases[i] = row.features[i] * this.nTasks;
+		}
+	}
+
+	public long getLongIndex(PreparedRow row, int i, int label) {
+		return (row.bases[i] + label) & (this.mask);
+	}
+
+	public int getSign(PreparedRow row, int i, int label) {
+		// label * feature is odd iff both are odd
+		return ( (label & row.features[i] & 1) << 1) - 1;
+	}
+
+	/**
+	 * The indices of the tasks interleave, so they are disjoint while the
+	 * mask does not cut them off. The mask is a remainder only if the number
+	 * of hashed features is a power of two.
+	 */
+	@Override
+	public boolean isTaskDisjoint(int numberOfFeatures, int numberOfTasks) {
+		return ((this.nFeatures & this.mask) == 0) && (numberOfTasks <= this.nTasks)
+				&& (numberOfFeatures * this.nTasks <= this.nFeatures);
+	}
+
 	@Override
 	public AVPair[] transformRowSparse(AVPair[] row) {
 		// TODO Auto-generated method stub
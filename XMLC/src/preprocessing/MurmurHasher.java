@@ -1,6 +1,7 @@
 package preprocessing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import org.slf4j.Logger;
@@ -8,6 +9,8 @@ import org.slf4j.LoggerFactory;
 
 import Data.AVPair;
 import Data.AVTable;
+import Data.PreparedRow;
+import Data.SparseVector;
 import util.HashFunction;
 
 public class MurmurHasher implements FeatureHasher {
@@ -16,9 +19,10 @@ public class MurmurHasher implements FeatureHasher {
 
 	private HashFunction hash;
 	private HashFunction sign;
-	private HashFunction[] taskhash;
+	private volatile HashFunction[] taskhash;
 	private HashFunction[] tasksign;
 	private boolean isMultiTask = false;
+	private int seed;
 	private int nFeatures;
 	private int nTasks;
 
@@ -37,6 +41,7 @@ public class MurmurHasher implements FeatureHasher {
 	public MurmurHasher(int seed, int nFeatures, int nTasks) {
 		this(seed, nFeatures);
 		this.isMultiTask = true;
+		this.seed = seed;
 		this.nTasks = nTasks;
 		this.taskhash = new HashFunction[nTasks];
 		this.tasksign = new HashFunction[nTasks];
@@ -46,6 +51,11 @@ public class MurmurHasher implements FeatureHasher {
 		}
 	}
 
+	@Override
+	public boolean isTaskDisjoint(int numberOfFeatures, int numberOfTasks) {
+		return false;
+	}
+
 	public AVPair[] transformRowSparse(AVPair[] row) throws IllegalStateException {
 		if (this.isMultiTask) {
 			throw new IllegalArgumentException("In the multitask setting a task id is necessary.");
@@ -130,7 +140,52 @@ public class MurmurHasher implements FeatureHasher {
 //	}
 	
 	public int getIndex(int task, int feature) {
-		return this.taskhash[task].hash(feature);
+		HashFunction[] taskhash = this.taskhash;
+		if (task >= taskhash.length)
+			taskhash = addTasks(task);
+		return taskhash[task].hash(feature);
+	}
+
+	/**
+	 * Creates the hash functions of the tasks up to {@code task}, for the
+	 * nodes added to a tree after the hasher. The functions of a task only
+	 * depend on the seed and the task, and the arrays are replaced, so
+	 * concurrent readers are not affected.
+	 */
+	private synchronized HashFunction[] addTasks(int task) {
+		int numOfTasks = this.taskhash.length;
+		if (task < numOfTasks)
+			return this.taskhash;
+		int capacity = Math.max(task + 1, 2 * numOfTasks);
+		HashFunction[] taskhash = Arrays.copyOf(this.taskhash, capacity);
+		HashFunction[] tasksign = Arrays.copyOf(this.tasksign, capacity);
+		for (int i = numOfTasks; i < capacity; i++) {
+			taskhash[i] = new HashFunction(this.seed + i, this.nFeatures);
+			tasksign[i] = new HashFunction(this.seed + this.nTasks + i);
+		}
+		this.tasksign = tasksign;
+		this.taskhash = taskhash;
+		return taskhash;
+	}
+
+	public long getLongIndex(int task, int feature) {
+		return getIndex(task, feature);
+	}
+
+	/**
+	 * The hash functions of the tasks are independent, so nothing can be
+	 * shared between them.
+	 */
+	public void prepareRow(SparseVector x, PreparedRow row) {
+		row.set(x);
+	}
+
+	public long getLongIndex(PreparedRow row, int i, int task) {
+		return getIndex(task, row.features[i]);
+	}
+
+	public int getSign(PreparedRow row, int i, int task) {
+		return getSign(task, row.features[i]);
 	}
 	
 	
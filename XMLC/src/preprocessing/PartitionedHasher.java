@@ -0,0 +1,173 @@
+package preprocessing;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Data.AVPair;
+import Data.AVTable;
+import Data.PreparedRow;
+import Data.SparseVector;
+
+/**
+ * Maps the tasks of each partition to its own contiguous region of the hashed
+ * space, so that threads training disjoint partitions never write the same
+ * weight. The index of a task is the index of the wrapped hasher reduced to
+ * the region of the partition of the task (modulo the size of the region).
+ * The regions are proportional to the number of tasks of the partitions.
+ */
+public class PartitionedHasher implements FeatureHasher {
+	private static Logger logger = LoggerFactory.getLogger(PartitionedHasher.class);
+
+	/**
+	 * The regions of the tasks, which are replaced together. The entries of a
+	 * task do not change once other threads use it.
+	 */
+	protected static class Regions {
+		public final long[] starts;
+		public final long[] sizes;
+		public final double[] inverses;
+
+		public Regions(int capacity) {
+			this.starts = new long[capacity];
+			this.sizes = new long[capacity];
+			this.inverses = new double[capacity];
+		}
+
+		public Regions(Regions regions, int capacity) {
+			this.starts = Arrays.copyOf(regions.starts, capacity);
+			this.sizes = Arrays.copyOf(regions.sizes, capacity);
+			this.inverses = Arrays.copyOf(regions.inverses, capacity);
+		}
+	}
+
+	private FeatureHasher hasher;
+	private long[] partitionStarts;
+	private long[] partitionSizes;
+	private volatile Regions regions;
+
+	/**
+	 * @param partitions
+	 *            Partition of each task, from zero to
+	 *            {@code numOfPartitions - 1}.
+	 */
+	public PartitionedHasher( FeatureHasher hasher, long nFeatures, int[] partitions, int numOfPartitions ) {
+		this.hasher = hasher;
+
+		long[] counts = new long[numOfPartitions];
+		for (int task = 0; task < partitions.length; task++) {
+			counts[partitions[task]]++;
+		}
+
+		long[] starts = new long[numOfPartitions];
+		long[] sizes = new long[numOfPartitions];
+		long start = 0;
+		long tasksBefore = 0;
+		for (int p = 0; p < numOfPartitions; p++) {
+			tasksBefore += counts[p];
+			long end = (long) ((double) nFeatures * tasksBefore / partitions.length);
+			starts[p] = start;
+			sizes[p] = Math.max(1, end - start);
+			start = end;
+		}
+		this.partitionStarts = starts;
+		this.partitionSizes = sizes;
+
+		Regions regions = new Regions(partitions.length);
+		for (int task = 0; task < partitions.length; task++) {
+			regions.starts[task] = starts[partitions[task]];
+			regions.sizes[task] = sizes[partitions[task]];
+			regions.inverses[task] = 1.0 / sizes[partitions[task]];
+		}
+		this.regions = regions;
+
+		logger.info("#####################################################" );
+		logger.info("#### Partitioned hash" );
+		logger.info("#### Num. of partitions: " + numOfPartitions );
+		logger.info("#####################################################" );
+	}
+
+	/**
+	 * Adds {@code task} to the region of {@code partition}, which stays as
+	 * large as it is, so the indices of the other tasks do not change. The
+	 * regions of the tasks grow by doubling and are replaced at once, so a
+	 * task has to be added before other threads use it.
+	 */
+	public synchronized void addTask(int task, int partition) {
+		Regions regions = this.regions;
+		if (task >= regions.starts.length)
+			regions = new Regions(regions, Math.max(task + 1, 2 * regions.starts.length));
+		regions.starts[task] = this.partitionStarts[partition];
+		regions.sizes[task] = this.partitionSizes[partition];
+		regions.inverses[task] = 1.0 / this.partitionSizes[partition];
+		this.regions = regions;
+	}
+
+	/**
+	 * The remainder is computed with the inverse of the size in double
+	 * precision, which is faster than a long division. The quotient is off by
+	 * at most one for indices below 2^52, which the correction fixes.
+	 */
+	protected long reduce(int task, long index) {
+		Regions regions = this.regions;
+		long size = regions.sizes[task];
+		long remainder = index - ((long) (index * regions.inverses[task])) * size;
+		if (remainder >= size)
+			remainder -= size;
+		else if (remainder < 0)
+			remainder += size;
+		return regions.starts[task] + remainder;
+	}
+
+	public int getIndex(int task, int feature) {
+		return (int) reduce(task, this.hasher.getLongIndex(task, feature));
+	}
+
+	public long getLongIndex(int task, int feature) {
+		return reduce(task, this.hasher.getLongIndex(task, feature));
+	}
+
+	public int getSign(int task, int feature) {
+		return this.hasher.getSign(task, feature);
+	}
+
+	public void prepareRow(SparseVector x, PreparedRow row) {
+		this.hasher.prepareRow(x, row);
+	}
+
+	public long getLongIndex(PreparedRow row, int i, int task) {
+		return reduce(task, this.hasher.getLongIndex(row, i, task));
+	}
+
+	public int getSign(PreparedRow row, int i, int task) {
+		return this.hasher.getSign(row, i, task);
+	}
+
+	/**
+	 * The tasks of a partition share its region.
+	 */
+	@Override
+	public boolean isTaskDisjoint(int numberOfFeatures, int numberOfTasks) {
+		return false;
+	}
+
+	@Override
+	public AVPair[] transformRowSparse(AVPair[] row) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public AVPair[] transformRowSparse(AVPair[] row, int taskid) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public AVTable transformSparse(AVTable data) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+}
@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 
 import Data.AVPair;
 import Data.AVTable;
+import Data.PreparedRow;
+import Data.SparseVector;
 
 public class UniversalHasher implements FeatureHasher {
 	private static Logger logger = LoggerFactory.getLogger(UniversalHasher.class);
@@ -102,6 +104,29 @@ public class UniversalHasher implements FeatureHasher {
 		return Math.abs(Math.abs((feature*this.nTasks + label) + this.b) % this.prime) % this.nFeatures;
 	}
 
+	public long getLongIndex(int label, int feature) {
+		return getIndex(label, feature);
+	}
+
+	/**
+	 * The base is {@code feature*nTasks + b}; the overflows of the int
+	 * arithmetic are the same as in {@link #getIndex(int, int)}.
+	 */
+	public void prepareRow(SparseVector x, PreparedRow row) {
+		row.set(x);
+		for (int i = 0; i < row.length; i++) {
+			row.bases[i] = row.features[i]*this.nTasks + this.b;
+		}
+	}
+
+	public long getLongIndex(PreparedRow row, int i, int label) {
+		return Math.abs(Math.abs(((int) row.bases[i]) + label) % this.prime) % this.nFeatures;
+	}
+
+	public int getSign(PreparedRow row, int i, int label) {
+		return ((label & row.features[i] & 1) == 0) ? -1 : 1;
+	}
+
 	
 
 
@@ -117,6 +142,11 @@ public class UniversalHasher implements FeatureHasher {
 //	}	
 		
 	
+	@Override
+	public boolean isTaskDisjoint(int numberOfFeatures, int numberOfTasks) {
+		return false;
+	}
+
 	@Override
 	public AVPair[] transformRowSparse(AVPair[] row) {
 		// TODO Auto-generated method stub
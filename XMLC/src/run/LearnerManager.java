@@ -25,6 +25,7 @@ import IO.DataManager;
 import IO.DataReader;
 import IO.Evaluator;
 import IO.ReadProperty;
+import IO.ShuffledDataManager;
 import Learner.AbstractLearner;
 import threshold.TTEum;
 import threshold.TTEumFast;
@@ -41,6 +42,7 @@ public class LearnerManager {
 	protected DataManager traindata = null;
 	protected DataManager validdata = null;
 	protected boolean isHeader = true;
+	protected int evalThreads = 1;
 
 	protected AbstractLearner learner = null;
 
@@ -48,17 +50,23 @@ public class LearnerManager {
 		properties = ReadProperty.readProperty(fname);
 
 		this.isHeader = Boolean.parseBoolean(properties.getProperty("IsHeader"));
+		this.evalThreads = Integer.parseInt(properties.getProperty("evalThreads", "1"));
 	}
 
 
 	public void readTrainData() throws Exception {		
 		//traindata = new BatchDataManager(properties.getProperty("TrainFile"));
-		traindata = DataManager.managerFactory(properties.getProperty("TrainFile"), "Online" );
+		traindata = DataManager.managerFactory(properties.getProperty("TrainFile"), properties );
+		if (Boolean.parseBoolean(properties.getProperty("shuffle", "false"))) {
+			int bufferSize = Integer.parseInt(properties.getProperty("shuffleBufferSize",
+					Integer.toString(ShuffledDataManager.defaultBufferSize)));
+			traindata = new ShuffledDataManager(traindata, bufferSize);
+		}
 	}
 
 	public void readTestData() throws Exception {		
 		//testdata = new BatchDataManager(properties.getProperty("TestFile"));
-		testdata = DataManager.managerFactory(properties.getProperty("TestFile"), "Online" );
+		testdata = DataManager.managerFactory(properties.getProperty("TestFile"), properties );
 	}
 
 	public void readValidData() throws Exception {
@@ -68,7 +76,7 @@ public class LearnerManager {
 			validdata = traindata;
 		} else {			
 			//validdata = new BatchDataManager(properties.getProperty("ValidFile"));
-			validdata = DataManager.managerFactory(properties.getProperty("ValidFile"), "Online" );
+			validdata = DataManager.managerFactory(properties.getProperty("ValidFile"), properties );
 		}
 	}
 
@@ -122,6 +130,41 @@ public class LearnerManager {
 	}
 	
 	
+	/**
+	 * Continues the training of {@code InputModelFile} on {@code TrainFile} and
+	 * saves the result to {@code ModelFile}. Labels of the training data that
+	 * the model does not know are added to its tree.
+	 */
+	public void continueTraining() throws Exception {
+		if (properties.containsKey("seed")) {
+			long seed = Long.parseLong(properties.getProperty("seed"));
+			MasterSeed.setSeed(seed);
+		}
+
+		String inputmodelFile = properties.getProperty("InputModelFile");
+		if (inputmodelFile == null) {
+			logger.info("No model file is given!!!");
+			System.exit(-1);
+		}
+		logger.info("Loading model file from " + inputmodelFile);
+		this.learner = AbstractLearner.loadmodel(inputmodelFile, false);
+		if (!this.learner.supportsContinuedTraining()) {
+			logger.info("The training of " + this.learner.getClass().getSimpleName() + " cannot be continued!!!");
+			System.exit(-1);
+		}
+
+		this.readTrainData();
+		learner.prepareContinuedTraining(traindata, properties);
+		learner.train(traindata);
+		traindata.close();
+
+		String modelFile = properties.getProperty("ModelFile", null);
+		if (modelFile != null) {
+			logger.info("Saving model file to " + modelFile );
+			learner.savemodel(modelFile);
+		}
+	}
+
 	public void forecast() throws Exception {
 		this.readTestData();
 		this.loadmodel();
@@ -161,8 +204,8 @@ public class LearnerManager {
 	
 	public void compositeEvaluation() {
 
-		Map<String, Double> perfvalidpreck = Evaluator.computePrecisionAtk(this.learner, this.validdata, 5);
-		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5);
+		Map<String, Double> perfvalidpreck = Evaluator.computePrecisionAtk(this.learner, this.validdata, 5, this.evalThreads);
+		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5, this.evalThreads);
 
 		// Map<String,Double> perfpreck = Evaluator.computePrecisionAtk(learner,
 		// testdata, 5);
@@ -232,7 +275,7 @@ public class LearnerManager {
 		traindata.close();
 
 		this.readTestData();
-		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5);
+		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5, this.evalThreads);
 		
 		for (String perfName : perftestpreck.keySet()) {
 			logger.info("##### Test " + perfName + ": " + perftestpreck.get(perfName));
@@ -244,7 +287,7 @@ public class LearnerManager {
 	public void eval() throws Exception {		
 		this.loadmodel();		
 		this.readTestData();
-		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5);
+		Map<String, Double> perftestpreck = Evaluator.computePrecisionAtk(this.learner, this.testdata, 5, this.evalThreads);
 		
 		for (String perfName : perftestpreck.keySet()) {
 			logger.info("##### Test " + perfName + ": " + perftestpreck.get(perfName));
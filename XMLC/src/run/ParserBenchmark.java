@@ -0,0 +1,156 @@
+package run;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Data.Instance;
+import IO.DataManager;
+import IO.LibsvmParser;
+import IO.OnlineDataManager;
+import IO.ParallelOnlineDataManager;
+
+/**
+ * Compares the parsing throughput of {@link LibsvmParser} with the
+ * {@code String} based parsing it replaced in {@code DataReader} and
+ * {@code OnlineDataManager} ({@code legacy}). Each run parses the whole file
+ * (header line included) into primitive buffers; the checksums of both
+ * parsers have to agree. Use a file larger than the page cache to include
+ * the disk, or a smaller one to measure the parsing alone.
+ *
+ * {@code online} and {@code parallel} iterate the instances of
+ * {@link OnlineDataManager} and {@link ParallelOnlineDataManager} (with
+ * {@code threads} parsers) instead; their checksums leave out the header line.
+ *
+ * Usage: ParserBenchmark file [repetitions] [parser: both, bytes, legacy,
+ * online or parallel] [threads]
+ */
+public class ParserBenchmark {
+	private static Logger logger = LoggerFactory.getLogger(ParserBenchmark.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			logger.info("No data file given!");
+			System.exit(-1);
+		}
+		String fileName = args[0];
+		int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		String parser = (args.length > 2) ? args[2] : "both";
+		int threads = (args.length > 3) ? Integer.parseInt(args[3])
+				: Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+		for (int r = 0; r < repetitions; r++) {
+			if (parser.compareTo("online") == 0) {
+				long start = System.nanoTime();
+				double checksum = iterate(new OnlineDataManager(fileName));
+				report("online", fileName, start, checksum);
+				continue;
+			}
+			if (parser.compareTo("parallel") == 0) {
+				long start = System.nanoTime();
+				double checksum = iterate(new ParallelOnlineDataManager(fileName, threads, true));
+				report("parallel(" + threads + ")", fileName, start, checksum);
+				continue;
+			}
+			if (parser.compareTo("legacy") != 0) {
+				long start = System.nanoTime();
+				double checksum = parseBytes(fileName);
+				report("bytes", fileName, start, checksum);
+			}
+			if (parser.compareTo("bytes") != 0) {
+				long start = System.nanoTime();
+				double checksum = parseLegacy(fileName);
+				report("legacy", fileName, start, checksum);
+			}
+		}
+	}
+
+	protected static void report(String name, String fileName, long start, double checksum) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double megabytes = new java.io.File(fileName).length() / (double) (1 << 20);
+		logger.info("#### " + name + ": " + String.format("%.2f", seconds) + " sec, "
+				+ String.format("%.1f", megabytes / seconds) + " MB/sec, checksum " + checksum);
+	}
+
+	protected static double parseBytes(String fileName) throws Exception {
+		LibsvmParser parser = new LibsvmParser(fileName);
+		double checksum = 0.0;
+		while (parser.next()) {
+			for (int i = 0; i < parser.numOfLabels; i++) {
+				checksum += parser.labels[i];
+			}
+			for (int i = 0; i < parser.numOfFeatures; i++) {
+				checksum += parser.indices[i] + (float) parser.values[i];
+			}
+		}
+		parser.close();
+		return checksum;
+	}
+
+	protected static double iterate(DataManager data) {
+		double checksum = 0.0;
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int i = 0; i < instance.y.length; i++) {
+				checksum += instance.y[i];
+			}
+			for (int i = instance.x.start; i < instance.x.end; i++) {
+				checksum += instance.x.indices[i] + instance.x.values[i];
+			}
+		}
+		data.close();
+		return checksum;
+	}
+
+	/**
+	 * The line parsing of {@code OnlineDataManager.ReaderThread.processLine}
+	 * before {@link LibsvmParser}.
+	 */
+	protected static double parseLegacy(String fileName) throws Exception {
+		BufferedReader br = new BufferedReader(new FileReader(fileName));
+		double checksum = 0.0;
+		String line;
+		while ((line = br.readLine()) != null) {
+			line = line.replace(",", " ");
+			StringTokenizer st = new StringTokenizer(line, " \t\n\r\f");
+			int m = st.countTokens();
+			String[] stArr = new String[m];
+
+			int numOfFeatures = 0;
+			int numOfLabels = 0;
+			for (int j = 0; j < m; j++) {
+				stArr[j] = st.nextToken();
+				if (stArr[j].contains(":"))
+					numOfFeatures++;
+				else
+					numOfLabels++;
+			}
+
+			int[] indices = new int[numOfFeatures];
+			float[] values = new float[numOfFeatures];
+			int[] y = new int[numOfLabels];
+			int indexx = 0;
+			int indexy = 0;
+			for (int j = 0; j < m; j++) {
+				String[] tokens = stArr[j].split(":");
+				if (tokens.length == 1) {
+					y[indexy] = Integer.parseInt(tokens[0].replace(",", ""));
+					checksum += y[indexy];
+					indexy++;
+				} else {
+					indices[indexx] = Integer.parseInt(tokens[0]) - 1;
+					values[indexx] = (float) Double.parseDouble(tokens[1]);
+					checksum += indices[indexx] + values[indexx];
+					indexx++;
+				}
+			}
+			Arrays.sort(y);
+		}
+		br.close();
+		return checksum;
+	}
+}
@@ -0,0 +1,145 @@
+package run;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Data.Instance;
+import Data.SparseVector;
+import IO.BatchDataManager;
+import IO.DataManager;
+import IO.ReadProperty;
+import Learner.PLT;
+import util.WeightStore;
+
+/**
+ * Compares how many node posteriors (calls of
+ * {@link PLT#getPartialPosteriors}) the two scoring kernels of PLT compute
+ * per second: the default per-feature loop and the kernel of training
+ * ({@code twoPassScoring = true}) which hashes the row into a buffer and then
+ * gathers the weights in a separate pass.
+ *
+ * Both PLTs are allocated for the data of the config file and get the same
+ * random weights. The rows are either the rows of the training file
+ * ({@code data}) or random rows with the given number of non-zeros. For each
+ * row the posteriors of the first {@code nodes} nodes of the tree are
+ * computed. The first run of each kernel is a warm-up of the JIT.
+ *
+ * Once both kernels have run in the same JVM, the JIT compiles the shared
+ * call sites for both of them, which slows down the kernel measured first.
+ * Timing one kernel per JVM ({@code kernel} direct or twoPass) avoids this.
+ *
+ * Usage: PosteriorBenchmark config [rowLengths, e.g. data,16,64,256,1024]
+ * [nodes] [repetitions] [kernel: both, direct or twoPass]
+ */
+public class PosteriorBenchmark {
+	private static Logger logger = LoggerFactory.getLogger(PosteriorBenchmark.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			logger.info("No config file given!");
+			System.exit(-1);
+		}
+		Properties properties = ReadProperty.readProperty(args[0]);
+		String[] rowLengths = ((args.length > 1) ? args[1] : "data,16,64,256,1024").split(",");
+		int nodes = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+		int repetitions = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+		String kernel = (args.length > 4) ? args[4] : "both";
+		boolean runDirect = kernel.compareTo("twoPass") != 0;
+		boolean runTwoPass = kernel.compareTo("direct") != 0;
+
+		DataManager data = new BatchDataManager(properties.getProperty("TrainFile"));
+
+		Properties directProperties = new Properties();
+		directProperties.putAll(properties);
+		directProperties.setProperty("twoPassScoring", "false");
+		Properties twoPassProperties = new Properties();
+		twoPassProperties.putAll(properties);
+		twoPassProperties.setProperty("twoPassScoring", "true");
+
+		PLT direct = new PLT(directProperties);
+		direct.allocateClassifiers(data);
+		PLT twoPass = new PLT(twoPassProperties);
+		twoPass.allocateClassifiers(data);
+		fillWeights(direct.getWeightStore(), twoPass.getWeightStore());
+
+		for (String rowLength : rowLengths) {
+			List<SparseVector> rows = (rowLength.compareTo("data") == 0) ? readRows(data)
+					: randomRows(Integer.parseInt(rowLength), data.getNumberOfFeatures());
+
+			double directRate = runDirect ? measure(direct, rows, nodes, repetitions) : Double.NaN;
+			double twoPassRate = runTwoPass ? measure(twoPass, rows, nodes, repetitions) : Double.NaN;
+			logger.info("#### Rows: " + rowLength + ", direct: " + String.format("%.0f", directRate)
+					+ " posteriors/sec, two-pass: " + String.format("%.0f", twoPassRate) + " posteriors/sec ("
+					+ String.format("%.2f", twoPassRate / directRate) + "x)");
+		}
+	}
+
+	protected static void fillWeights(WeightStore first, WeightStore second) {
+		Random random = new Random(1);
+		for (long i = 0; i < first.size(); i++) {
+			double weight = random.nextGaussian() * 0.01;
+			first.add(i, weight);
+			second.add(i, weight);
+		}
+	}
+
+	protected static List<SparseVector> readRows(DataManager data) {
+		List<SparseVector> rows = new ArrayList<SparseVector>();
+		while (data.hasNext() == true) {
+			Instance instance = data.getNextInstance();
+			rows.add(instance.x);
+		}
+		data.reset();
+		return rows;
+	}
+
+	protected static List<SparseVector> randomRows(int length, int numberOfFeatures) {
+		Random random = new Random(length);
+		int numberOfRows = Math.max(1000, (1 << 22) / length);
+		List<SparseVector> rows = new ArrayList<SparseVector>(numberOfRows);
+		for (int r = 0; r < numberOfRows; r++) {
+			int[] indices = new int[length];
+			float[] values = new float[length];
+			for (int i = 0; i < length; i++) {
+				indices[i] = random.nextInt(numberOfFeatures);
+				values[i] = random.nextFloat();
+			}
+			rows.add(new SparseVector(indices, values));
+		}
+		return rows;
+	}
+
+	/**
+	 * @return The best rate (posteriors/sec) of the timed runs.
+	 */
+	protected static double measure(PLT learner, List<SparseVector> rows, int nodes, int repetitions) {
+		double best = 0.0;
+		double checksum = 0.0;
+		for (int r = 0; r <= repetitions; r++) {
+			long start = System.nanoTime();
+			checksum += score(learner, rows, nodes);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if (r > 0)
+				best = Math.max(best, (rows.size() * (double) nodes) / seconds);
+		}
+		logger.info("Checksum: " + checksum);
+		return best;
+	}
+
+	// a method of its own, so that the timed runs do not execute an on-stack
+	// replacement of the loop compiled during the warm-up
+	protected static double score(PLT learner, List<SparseVector> rows, int nodes) {
+		double checksum = 0.0;
+		for (SparseVector x : rows) {
+			for (int label = 0; label < nodes; label++) {
+				checksum += learner.getPartialPosteriors(x, label);
+			}
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,61 @@
+package run;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Data.Instance;
+import Data.SparseVector;
+import IO.BatchDataManager;
+import IO.DataManager;
+import IO.ReadProperty;
+import Learner.AbstractLearner;
+
+/**
+ * Measures the top-k prediction throughput (queries/sec) of the learner given
+ * in a config file. The learner is trained on the training file, then
+ * {@code predictTopK} is timed on the rows of the test file. The first run is
+ * a warm-up of the JIT.
+ *
+ * Usage: PredictionBenchmark config [k] [repetitions]
+ */
+public class PredictionBenchmark {
+	private static Logger logger = LoggerFactory.getLogger(PredictionBenchmark.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			logger.info("No config file given!");
+			System.exit(-1);
+		}
+		Properties properties = ReadProperty.readProperty(args[0]);
+		int k = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		int repetitions = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+		DataManager data = new BatchDataManager(properties.getProperty("TrainFile"));
+		AbstractLearner learner = AbstractLearner.learnerFactory(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+
+		DataManager testData = new BatchDataManager(properties.getProperty("TestFile"));
+		List<SparseVector> rows = new ArrayList<SparseVector>();
+		while (testData.hasNext() == true) {
+			Instance instance = testData.getNextInstance();
+			rows.add(instance.x);
+		}
+		SparseVector[] xs = rows.toArray(new SparseVector[rows.size()]);
+		int[][] labels = new int[xs.length][k];
+		float[][] scores = new float[xs.length][k];
+
+		for (int r = 0; r <= repetitions; r++) {
+			long start = System.nanoTime();
+			learner.predictTopK(xs, k, labels, scores);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			logger.info("#### " + ((r == 0) ? "Warm-up" : "Run " + r) + ": " + String.format("%.3f", seconds)
+					+ " sec, " + String.format("%.0f", xs.length / seconds) + " queries/sec");
+		}
+	}
+}
@@ -25,6 +25,15 @@ public class Run {
 		if ( method.equals("-train") ) {
 			LearnerManager lm = new LearnerManager(configFile);
 			lm.train();
+		} else if ( method.equals("-continue") ) {
+			LearnerManager lm = new LearnerManager(configFile);
+			lm.continueTraining();
+		} else if ( method.equals("-trainsharded") ) {
+			ShardedTraining st = new ShardedTraining(configFile);
+			st.train();
+		} else if ( method.equals("-trainshard") ) {
+			ShardedTraining st = new ShardedTraining(configFile);
+			st.trainShard(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
 		} else if ( method.equals("-eval") ) {
 			LearnerManager lm = new LearnerManager(configFile);
 			lm.eval();
@@ -0,0 +1,130 @@
+package run;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Learner.AbstractLearner;
+import Learner.PLT;
+
+/**
+ * Trains a PLT with several local worker processes. Every worker reads the
+ * whole training data but only trains the nodes of its shard (see
+ * {@code PLT.assignShards}), so no scores have to be exchanged during
+ * training. The workers save their shards next to the model file, which are
+ * then merged into the model.
+ *
+ * The number of workers is given by {@code numOfShards} (default: number of
+ * processors). The workers are started with the JVM options of this process
+ * unless {@code shardJavaOptions} is set.
+ */
+public class ShardedTraining extends LearnerManager {
+	private static Logger logger = LoggerFactory.getLogger(ShardedTraining.class);
+
+	protected String configFile = null;
+	protected String modelFile = null;
+	protected int numOfShards = 1;
+
+	public ShardedTraining(String fname) {
+		super(fname);
+		this.configFile = fname;
+
+		logger.info("#####################################################");
+		logger.info("#### Sharded training");
+
+		if (this.properties.getProperty("Learner", "").compareTo("PLT") != 0) {
+			logger.info("Sharded training is only implemented for PLT!");
+			System.exit(-1);
+		}
+
+		this.modelFile = this.properties.getProperty("ModelFile", null);
+		if (this.modelFile == null) {
+			logger.info("No model file is given!");
+			System.exit(-1);
+		}
+
+		this.numOfShards = Integer.parseInt(this.properties.getProperty("numOfShards",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+		logger.info("#### Number of shards: " + this.numOfShards);
+		logger.info("#####################################################");
+	}
+
+	public static String getShardFile(String modelFile, int shard) {
+		return modelFile + ".shard" + shard;
+	}
+
+	/**
+	 * Starts the workers, waits for them and merges their shards.
+	 */
+	public void train() throws Exception {
+		List<Process> workers = new ArrayList<Process>();
+		for (int shard = 0; shard < this.numOfShards; shard++) {
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+			String javaOptions = this.properties.getProperty("shardJavaOptions", null);
+			if (javaOptions == null)
+				command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			else if (javaOptions.trim().length() > 0)
+				command.addAll(Arrays.asList(javaOptions.trim().split("\\s+")));
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(Run.class.getName());
+			command.add("-trainshard");
+			command.add(this.configFile);
+			command.add(Integer.toString(shard));
+			command.add(Integer.toString(this.numOfShards));
+
+			logger.info("Starting worker {}: {}", shard, command);
+			workers.add(new ProcessBuilder(command).inheritIO().start());
+		}
+
+		boolean failed = false;
+		for (int shard = 0; shard < this.numOfShards; shard++) {
+			int exitValue = workers.get(shard).waitFor();
+			if (exitValue != 0) {
+				logger.error("Worker {} failed with exit value {}", shard, exitValue);
+				failed = true;
+			}
+		}
+		if (failed)
+			System.exit(-1);
+
+		merge();
+	}
+
+	/**
+	 * Merges the shards saved by the workers into the model file and deletes
+	 * them.
+	 */
+	public void merge() throws Exception {
+		logger.info("Merging {} shards...", this.numOfShards);
+		// the shards are added to the weights of the first one
+		PLT model = (PLT) AbstractLearner.loadmodel(getShardFile(this.modelFile, 0), false);
+		for (int shard = 1; shard < this.numOfShards; shard++) {
+			model.mergeShard((PLT) AbstractLearner.loadmodel(getShardFile(this.modelFile, shard)));
+		}
+		model.finishMerge();
+
+		logger.info("Saving model file to " + this.modelFile);
+		model.savemodel(this.modelFile);
+
+		for (int shard = 0; shard < this.numOfShards; shard++) {
+			new File(getShardFile(this.modelFile, shard)).delete();
+		}
+	}
+
+	/**
+	 * Trains shard {@code shard} in this process, the work of one worker.
+	 */
+	public void trainShard(int shard, int numOfShards) throws Exception {
+		this.properties.setProperty("shard", Integer.toString(shard));
+		this.properties.setProperty("numOfShards", Integer.toString(numOfShards));
+		this.properties.setProperty("ModelFile", getShardFile(this.modelFile, shard));
+		super.train();
+	}
+}
@@ -47,6 +47,9 @@ public class SmacRun {
 	@Parameter(names = "-k")
 	int k;
 
+	@Parameter(names = "-optimizer")
+	String optimizer = "sgd";
+
 	String trainFile;
 
 	String testFile;
@@ -77,6 +80,7 @@ public class SmacRun {
 		properties.setProperty("gamma", Double.toString(gamma));
 		properties.setProperty("lambda", Double.toString(lambda));
 		properties.setProperty("k", Integer.toString(k));
+		properties.setProperty("optimizer", optimizer);
 		AbstractLearner learner = AbstractLearner.learnerFactory(properties);
 
 		learner.allocateClassifiers(traindata);
@@ -0,0 +1,54 @@
+package run;
+
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import IO.BatchDataManager;
+import IO.DataManager;
+import IO.ReadProperty;
+import Learner.AbstractLearner;
+
+/**
+ * Measures the training throughput (instances/sec) of the learner given in a
+ * config file. The training file is read into memory before timing, so the
+ * numbers do not include parsing. The first run is a warm-up of the JIT.
+ * 
+ * Usage: TrainingBenchmark config [repetitions]
+ */
+public class TrainingBenchmark {
+	private static Logger logger = LoggerFactory.getLogger(TrainingBenchmark.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			logger.info("No config file given!");
+			System.exit(-1);
+		}
+		Properties properties = ReadProperty.readProperty(args[0]);
+		int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		int epochs = Integer.parseInt(properties.getProperty("epochs", "30"));
+
+		DataManager data = new BatchDataManager(properties.getProperty("TrainFile"));
+		int numOfInstances = 0;
+		while (data.hasNext() == true) {
+			data.getNextInstance();
+			numOfInstances++;
+		}
+		data.reset();
+
+		for (int r = 0; r <= repetitions; r++) {
+			AbstractLearner learner = AbstractLearner.learnerFactory(properties);
+			learner.allocateClassifiers(data);
+
+			long start = System.nanoTime();
+			learner.train(data);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			data.reset();
+
+			logger.info("#### " + ((r == 0) ? "Warm-up" : "Run " + r) + ": " + String.format("%.3f", seconds)
+					+ " sec, " + String.format("%.0f", (numOfInstances * (double) epochs) / seconds)
+					+ " instances/sec");
+		}
+	}
+}
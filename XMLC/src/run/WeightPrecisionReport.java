@@ -0,0 +1,69 @@
+package run;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import IO.DataManager;
+import IO.Evaluator;
+import IO.ReadProperty;
+import Learner.AbstractLearner;
+import Learner.MLL;
+import Learner.PLT;
+import util.WeightStore;
+
+/**
+ * Trains the learner of a config file (PLT or MLL) with every weight
+ * precision and reports the memory of the weights together with the
+ * precision@k on the test file.
+ * 
+ * Usage: WeightPrecisionReport config [precision ...]
+ */
+public class WeightPrecisionReport {
+	private static Logger logger = LoggerFactory.getLogger(WeightPrecisionReport.class);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			logger.info("No config file given!");
+			System.exit(-1);
+		}
+		Properties properties = ReadProperty.readProperty(args[0]);
+		String[] precisions = { "double", "float", "int16", "int8" };
+		if (args.length > 1) {
+			precisions = new String[args.length - 1];
+			System.arraycopy(args, 1, precisions, 0, precisions.length);
+		}
+
+		StringBuilder report = new StringBuilder();
+		for (String precision : precisions) {
+			properties.setProperty("weightPrecision", precision);
+
+			DataManager traindata = DataManager.managerFactory(properties.getProperty("TrainFile"), properties);
+			AbstractLearner learner = AbstractLearner.learnerFactory(properties);
+			learner.allocateClassifiers(traindata);
+			learner.train(traindata);
+			traindata.close();
+
+			WeightStore weights = null;
+			if (learner instanceof PLT)
+				weights = ((PLT) learner).getWeightStore();
+			else if (learner instanceof MLL)
+				weights = ((MLL) learner).getWeightStore();
+
+			DataManager testdata = DataManager.managerFactory(properties.getProperty("TestFile"), properties);
+			Map<String, Double> perf = Evaluator.computePrecisionAtk(learner, testdata, 5);
+			testdata.close();
+
+			report.append(String.format("%-8s %10.1f MB", precision,
+					(weights == null) ? 0.0 : weights.getMemorySize() / (double) (1 << 20)));
+			for (Map.Entry<String, Double> entry : perf.entrySet()) {
+				report.append(String.format("  %s: %.4f", entry.getKey(), entry.getValue()));
+			}
+			report.append("\n");
+		}
+
+		logger.info("#### Weight precision report\n" + report);
+	}
+}
@@ -14,6 +14,11 @@ public abstract class ThresholdTunerFactory {
 		ThresholdTunerInitOption initOption = (ThresholdTunerInitOption) properties.get("tunerInitOption");
 		ThresholdTuner retVal = null;
 
+		if (type == null) {
+			logger.info("No ThresholdTuner is given.");
+			return retVal;
+		}
+
 		switch (type) {
 		case OfoFast:
 			retVal = new OfoFastThresholdTuner(numberOfLabels, initOption);
@@ -0,0 +1,40 @@
+package util;
+
+/**
+ * AdaGrad: the learning rate of a slot is {@code gamma} divided by the square
+ * root of the sum of its squared gradients.
+ */
+public class AdaGradOptimizer extends Optimizer {
+	private static final long serialVersionUID = -2890514235410573117L;
+
+	protected WeightStore sumOfSquares = null;
+
+	public AdaGradOptimizer(double gamma, WeightStore sumOfSquares) {
+		super(gamma);
+		this.sumOfSquares = sumOfSquares;
+	}
+
+	@Override
+	public double getStepFactor(int step) {
+		return this.gamma;
+	}
+
+	@Override
+	public double step(long slot, double gradient, double stepFactor) {
+		this.sumOfSquares.add(slot, gradient * gradient);
+		return stepFactor * gradient / (Math.sqrt(this.sumOfSquares.get(slot)) + epsilon);
+	}
+
+	@Override
+	public void copyState(Optimizer other, long size) {
+		WeightStore sumOfSquares = ((AdaGradOptimizer) other).sumOfSquares;
+		for (long slot = 0; slot < size; slot++) {
+			this.sumOfSquares.add(slot, sumOfSquares.get(slot));
+		}
+	}
+
+	@Override
+	public long getMemorySize() {
+		return this.sumOfSquares.getMemorySize();
+	}
+}
@@ -0,0 +1,52 @@
+package util;
+
+/**
+ * Lazy (sparse) Adam: the moment estimates of a slot only decay when the slot
+ * has a gradient, and the bias correction uses the number of updates of the
+ * task instead of a global step.
+ */
+public class AdamOptimizer extends Optimizer {
+	private static final long serialVersionUID = 1652306183327718529L;
+
+	protected static final double beta1 = 0.9;
+	protected static final double beta2 = 0.999;
+
+	protected WeightStore firstMoments = null;
+	protected WeightStore secondMoments = null;
+
+	public AdamOptimizer(double gamma, WeightStore firstMoments, WeightStore secondMoments) {
+		super(gamma);
+		this.firstMoments = firstMoments;
+		this.secondMoments = secondMoments;
+	}
+
+	@Override
+	public double getStepFactor(int step) {
+		return this.gamma * Math.sqrt(1 - Math.pow(beta2, step)) / (1 - Math.pow(beta1, step));
+	}
+
+	@Override
+	public double step(long slot, double gradient, double stepFactor) {
+		double m = this.firstMoments.get(slot);
+		double v = this.secondMoments.get(slot);
+		double dm = (1 - beta1) * (gradient - m);
+		double dv = (1 - beta2) * (gradient * gradient - v);
+		this.firstMoments.add(slot, dm);
+		this.secondMoments.add(slot, dv);
+		return stepFactor * (m + dm) / (Math.sqrt(v + dv) + epsilon);
+	}
+
+	@Override
+	public void copyState(Optimizer other, long size) {
+		AdamOptimizer adam = (AdamOptimizer) other;
+		for (long slot = 0; slot < size; slot++) {
+			this.firstMoments.add(slot, adam.firstMoments.get(slot));
+			this.secondMoments.add(slot, adam.secondMoments.get(slot));
+		}
+	}
+
+	@Override
+	public long getMemorySize() {
+		return this.firstMoments.getMemorySize() + this.secondMoments.getMemorySize();
+	}
+}
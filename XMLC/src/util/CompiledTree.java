@@ -0,0 +1,187 @@
+package util;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A tree given only by the flat arrays of {@link Tree#compile()}, as written
+ * by {@link Tree#writeCompiled(java.io.DataOutput)}. It answers every query
+ * of the tree it was built from without the tree file, and it is what the
+ * learners keep and serialize.
+ */
+public class CompiledTree extends Tree implements Serializable {
+	private static final long serialVersionUID = -2896407351538327143L;
+	final static public String name = "Compiled";
+
+	public CompiledTree(int k, int m, int numberOfInternalNodes, int[] childOffsets, int[] children, int[] parent,
+			int[] nodeToLabel, int[] labelToNode) {
+		initialize(k, m);
+		this.size = parent.length;
+		this.numberOfInternalNodes = numberOfInternalNodes;
+		this.childOffsets = childOffsets;
+		this.children = children;
+		this.parent = parent;
+		this.nodeToLabel = nodeToLabel;
+		this.labelToNode = labelToNode;
+	}
+
+	/**
+	 * Shares the arrays of a compiled tree.
+	 */
+	public CompiledTree(Tree tree) {
+		this(tree.k, tree.m, tree.numberOfInternalNodes, tree.childOffsets, tree.children, tree.parent,
+				tree.nodeToLabel, tree.labelToNode);
+		if (!tree.isCompiled())
+			throw new IllegalArgumentException("The tree is not compiled");
+	}
+
+	/**
+	 * Returns a copy of the tree with a leaf for every label below {@code m}
+	 * that it does not have yet. A new label is attached to the shallowest
+	 * internal node with less than k children, or it splits the shallowest
+	 * leaf, which becomes an internal node above its old label and the new
+	 * one. The nodes keep their indices and the new nodes are appended, so the
+	 * node-indexed arrays of a learner only have to grow.
+	 */
+	public CompiledTree addLabels(int m) {
+		int numOfNewLabels = 0;
+		for (int label = 0; label < m; label++) {
+			if (!hasLabel(label))
+				numOfNewLabels++;
+		}
+		if (numOfNewLabels == 0)
+			return this;
+
+		int maxSize = this.size + 2 * numOfNewLabels;
+		int[] parent = Arrays.copyOf(this.parent, maxSize);
+		int[] nodeToLabel = Arrays.copyOf(this.nodeToLabel, maxSize);
+		int[] labelToNode = Arrays.copyOf(this.labelToNode, Math.max(m, this.labelToNode.length));
+		Arrays.fill(labelToNode, this.labelToNode.length, labelToNode.length, -1);
+		int[] numOfChildren = new int[maxSize];
+		int[] depth = new int[maxSize];
+
+		// the candidates are ordered by depth, internal nodes first
+		PriorityQueue<Long> candidates = new PriorityQueue<Long>();
+		int[] queue = new int[this.size];
+		int head = 0, tail = 0;
+		queue[tail++] = 0;
+		while (head < tail) {
+			int node = queue[head++];
+			numOfChildren[node] = this.childEnd(node) - this.childStart(node);
+			for (int c = this.childStart(node); c < this.childEnd(node); c++) {
+				depth[this.children[c]] = depth[node] + 1;
+				queue[tail++] = this.children[c];
+			}
+			if ((nodeToLabel[node] >= 0) || (numOfChildren[node] < this.k))
+				candidates.add(candidateKey(node, depth[node], nodeToLabel[node] >= 0));
+		}
+
+		int size = this.size;
+		int numberOfInternalNodes = this.numberOfInternalNodes;
+		for (int label = 0; label < m; label++) {
+			if (hasLabel(label))
+				continue;
+			int node = (int) (candidates.poll() & 0xFFFFFFFFL);
+			if (nodeToLabel[node] >= 0) {
+				int leaf = size++;
+				parent[leaf] = node;
+				depth[leaf] = depth[node] + 1;
+				nodeToLabel[leaf] = nodeToLabel[node];
+				labelToNode[nodeToLabel[leaf]] = leaf;
+				candidates.add(candidateKey(leaf, depth[leaf], true));
+				nodeToLabel[node] = -1;
+				numOfChildren[node] = 1;
+				numberOfInternalNodes++;
+			}
+			int leaf = size++;
+			parent[leaf] = node;
+			depth[leaf] = depth[node] + 1;
+			nodeToLabel[leaf] = label;
+			labelToNode[label] = leaf;
+			candidates.add(candidateKey(leaf, depth[leaf], true));
+			if (++numOfChildren[node] < this.k)
+				candidates.add(candidateKey(node, depth[node], false));
+		}
+
+		// the new children follow the old ones of their parent
+		int[] childOffsets = new int[size + 1];
+		for (int node = 0; node < size; node++) {
+			childOffsets[node + 1] = childOffsets[node] + numOfChildren[node];
+		}
+		int[] children = new int[childOffsets[size]];
+		int[] position = Arrays.copyOf(childOffsets, size);
+		for (int node = 0; node < this.size; node++) {
+			for (int c = this.childStart(node); c < this.childEnd(node); c++) {
+				children[position[node]++] = this.children[c];
+			}
+		}
+		for (int node = this.size; node < size; node++) {
+			children[position[parent[node]]++] = node;
+		}
+
+		return new CompiledTree(this.k, Math.max(this.m, m), numberOfInternalNodes, childOffsets, children,
+				Arrays.copyOf(parent, size), Arrays.copyOf(nodeToLabel, size), labelToNode);
+	}
+
+	protected static long candidateKey(int node, int depth, boolean isLeaf) {
+		return (((long) depth) << 33) | ((isLeaf ? 1L : 0L) << 32) | node;
+	}
+
+	public static CompiledTree read(DataInput in) throws IOException {
+		int k = in.readInt();
+		int m = in.readInt();
+		int numberOfInternalNodes = in.readInt();
+		int[] childOffsets = readArray(in);
+		int[] children = readArray(in);
+		int[] parent = readArray(in);
+		int[] nodeToLabel = readArray(in);
+		int[] labelToNode = readArray(in);
+		if ((childOffsets.length != parent.length + 1) || (nodeToLabel.length != parent.length)
+				|| (childOffsets[parent.length] != children.length)) {
+			throw new IOException("Inconsistent tree of " + parent.length + " nodes");
+		}
+		return new CompiledTree(k, m, numberOfInternalNodes, childOffsets, children, parent, nodeToLabel,
+				labelToNode);
+	}
+
+	protected static int[] readArray(DataInput in) throws IOException {
+		int[] array = new int[in.readInt()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = in.readInt();
+		}
+		return array;
+	}
+
+	@Override
+	public ArrayList<Integer> getChildNodes(int node) {
+		ArrayList<Integer> childNodes = new ArrayList<Integer>(this.childEnd(node) - this.childStart(node));
+		for (int i = this.childStart(node); i < this.childEnd(node); i++) {
+			childNodes.add(this.children[i]);
+		}
+		return childNodes;
+	}
+
+	@Override
+	public int getParent(int node) {
+		return this.parent[node];
+	}
+
+	@Override
+	public boolean isLeaf(int node) {
+		return this.nodeToLabel[node] >= 0;
+	}
+
+	@Override
+	public int getTreeIndex(int label) {
+		return this.labelToNode[label];
+	}
+
+	@Override
+	public int getLabelIndex(int treeIndex) {
+		return this.nodeToLabel[treeIndex];
+	}
+}
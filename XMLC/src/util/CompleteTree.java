@@ -39,6 +39,7 @@ public class CompleteTree extends Tree implements Serializable {
 		super.initialize(k, m);
 		this.size = computeSize(k,m);
 		this.numberOfInternalNodes = this.size - m;
+		compile();
 	}
 	
 	@Override
@@ -0,0 +1,58 @@
+package util;
+
+public class DoubleWeightStore implements WeightStore {
+	private static final long serialVersionUID = 4415939185813451209L;
+
+	protected double[] w = null;
+
+	public DoubleWeightStore(int size) {
+		this.w = new double[size];
+	}
+
+	@Override
+	public double get(long index) {
+		return this.w[(int) index];
+	}
+
+	@Override
+	public void add(long index, double delta) {
+		this.w[(int) index] += delta;
+	}
+
+	/**
+	 * Unrolled by four with independent sums, so that the gathers of
+	 * consecutive entries do not wait for each other.
+	 */
+	@Override
+	public double dot(long[] indices, double[] values, int length) {
+		double sum0 = 0.0, sum1 = 0.0, sum2 = 0.0, sum3 = 0.0;
+		int i = 0;
+		for (; i + 3 < length; i += 4) {
+			sum0 += values[i] * this.w[(int) indices[i]];
+			sum1 += values[i + 1] * this.w[(int) indices[i + 1]];
+			sum2 += values[i + 2] * this.w[(int) indices[i + 2]];
+			sum3 += values[i + 3] * this.w[(int) indices[i + 3]];
+		}
+		for (; i < length; i++) {
+			sum0 += values[i] * this.w[(int) indices[i]];
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	@Override
+	public void addScaled(long[] indices, double[] values, int length, double scale) {
+		for (int i = 0; i < length; i++) {
+			this.w[(int) indices[i]] += scale * values[i];
+		}
+	}
+
+	@Override
+	public long size() {
+		return this.w.length;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return 8L * this.w.length;
+	}
+}
@@ -0,0 +1,308 @@
+package util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A tree that labels can be added to while other threads use it. A new label
+ * is attached to an internal node with less than k children, or it splits a
+ * leaf, which becomes an internal node above its old label and the new one.
+ * The nodes keep their indices and the new nodes are appended, so the
+ * node-indexed arrays of a learner only have to grow.
+ *
+ * Every internal node with less than k children has room for k of them, so a
+ * child is added by writing it behind the children of its parent and then
+ * publishing the new end of the children. A leaf gets its children before it
+ * is turned into an internal node. The arrays are replaced by copies twice as
+ * large when they are full, which only the single writer changes afterwards.
+ * A reader therefore sees every node either before or after a change, never
+ * half of it. Labels are added under the lock of the tree.
+ *
+ * A serialized tree is written as a {@link CompiledTree}.
+ */
+public class GrowingTree extends Tree {
+	private static final long serialVersionUID = -3417950120722694823L;
+	final static public String name = "Growing";
+
+	/**
+	 * The node-indexed arrays, which are replaced together.
+	 */
+	protected static class Nodes {
+		public final int[] parent;
+		public final int[] childStart;
+		public final AtomicIntegerArray childEnd;
+		public final AtomicIntegerArray nodeToLabel;
+
+		public Nodes(int capacity) {
+			this.parent = new int[capacity];
+			this.childStart = new int[capacity];
+			this.childEnd = new AtomicIntegerArray(capacity);
+			this.nodeToLabel = new AtomicIntegerArray(capacity);
+		}
+
+		public Nodes(Nodes nodes, int size, int capacity) {
+			this.parent = Arrays.copyOf(nodes.parent, capacity);
+			this.childStart = Arrays.copyOf(nodes.childStart, capacity);
+			this.childEnd = new AtomicIntegerArray(capacity);
+			this.nodeToLabel = new AtomicIntegerArray(capacity);
+			for (int node = 0; node < size; node++) {
+				this.childEnd.set(node, nodes.childEnd.get(node));
+				this.nodeToLabel.set(node, nodes.nodeToLabel.get(node));
+			}
+		}
+	}
+
+	transient protected volatile Nodes nodes = null;
+	transient protected volatile int[] childList = null;
+	transient protected volatile AtomicIntegerArray leaves = null;
+	transient protected volatile int numberOfNodes = 0;
+	transient protected volatile int numberOfLabels = 0;
+	transient protected volatile int numberOfInternal = 0;
+	/**
+	 * Used length of {@code childList}, only read by the writer.
+	 */
+	transient protected int childListLength = 0;
+
+	public GrowingTree(Tree tree) {
+		if (!tree.isCompiled())
+			throw new IllegalArgumentException("The tree is not compiled");
+		initialize(tree.k, tree.getNumberOfLeaves());
+		int size = tree.getSize();
+
+		int length = 0;
+		for (int node = 0; node < size; node++) {
+			if (!tree.isLeaf(node))
+				length += Math.max(this.k, tree.childEnd(node) - tree.childStart(node));
+		}
+
+		Nodes nodes = new Nodes(size);
+		int[] childList = new int[length];
+		int position = 0;
+		for (int node = 0; node < size; node++) {
+			nodes.parent[node] = tree.getParent(node);
+			if (tree.isLeaf(node)) {
+				nodes.nodeToLabel.set(node, tree.getLabelIndex(node));
+			} else {
+				nodes.nodeToLabel.set(node, -1);
+				nodes.childStart[node] = position;
+				int end = position;
+				for (int c = tree.childStart(node); c < tree.childEnd(node); c++) {
+					childList[end++] = tree.childAt(c);
+				}
+				nodes.childEnd.set(node, end);
+				position += Math.max(this.k, end - position);
+			}
+		}
+
+		AtomicIntegerArray leaves = new AtomicIntegerArray(tree.getNumberOfLeaves());
+		for (int label = 0; label < leaves.length(); label++) {
+			leaves.set(label, tree.hasLabel(label) ? tree.getTreeIndex(label) : -1);
+		}
+
+		this.childListLength = position;
+		this.childList = childList;
+		this.leaves = leaves;
+		this.numberOfNodes = size;
+		this.numberOfLabels = leaves.length();
+		this.numberOfInternal = tree.getNumberOfInternalNodes();
+		this.nodes = nodes;
+	}
+
+	/**
+	 * Adds a leaf of {@code label}: below {@code node} if it is an internal
+	 * node with less than k children, or below a new leaf of its label if
+	 * {@code node} is a leaf. The old label of the leaf then moves to the
+	 * first new node.
+	 *
+	 * @return The leaf of the label.
+	 */
+	public synchronized int addLabel(int label, int node) {
+		if (hasLabel(label))
+			throw new IllegalArgumentException("The tree already has label " + label);
+		int size = this.numberOfNodes;
+		if (isLeaf(node)) {
+			ensureCapacity(size + 2, this.childListLength + this.k, label + 1);
+			Nodes nodes = this.nodes;
+			int oldLabel = nodes.nodeToLabel.get(node);
+			int start = this.childListLength;
+			this.childListLength += this.k;
+
+			addLeaf(nodes, size, node, oldLabel);
+			addLeaf(nodes, size + 1, node, label);
+			this.childList[start] = size;
+			this.childList[start + 1] = size + 1;
+			nodes.childStart[node] = start;
+			nodes.childEnd.set(node, start + 2);
+			this.numberOfNodes = size + 2;
+			this.leaves.set(oldLabel, size);
+			this.leaves.set(label, size + 1);
+
+			nodes.nodeToLabel.set(node, -1);
+			this.numberOfInternal++;
+		} else {
+			int end = childEnd(node);
+			if (end - childStart(node) >= this.k)
+				throw new IllegalArgumentException("Node " + node + " has " + this.k + " children already");
+			ensureCapacity(size + 1, this.childListLength, label + 1);
+			Nodes nodes = this.nodes;
+
+			addLeaf(nodes, size, node, label);
+			this.childList[end] = size;
+			this.numberOfNodes = size + 1;
+			nodes.childEnd.set(node, end + 1);
+			this.leaves.set(label, size);
+		}
+		this.numberOfLabels = Math.max(this.numberOfLabels, label + 1);
+		this.m = this.numberOfLabels;
+		return this.leaves.get(label);
+	}
+
+	protected void addLeaf(Nodes nodes, int leaf, int parent, int label) {
+		nodes.parent[leaf] = parent;
+		nodes.childStart[leaf] = 0;
+		nodes.childEnd.set(leaf, 0);
+		nodes.nodeToLabel.set(leaf, label);
+	}
+
+	protected void ensureCapacity(int size, int childListLength, int numberOfLabels) {
+		if (size > this.nodes.parent.length) {
+			this.nodes = new Nodes(this.nodes, this.numberOfNodes, Math.max(size, 2 * this.nodes.parent.length));
+		}
+		if (childListLength > this.childList.length) {
+			this.childList = Arrays.copyOf(this.childList, Math.max(childListLength, 2 * this.childList.length));
+		}
+		AtomicIntegerArray leaves = this.leaves;
+		if (numberOfLabels > leaves.length()) {
+			AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(numberOfLabels, 2 * leaves.length()));
+			for (int label = 0; label < grown.length(); label++) {
+				grown.set(label, (label < leaves.length()) ? leaves.get(label) : -1);
+			}
+			this.leaves = grown;
+		}
+	}
+
+	/**
+	 * @return The number of children that can still be added to
+	 *         {@code node}, zero for a leaf.
+	 */
+	public int getFreeChildren(int node) {
+		if (isLeaf(node))
+			return 0;
+		return Math.max(0, this.k - (childEnd(node) - childStart(node)));
+	}
+
+	/**
+	 * @return A compiled copy of the current tree.
+	 */
+	public synchronized CompiledTree toCompiledTree() {
+		Nodes nodes = this.nodes;
+		int size = this.numberOfNodes;
+		int[] childOffsets = new int[size + 1];
+		int[] children = new int[size - 1];
+		int[] parent = Arrays.copyOf(nodes.parent, size);
+		int[] nodeToLabel = new int[size];
+		int[] labelToNode = new int[this.numberOfLabels];
+
+		int offset = 0;
+		for (int node = 0; node < size; node++) {
+			childOffsets[node] = offset;
+			nodeToLabel[node] = nodes.nodeToLabel.get(node);
+			if (nodeToLabel[node] < 0) {
+				for (int c = nodes.childStart[node]; c < nodes.childEnd.get(node); c++) {
+					children[offset++] = this.childList[c];
+				}
+			}
+		}
+		childOffsets[size] = offset;
+		for (int label = 0; label < labelToNode.length; label++) {
+			labelToNode[label] = this.leaves.get(label);
+		}
+		return new CompiledTree(this.k, this.numberOfLabels, this.numberOfInternal, childOffsets,
+				Arrays.copyOf(children, offset), parent, nodeToLabel, labelToNode);
+	}
+
+	protected Object writeReplace() throws ObjectStreamException {
+		return toCompiledTree();
+	}
+
+	@Override
+	public void writeCompiled(DataOutput out) throws IOException {
+		toCompiledTree().writeCompiled(out);
+	}
+
+	@Override
+	public boolean isCompiled() {
+		return true;
+	}
+
+	@Override
+	public int childStart(int node) {
+		return this.nodes.childStart[node];
+	}
+
+	@Override
+	public int childEnd(int node) {
+		return this.nodes.childEnd.get(node);
+	}
+
+	@Override
+	public int childAt(int position) {
+		return this.childList[position];
+	}
+
+	@Override
+	public ArrayList<Integer> getChildNodes(int node) {
+		ArrayList<Integer> childNodes = new ArrayList<Integer>();
+		if (!isLeaf(node)) {
+			for (int c = childStart(node); c < childEnd(node); c++) {
+				childNodes.add(childAt(c));
+			}
+		}
+		return childNodes;
+	}
+
+	@Override
+	public int getParent(int node) {
+		return this.nodes.parent[node];
+	}
+
+	@Override
+	public boolean isLeaf(int node) {
+		return this.nodes.nodeToLabel.get(node) >= 0;
+	}
+
+	@Override
+	public int getTreeIndex(int label) {
+		return this.leaves.get(label);
+	}
+
+	@Override
+	public int getLabelIndex(int treeIndex) {
+		return this.nodes.nodeToLabel.get(treeIndex);
+	}
+
+	@Override
+	public boolean hasLabel(int label) {
+		AtomicIntegerArray leaves = this.leaves;
+		return (label < leaves.length()) && (leaves.get(label) >= 0);
+	}
+
+	@Override
+	public int getNumberOfLeaves() {
+		return this.numberOfLabels;
+	}
+
+	@Override
+	public int getSize() {
+		return this.numberOfNodes;
+	}
+
+	@Override
+	public int getNumberOfInternalNodes() {
+		return this.numberOfInternal;
+	}
+}
@@ -42,6 +42,7 @@ public class HuffmanTree extends PrecomputedTree {
 		this.data = data;
 		allocateFrequencies();
 		buildHuffmanTree();
+		compile();
 		writeTree(treeFileName);
 	}
 
@@ -0,0 +1,27 @@
+package util;
+
+public class Int16WeightStore extends QuantizedWeightStore {
+	private static final long serialVersionUID = 3170948257190452398L;
+
+	protected short[] levels = null;
+
+	public Int16WeightStore(int size) {
+		super(size, Short.MAX_VALUE);
+		this.levels = new short[size];
+	}
+
+	@Override
+	protected int getLevel(int index) {
+		return this.levels[index];
+	}
+
+	@Override
+	protected void setLevel(int index, int level) {
+		this.levels[index] = (short) level;
+	}
+
+	@Override
+	protected int bytesPerLevel() {
+		return 2;
+	}
+}
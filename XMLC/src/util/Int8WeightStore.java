@@ -0,0 +1,27 @@
+package util;
+
+public class Int8WeightStore extends QuantizedWeightStore {
+	private static final long serialVersionUID = -6014375853283497370L;
+
+	protected byte[] levels = null;
+
+	public Int8WeightStore(int size) {
+		super(size, Byte.MAX_VALUE);
+		this.levels = new byte[size];
+	}
+
+	@Override
+	protected int getLevel(int index) {
+		return this.levels[index];
+	}
+
+	@Override
+	protected void setLevel(int index, int level) {
+		this.levels[index] = (byte) level;
+	}
+
+	@Override
+	protected int bytesPerLevel() {
+		return 1;
+	}
+}
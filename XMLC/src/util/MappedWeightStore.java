@@ -0,0 +1,91 @@
+package util;
+
+import java.io.ObjectStreamException;
+
+import IO.MappedFile;
+
+/**
+ * Read-only weights served directly from a memory mapping of a model file,
+ * as float or double values starting at {@code offset}. The weights are
+ * loaded lazily by the operating system, and JVMs mapping the same file share
+ * its pages. A serialized store is written as an ordinary writable store, see
+ * {@link #copy()}.
+ */
+public class MappedWeightStore implements WeightStore {
+	private static final long serialVersionUID = 2411846734187315823L;
+
+	transient protected MappedFile file = null;
+	protected long offset = 0;
+	protected long size = 0;
+	protected int bytesPerWeight = 4;
+
+	public MappedWeightStore(MappedFile file, long offset, long size, int bytesPerWeight) {
+		if ((bytesPerWeight != 4) && (bytesPerWeight != 8))
+			throw new IllegalArgumentException("Only float and double weights can be mapped");
+		if (offset + size * bytesPerWeight > file.length())
+			throw new IllegalArgumentException("The weights exceed " + file.getFilename());
+		this.file = file;
+		this.offset = offset;
+		this.size = size;
+		this.bytesPerWeight = bytesPerWeight;
+	}
+
+	@Override
+	public double get(long index) {
+		if (this.bytesPerWeight == 4)
+			return this.file.getFloat(this.offset + 4 * index);
+		return this.file.getDouble(this.offset + 8 * index);
+	}
+
+	@Override
+	public void add(long index, double delta) {
+		throw new UnsupportedOperationException("The weights of " + this.file.getFilename() + " are read only");
+	}
+
+	@Override
+	public double dot(long[] indices, double[] values, int length) {
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += values[i] * get(indices[i]);
+		}
+		return sum;
+	}
+
+	@Override
+	public void addScaled(long[] indices, double[] values, int length, double scale) {
+		throw new UnsupportedOperationException("The weights of " + this.file.getFilename() + " are read only");
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * @return The size of the mapped weights, which are not on the heap.
+	 */
+	@Override
+	public long getMemorySize() {
+		return this.size * this.bytesPerWeight;
+	}
+
+	/**
+	 * @return A writable copy of the weights, off the heap if they do not fit
+	 *         into an array.
+	 */
+	public WeightStore copy() {
+		String precision = (this.bytesPerWeight == 4) ? "float" : "double";
+		boolean offHeap = this.size > WeightStoreFactory.maxHeapSize;
+		WeightStore copy = WeightStoreFactory.createWeightStore(precision, this.size, offHeap, null);
+		for (long i = 0; i < this.size; i++) {
+			double value = get(i);
+			if (value != 0.0)
+				copy.add(i, value);
+		}
+		return copy;
+	}
+
+	protected Object writeReplace() throws ObjectStreamException {
+		return copy();
+	}
+}
@@ -0,0 +1,69 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Set of tree node indices that can be cleared in constant time and is reused
+ * across instances. Members are kept on an int stack in insertion order,
+ * membership is tracked by stamping the node with the current generation.
+ * The stamps grow with the nodes of a growing tree.
+ */
+public class NodeSet {
+
+	protected int[] stamps = null;
+	protected int generation = 1;
+
+	protected int[] nodes = null;
+	protected int size = 0;
+
+	public NodeSet(int numberOfNodes) {
+		this.stamps = new int[numberOfNodes];
+		this.nodes = new int[Math.max(16, Math.min(numberOfNodes, 1024))];
+	}
+
+	public void clear() {
+		this.size = 0;
+		this.generation++;
+		if (this.generation == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamps, 0);
+			this.generation = 1;
+		}
+	}
+
+	/**
+	 * @return false if the node was already in the set.
+	 */
+	public boolean add(int node) {
+		if (node >= this.stamps.length)
+			this.stamps = Arrays.copyOf(this.stamps, Math.max(node + 1, 2 * this.stamps.length));
+		if (this.stamps[node] == this.generation)
+			return false;
+
+		this.stamps[node] = this.generation;
+		if (this.size == this.nodes.length) {
+			this.nodes = Arrays.copyOf(this.nodes, 2 * this.nodes.length);
+		}
+		this.nodes[this.size++] = node;
+		return true;
+	}
+
+	public boolean contains(int node) {
+		return (node < this.stamps.length) && (this.stamps[node] == this.generation);
+	}
+
+	public int get(int i) {
+		return this.nodes[i];
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public int capacity() {
+		return this.stamps.length;
+	}
+}
@@ -0,0 +1,41 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+public class OffHeapDoubleWeightStore extends OffHeapWeightStore {
+	private static final long serialVersionUID = 6893265106385337071L;
+
+	transient protected DoubleBuffer[] segments = null;
+
+	public OffHeapDoubleWeightStore(long size, String weightFile) throws IOException {
+		super(size, weightFile);
+		allocate();
+	}
+
+	@Override
+	protected int bytesPerWeight() {
+		return 8;
+	}
+
+	@Override
+	protected void setSegments(ByteBuffer[] segments) {
+		this.segments = new DoubleBuffer[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			this.segments[i] = segments[i].asDoubleBuffer();
+		}
+	}
+
+	@Override
+	public double get(long index) {
+		return this.segments[(int) (index >>> segmentBits)].get((int) (index & segmentMask));
+	}
+
+	@Override
+	public void add(long index, double delta) {
+		DoubleBuffer segment = this.segments[(int) (index >>> segmentBits)];
+		int i = (int) (index & segmentMask);
+		segment.put(i, segment.get(i) + delta);
+	}
+}
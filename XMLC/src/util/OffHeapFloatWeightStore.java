@@ -0,0 +1,41 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+public class OffHeapFloatWeightStore extends OffHeapWeightStore {
+	private static final long serialVersionUID = -1878946452734000367L;
+
+	transient protected FloatBuffer[] segments = null;
+
+	public OffHeapFloatWeightStore(long size, String weightFile) throws IOException {
+		super(size, weightFile);
+		allocate();
+	}
+
+	@Override
+	protected int bytesPerWeight() {
+		return 4;
+	}
+
+	@Override
+	protected void setSegments(ByteBuffer[] segments) {
+		this.segments = new FloatBuffer[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			this.segments[i] = segments[i].asFloatBuffer();
+		}
+	}
+
+	@Override
+	public double get(long index) {
+		return this.segments[(int) (index >>> segmentBits)].get((int) (index & segmentMask));
+	}
+
+	@Override
+	public void add(long index, double delta) {
+		FloatBuffer segment = this.segments[(int) (index >>> segmentBits)];
+		int i = (int) (index & segmentMask);
+		segment.put(i, (float) (segment.get(i) + delta));
+	}
+}
@@ -0,0 +1,113 @@
+package util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Weights kept outside of the Java heap in segments of 2^27 entries, so the
+ * number of weights is not limited by the maximal array length and the
+ * garbage collector never has to scan them. The segments are either direct
+ * buffers or, if a weight file is given, a read-write mapping of that file,
+ * which lets the operating system page out weights that are rarely used.
+ *
+ * When serialized, the weights are written into the stream; a deserialized
+ * store always lives in direct buffers, whose total size is limited by
+ * -XX:MaxDirectMemorySize.
+ */
+public abstract class OffHeapWeightStore implements WeightStore {
+	private static final long serialVersionUID = -5164128843432107758L;
+
+	protected static final int segmentBits = 27;
+	protected static final long segmentMask = (1L << segmentBits) - 1;
+
+	protected long size = 0;
+	transient protected String weightFile = null;
+
+	public OffHeapWeightStore(long size, String weightFile) {
+		this.size = size;
+		this.weightFile = weightFile;
+	}
+
+	protected abstract int bytesPerWeight();
+	protected abstract void setSegments(ByteBuffer[] segments);
+
+	protected void allocate() throws IOException {
+		int numOfSegments = (int) ((this.size + segmentMask) >>> segmentBits);
+		ByteBuffer[] segments = new ByteBuffer[numOfSegments];
+
+		if (this.weightFile == null) {
+			for (int i = 0; i < numOfSegments; i++) {
+				segments[i] = ByteBuffer.allocateDirect(segmentBytes(i)).order(ByteOrder.nativeOrder());
+			}
+		} else {
+			RandomAccessFile file = new RandomAccessFile(this.weightFile, "rw");
+			try {
+				file.setLength(this.size * bytesPerWeight());
+				FileChannel channel = file.getChannel();
+				for (int i = 0; i < numOfSegments; i++) {
+					long start = (((long) i) << segmentBits) * bytesPerWeight();
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentBytes(i))
+							.order(ByteOrder.nativeOrder());
+				}
+			} finally {
+				file.close();
+			}
+		}
+
+		setSegments(segments);
+	}
+
+	protected int segmentBytes(int segment) {
+		long start = ((long) segment) << segmentBits;
+		return (int) (Math.min(segmentMask + 1, this.size - start) * bytesPerWeight());
+	}
+
+	@Override
+	public double dot(long[] indices, double[] values, int length) {
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += values[i] * get(indices[i]);
+		}
+		return sum;
+	}
+
+	@Override
+	public void addScaled(long[] indices, double[] values, int length, double scale) {
+		for (int i = 0; i < length; i++) {
+			add(indices[i], scale * values[i]);
+		}
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return this.size * bytesPerWeight();
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		for (long i = 0; i < this.size; i++) {
+			if (bytesPerWeight() == 4)
+				out.writeFloat((float) get(i));
+			else
+				out.writeDouble(get(i));
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		allocate();
+		for (long i = 0; i < this.size; i++) {
+			add(i, (bytesPerWeight() == 4) ? in.readFloat() : in.readDouble());
+		}
+	}
+}
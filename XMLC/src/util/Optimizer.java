@@ -0,0 +1,54 @@
+package util;
+
+import java.io.Serializable;
+
+/**
+ * Adaptive update rule for a group of parameters, e.g. the hashed weights of
+ * a learner. The state of the rule is kept per parameter slot, so only the
+ * slots with a non-zero gradient are touched (sparse or lazy updates). The
+ * learner applies the returned changes to its own storage.
+ *
+ * A learner calls {@link #getStepFactor(int)} once per update of a task and
+ * then {@link #step(long, double, double)} for every slot of the update.
+ */
+public abstract class Optimizer implements Serializable {
+	private static final long serialVersionUID = 6412096580212462581L;
+
+	protected static final double epsilon = 1e-8;
+
+	/**
+	 * Base learning rate.
+	 */
+	protected double gamma = 0.1;
+
+	public Optimizer(double gamma) {
+		this.gamma = gamma;
+	}
+
+	/**
+	 * @param step
+	 *            Number of the update of the task, starting at one.
+	 * @return The factor of the update of the task that is shared by its
+	 *         slots.
+	 */
+	public abstract double getStepFactor(int step);
+
+	/**
+	 * Updates the state of {@code slot}.
+	 *
+	 * @return The change to subtract from the parameter at {@code slot}.
+	 */
+	public abstract double step(long slot, double gradient, double stepFactor);
+
+	/**
+	 * Copies the state of the first {@code size} slots of {@code other}, an
+	 * optimizer of the same type, e.g. when the parameters grow. The slots
+	 * of this optimizer must not have a state yet.
+	 */
+	public abstract void copyState(Optimizer other, long size);
+
+	/**
+	 * @return The number of bytes taken by the state.
+	 */
+	public abstract long getMemorySize();
+}
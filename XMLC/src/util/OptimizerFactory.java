@@ -0,0 +1,37 @@
+package util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class OptimizerFactory {
+	private static Logger logger = LoggerFactory.getLogger(OptimizerFactory.class);
+
+	/**
+	 * Creates an adaptive optimizer for {@code size} parameters. Plain SGD is
+	 * built into the learners and has no optimizer object.
+	 *
+	 * @param precision
+	 *            Precision of the parameters; the state is kept in double or,
+	 *            for all other precisions, in float.
+	 * @param offHeap
+	 *            Keep the state outside of the Java heap.
+	 */
+	public static Optimizer createOptimizer( String type, double gamma, long size, String precision, boolean offHeap ) {
+		String statePrecision = (precision.compareTo("double") == 0) ? "double" : "float";
+
+		Optimizer optimizer = null;
+		if ( type.compareTo("adagrad") == 0 ) {
+			optimizer = new AdaGradOptimizer(gamma,
+					WeightStoreFactory.createWeightStore(statePrecision, size, offHeap, null));
+		} else if ( type.compareTo("adam") == 0 ) {
+			optimizer = new AdamOptimizer(gamma,
+					WeightStoreFactory.createWeightStore(statePrecision, size, offHeap, null),
+					WeightStoreFactory.createWeightStore(statePrecision, size, offHeap, null));
+		} else {
+			logger.info("Unknown optimizer");
+			System.exit(-1);
+		}
+		return optimizer;
+	}
+
+}
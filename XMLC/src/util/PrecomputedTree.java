@@ -37,6 +37,7 @@ public class PrecomputedTree extends Tree implements Serializable {
 		initialize(treeFileName);
 		this.size = this.indexToNode.size();
 		this.numberOfInternalNodes = (int) this.size / 2;
+		compile();
 	}
 
 	public class TreeNode {
@@ -138,6 +139,15 @@ public class PrecomputedTree extends Tree implements Serializable {
 
 	@Override
 	public ArrayList<Integer> getChildNodes(int nodeIndex) {
+		if (isCompiled()) {
+			if (childStart(nodeIndex) == childEnd(nodeIndex))
+				return null;
+			ArrayList<Integer> childNodes = new ArrayList<>(childEnd(nodeIndex) - childStart(nodeIndex));
+			for (int i = childStart(nodeIndex); i < childEnd(nodeIndex); i++) {
+				childNodes.add(childAt(i));
+			}
+			return childNodes;
+		}
 		TreeNode node = this.indexToNode.get(new Integer(nodeIndex));
 		if (!node.isLeaf()) {
 			ArrayList<Integer> childNodes = new ArrayList<>();
@@ -153,6 +163,8 @@ public class PrecomputedTree extends Tree implements Serializable {
 
 	@Override
 	public int getParent(int nodeIndex) {
+		if (isCompiled())
+			return this.parent[nodeIndex];
 		TreeNode node = this.indexToNode.get(nodeIndex);
 		if (node.parent == null)
 			return -1;
@@ -160,15 +172,21 @@ public class PrecomputedTree extends Tree implements Serializable {
 	}
 
 	public int getTreeIndex(int label) {
+		if (isCompiled())
+			return this.labelToNode[label];
 		return this.labelToIndex.get(label);
 	}
 
 	public int getLabelIndex(int nodeIndex) {
+		if (isCompiled())
+			return this.nodeToLabel[nodeIndex];
 		return this.indexToNode.get(nodeIndex).label;
 	}
 
 	@Override
 	public boolean isLeaf(int nodeIndex) {
+		if (isCompiled())
+			return childStart(nodeIndex) == childEnd(nodeIndex);
 		return this.indexToNode.get(nodeIndex).isLeaf();
 	}
 
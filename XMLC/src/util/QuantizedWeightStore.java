@@ -0,0 +1,119 @@
+package util;
+
+/**
+ * Weights stored as small integer levels with one float scale per block of
+ * {@code 2^blockBits} weights, i.e. {@code w[i] = level[i] * scale[block(i)]}.
+ * When an update leaves the range of its block, the scale of the block is
+ * enlarged and the other levels of the block are requantized.
+ *
+ * Updates of SGD are usually much smaller than the quantization step, so
+ * the new level is rounded stochastically: it is rounded up with probability
+ * equal to the fractional part, which keeps every update unbiased.
+ *
+ * Concurrent updates of the same block may lose updates as with plain arrays,
+ * but levels are always clamped to the valid range.
+ */
+public abstract class QuantizedWeightStore implements WeightStore {
+	private static final long serialVersionUID = 2619373434662911236L;
+
+	protected static final int blockBits = 6;
+	protected static final double headroom = 1.25;
+
+	protected int size = 0;
+	protected int maxLevel = 0;
+	protected float[] scales = null;
+
+	protected long randomState = 0x2545F4914F6CDD1DL;
+
+	public QuantizedWeightStore(int size, int maxLevel) {
+		this.size = size;
+		this.maxLevel = maxLevel;
+		this.scales = new float[(size + (1 << blockBits) - 1) >>> blockBits];
+	}
+
+	protected abstract int getLevel(int index);
+	protected abstract void setLevel(int index, int level);
+	protected abstract int bytesPerLevel();
+
+	@Override
+	public double get(long index) {
+		return getLevel((int) index) * this.scales[(int) (index >>> blockBits)];
+	}
+
+	@Override
+	public void add(long longIndex, double delta) {
+		int index = (int) longIndex;
+		int block = index >>> blockBits;
+		double scale = this.scales[block];
+		double value = getLevel(index) * scale + delta;
+
+		if (Math.abs(value) > this.maxLevel * scale) {
+			rescale(block, headroom * Math.abs(value) / this.maxLevel);
+			scale = this.scales[block];
+		}
+
+		if (scale > 0.0)
+			setLevel(index, round(value / scale));
+	}
+
+	protected void rescale(int block, double newScale) {
+		double ratio = this.scales[block] / newScale;
+		this.scales[block] = (float) newScale;
+
+		int start = block << blockBits;
+		int end = Math.min(this.size, start + (1 << blockBits));
+		for (int i = start; i < end; i++) {
+			int level = getLevel(i);
+			if (level != 0)
+				setLevel(i, round(level * ratio));
+		}
+	}
+
+	protected int round(double level) {
+		double floor = Math.floor(level);
+		long rounded = (long) floor;
+		if (nextUniform() < level - floor)
+			rounded++;
+
+		if (rounded > this.maxLevel)
+			return this.maxLevel;
+		if (rounded < -this.maxLevel)
+			return -this.maxLevel;
+		return (int) rounded;
+	}
+
+	// splitmix64
+	protected double nextUniform() {
+		long z = (this.randomState += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public double dot(long[] indices, double[] values, int length) {
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += values[i] * get(indices[i]);
+		}
+		return sum;
+	}
+
+	@Override
+	public void addScaled(long[] indices, double[] values, int length, double scale) {
+		for (int i = 0; i < length; i++) {
+			add(indices[i], scale * values[i]);
+		}
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return ((long) bytesPerLevel()) * this.size + 4L * this.scales.length;
+	}
+}
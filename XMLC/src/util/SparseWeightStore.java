@@ -0,0 +1,118 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Float weights kept in an open-addressing hash table of the non-zero slots,
+ * for models whose hashed weight vector is mostly empty. A slot takes 12
+ * bytes and the table is at most half full, so it pays off below a density of
+ * about 1/6 compared to {@link FloatWeightStore}.
+ *
+ * Reads are safe from many threads, but {@link #add(long, double)} may grow
+ * the table, so the store must not be updated concurrently.
+ */
+public class SparseWeightStore implements WeightStore {
+	private static final long serialVersionUID = 6107153251922683584L;
+
+	protected static final long empty = -1L;
+
+	protected long size = 0;
+	protected long[] keys = null;
+	protected float[] values = null;
+	protected int mask = 0;
+	protected int numOfEntries = 0;
+
+	public SparseWeightStore(long size, int expectedEntries) {
+		this.size = size;
+		int capacity = Integer.highestOneBit(Math.max(16, 2 * expectedEntries - 1)) << 1;
+		this.allocate(capacity);
+	}
+
+	protected void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new float[capacity];
+		Arrays.fill(this.keys, empty);
+		this.mask = capacity - 1;
+		this.numOfEntries = 0;
+	}
+
+	protected int slot(long index) {
+		long h = index * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h >>> 32) & this.mask;
+		while ((this.keys[slot] != index) && (this.keys[slot] != empty)) {
+			slot = (slot + 1) & this.mask;
+		}
+		return slot;
+	}
+
+	@Override
+	public double get(long index) {
+		int slot = slot(index);
+		return (this.keys[slot] == index) ? this.values[slot] : 0.0;
+	}
+
+	@Override
+	public void add(long index, double delta) {
+		int slot = slot(index);
+		if (this.keys[slot] == index) {
+			this.values[slot] += delta;
+			return;
+		}
+		if (delta == 0.0)
+			return;
+		if (2 * (this.numOfEntries + 1) > this.keys.length) {
+			this.grow();
+			slot = slot(index);
+		}
+		this.keys[slot] = index;
+		this.values[slot] = (float) delta;
+		this.numOfEntries++;
+	}
+
+	protected void grow() {
+		long[] keys = this.keys;
+		float[] values = this.values;
+		this.allocate(2 * keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != empty) {
+				int slot = slot(keys[i]);
+				this.keys[slot] = keys[i];
+				this.values[slot] = values[i];
+				this.numOfEntries++;
+			}
+		}
+	}
+
+	@Override
+	public double dot(long[] indices, double[] values, int length) {
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += values[i] * get(indices[i]);
+		}
+		return sum;
+	}
+
+	@Override
+	public void addScaled(long[] indices, double[] values, int length, double scale) {
+		for (int i = 0; i < length; i++) {
+			add(indices[i], scale * values[i]);
+		}
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * @return The number of slots with a weight.
+	 */
+	public int getNumberOfEntries() {
+		return this.numOfEntries;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return 12L * this.keys.length;
+	}
+}
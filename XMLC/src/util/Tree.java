@@ -1,8 +1,18 @@
 package util;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-public abstract class Tree {
+/**
+ * A serialized tree keeps its flat arrays only; the other structures of the
+ * tree types are transient, so a deserialized tree has to be queried through
+ * a {@link CompiledTree}.
+ */
+public abstract class Tree implements Serializable {
+	private static final long serialVersionUID = -6071626425436587207L;
 
 	protected int k = 2; //k-ary tree
 	
@@ -12,11 +22,111 @@ public abstract class Tree {
 	
 	protected int numberOfInternalNodes = 0;
 	
+	/**
+	 * Flat representation of the tree built by {@link #compile()}: the
+	 * children of node i are children[childOffsets[i]] ...
+	 * children[childOffsets[i+1]-1]. nodeToLabel is -1 for internal nodes.
+	 */
+	protected int[] childOffsets = null;
+	protected int[] children = null;
+	protected int[] parent = null;
+	protected int[] nodeToLabel = null;
+	protected int[] labelToNode = null;
+	
 	public void initialize(int k, int m) {
 		this.k = k ;
 		this.m = m;
 	}
 	
+	/**
+	 * Builds the flat arrays from the structure of the tree. Has to be called
+	 * by every tree type once its construction is finished.
+	 */
+	protected void compile() {
+		int size = getSize();
+		
+		int numOfChildren = 0;
+		int maxLabel = -1;
+		for (int node = 0; node < size; node++) {
+			if (isLeaf(node)) {
+				maxLabel = Math.max(maxLabel, getLabelIndex(node));
+			} else {
+				numOfChildren += getChildNodes(node).size();
+			}
+		}
+		
+		int[] childOffsets = new int[size + 1];
+		int[] children = new int[numOfChildren];
+		int[] parent = new int[size];
+		int[] nodeToLabel = new int[size];
+		int[] labelToNode = new int[maxLabel + 1];
+		Arrays.fill(labelToNode, -1);
+		
+		int offset = 0;
+		for (int node = 0; node < size; node++) {
+			childOffsets[node] = offset;
+			parent[node] = getParent(node);
+			if (isLeaf(node)) {
+				nodeToLabel[node] = getLabelIndex(node);
+				labelToNode[nodeToLabel[node]] = node;
+			} else {
+				nodeToLabel[node] = -1;
+				for (int child : getChildNodes(node)) {
+					children[offset++] = child;
+				}
+			}
+		}
+		childOffsets[size] = offset;
+		
+		this.childOffsets = childOffsets;
+		this.children = children;
+		this.parent = parent;
+		this.nodeToLabel = nodeToLabel;
+		this.labelToNode = labelToNode;
+	}
+	
+	public boolean isCompiled() {
+		return this.childOffsets != null;
+	}
+	
+	/**
+	 * Position of the first child of {@code node}, to be resolved by
+	 * {@link #childAt(int)}. Leaves have childStart(node) == childEnd(node).
+	 */
+	public int childStart(int node) {
+		return this.childOffsets[node];
+	}
+	
+	public int childEnd(int node) {
+		return this.childOffsets[node + 1];
+	}
+	
+	public int childAt(int position) {
+		return this.children[position];
+	}
+	
+	/**
+	 * Writes the flat arrays of the tree, to be read by
+	 * {@link CompiledTree#read(java.io.DataInput)}.
+	 */
+	public void writeCompiled(DataOutput out) throws IOException {
+		out.writeInt(this.k);
+		out.writeInt(this.m);
+		out.writeInt(this.numberOfInternalNodes);
+		writeArray(out, this.childOffsets);
+		writeArray(out, this.children);
+		writeArray(out, this.parent);
+		writeArray(out, this.nodeToLabel);
+		writeArray(out, this.labelToNode);
+	}
+	
+	protected static void writeArray(DataOutput out, int[] array) throws IOException {
+		out.writeInt(array.length);
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+	
 	abstract public ArrayList<Integer> getChildNodes(int node);
 	
 	abstract public int getParent(int node);
@@ -27,6 +137,13 @@ public abstract class Tree {
 	
 	abstract public int getLabelIndex(int treeIndex);
 	
+	/**
+	 * @return True if the tree has a leaf of {@code label}.
+	 */
+	public boolean hasLabel(int label) {
+		return (label < this.labelToNode.length) && (this.labelToNode[label] >= 0);
+	}
+	
 	public int getNumberOfLeaves() {
 		return this.m;
 	}
@@ -0,0 +1,33 @@
+package util;
+
+import java.io.Serializable;
+
+/**
+ * Storage of the hashed weight vector of a linear model. The implementations
+ * trade precision for memory; the learners read and update either single
+ * weights or a whole hashed row at once.
+ */
+public interface WeightStore extends Serializable {
+
+	public double get(long index);
+	public void add(long index, double delta);
+	public long size();
+
+	/**
+	 * @return {@code sum_i values[i] * w[indices[i]]} over the first
+	 *         {@code length} entries.
+	 */
+	public double dot(long[] indices, double[] values, int length);
+
+	/**
+	 * Adds {@code scale * values[i]} to {@code w[indices[i]]} for the first
+	 * {@code length} entries.
+	 */
+	public void addScaled(long[] indices, double[] values, int length, double scale);
+
+	/**
+	 * @return The number of bytes taken by the weights.
+	 */
+	public long getMemorySize();
+
+}
@@ -0,0 +1,53 @@
+package util;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WeightStoreFactory {
+	private static Logger logger = LoggerFactory.getLogger(WeightStoreFactory.class);
+
+	/**
+	 * Largest array the JVMs can allocate.
+	 */
+	public static final long maxHeapSize = Integer.MAX_VALUE - 8;
+
+	public static WeightStore createWeightStore( String precision, long size ) {
+		return createWeightStore(precision, size, false, null);
+	}
+
+	/**
+	 * @param offHeap
+	 *            Keep the weights outside of the Java heap. Only double and
+	 *            float precision are supported there.
+	 * @param weightFile
+	 *            If not null, the off-heap weights are a mapping of this file.
+	 */
+	public static WeightStore createWeightStore( String precision, long size, boolean offHeap, String weightFile ) {
+		if ( !offHeap && (size > maxHeapSize) ) {
+			throw new IllegalArgumentException("At most " + maxHeapSize + " weights can be kept on the heap, "
+					+ "use off-heap weights for " + size);
+		}
+
+		WeightStore ws = null;
+		try {
+			if ( precision.compareTo("double") == 0 ) {
+				ws = offHeap ? new OffHeapDoubleWeightStore(size, weightFile) : new DoubleWeightStore((int) size);
+			} else if ( precision.compareTo("float") == 0 ) {
+				ws = offHeap ? new OffHeapFloatWeightStore(size, weightFile) : new FloatWeightStore((int) size);
+			} else if ( !offHeap && (precision.compareTo("int16") == 0) ) {
+				ws = new Int16WeightStore((int) size);
+			} else if ( !offHeap && (precision.compareTo("int8") == 0) ) {
+				ws = new Int8WeightStore((int) size);
+			} else {
+				logger.info("Unknown weight precision" + (offHeap ? " for off-heap weights" : ""));
+				System.exit(-1);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot map the weight file " + weightFile, e);
+		}
+		return ws;
+	}
+
+}
@@ -0,0 +1,65 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import Data.Instance;
+
+public class CachedDataManagerTests {
+
+	private List<String> read(DataManager data, int maxInstances) {
+		List<String> instances = new ArrayList<String>();
+		while (data.hasNext() && (instances.size() < maxInstances)) {
+			Instance instance = data.getNextInstance();
+			instances.add(Arrays.toString(instance.y)
+					+ Arrays.toString(Arrays.copyOfRange(instance.x.indices, instance.x.start, instance.x.end))
+					+ Arrays.toString(Arrays.copyOfRange(instance.x.values, instance.x.start, instance.x.end)));
+		}
+		return instances;
+	}
+
+	private void assertReplays(File file, long memoryBudget) {
+		List<String> expected = read(new OnlineDataManager(file.getPath()), Integer.MAX_VALUE);
+		CachedDataManager data = new CachedDataManager(new OnlineDataManager(file.getPath()), memoryBudget);
+
+		// a reset in the middle of the first epoch restarts the source
+		assertEquals(expected.subList(0, 100), read(data, 100));
+		data.reset();
+		assertFalse(data.replaying);
+
+		for (int epoch = 0; epoch < 3; epoch++) {
+			assertEquals(expected, read(data, Integer.MAX_VALUE));
+			data.reset();
+			assertTrue(data.replaying);
+		}
+		assertEquals(expected, read(data.getCopy(), Integer.MAX_VALUE));
+		data.close();
+	}
+
+	@Test
+	public void replaysFromMemory() throws IOException {
+		File file = LibsvmData.writeData(3000, 1, true);
+		assertReplays(file, CachedDataManager.defaultMemoryBudget);
+	}
+
+	@Test
+	public void spillsToDiskBeyondTheBudget() throws IOException {
+		File file = LibsvmData.writeData(3000, 2, true);
+		// the first block of the slabs takes 8 MB, the rows about 34 bytes each
+		CachedDataManager data = new CachedDataManager(new OnlineDataManager(file.getPath()), (8 << 20) + 40000);
+		read(data, Integer.MAX_VALUE);
+		assertTrue(data.cache.numOfRows > 0);
+		assertTrue(data.cache.numOfSpilled > 0);
+		data.close();
+
+		assertReplays(file, (8 << 20) + 40000);
+		assertReplays(file, 0);
+	}
+}
@@ -0,0 +1,101 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.EstimatePair;
+import Data.Instance;
+import Learner.AbstractLearner;
+import Learner.PLT;
+import Learner.SyntheticData;
+
+public class EvaluatorTests {
+	final int numberOfInstances = 300;
+	final int k = 5;
+	int blockSize;
+
+	@Before
+	public void arrange() {
+		blockSize = Evaluator.blockSize;
+		// several blocks per worker
+		Evaluator.blockSize = 16;
+	}
+
+	@After
+	public void restore() {
+		Evaluator.blockSize = blockSize;
+	}
+
+	private DataManager createData(int numberOfLabels, long seed) {
+		return SyntheticData.createData(numberOfInstances, numberOfLabels, true, seed);
+	}
+
+	private PLT train(DataManager data) {
+		return SyntheticData.train(new PLT(SyntheticData.createProperties("PLT", "Murmur", 2)), data);
+	}
+
+	/**
+	 * Precision@k of the top k estimates of every instance.
+	 */
+	private double[] expectedPrecisionAtk(AbstractLearner learner, DataManager data) {
+		double[] precision = new double[k];
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			int j = 0, correct = 0;
+			for (EstimatePair pair : learner.getTopKEstimates(instance.x, k)) {
+				for (int label : instance.y) {
+					if (label == pair.getLabel())
+						correct++;
+				}
+				precision[j++] += correct;
+			}
+			for (; j < k; j++) {
+				precision[j] += correct;
+			}
+		}
+		data.reset();
+		for (int j = 0; j < k; j++) {
+			precision[j] /= (j + 1) * (double) numberOfInstances;
+		}
+		return precision;
+	}
+
+	private void assertPrecisionAtk(double[] expected, Map<String, Double> actual) {
+		assertEquals(k, actual.size());
+		for (int j = 0; j < k; j++) {
+			assertEquals(expected[j], actual.get("PrecAtK[" + (j + 1) + "]"), 1e-12);
+		}
+	}
+
+	@Test
+	public void parallelPrecisionEqualsTheSerialOne() {
+		DataManager data = createData(8, 3);
+		PLT model = train(data);
+		double[] expected = expectedPrecisionAtk(model, data);
+
+		assertPrecisionAtk(expected, Evaluator.computePrecisionAtk(model, data, k));
+		data.reset();
+		for (int numOfThreads = 2; numOfThreads <= 4; numOfThreads++) {
+			assertPrecisionAtk(expected, Evaluator.computePrecisionAtk(model, data, k, numOfThreads));
+			data.reset();
+		}
+	}
+
+	@Test
+	public void countsUnknownLabelsAsMisses() {
+		PLT model = train(createData(8, 3));
+		// labels 8 to 11 are not in the model
+		DataManager data = createData(12, 5);
+		double[] expected = expectedPrecisionAtk(model, data);
+
+		assertPrecisionAtk(expected, Evaluator.computePrecisionAtk(model, data, k));
+		data.reset();
+		assertPrecisionAtk(expected, Evaluator.computePrecisionAtk(model, data, k, 3));
+		data.reset();
+	}
+}
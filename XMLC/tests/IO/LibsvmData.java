@@ -0,0 +1,45 @@
+package IO;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Random data files in the libsvm format of {@link DataReader}, shared by the
+ * tests of the data managers.
+ */
+public class LibsvmData {
+
+	/**
+	 * Writes {@code n} instances with up to 3 of 50 labels and up to 29 of 1000
+	 * features to a temporary file.
+	 *
+	 * @param trailingNewline
+	 *            False to leave the last line without a newline.
+	 */
+	public static File writeData(int n, long seed, boolean trailingNewline) throws IOException {
+		Random random = new Random(seed);
+		StringBuilder content = new StringBuilder();
+		content.append(n + " 1000 50\n");
+		for (int i = 0; i < n; i++) {
+			int numOfLabels = random.nextInt(4);
+			for (int l = 0; l < numOfLabels; l++) {
+				content.append(random.nextInt(50)).append(l + 1 < numOfLabels ? "," : "");
+			}
+			int numOfFeatures = random.nextInt(30);
+			for (int f = 0; f < numOfFeatures; f++) {
+				content.append(' ').append(random.nextInt(1000) + 1).append(':').append(random.nextFloat());
+			}
+			if (trailingNewline || (i + 1 < n))
+				content.append('\n');
+		}
+
+		File file = File.createTempFile("libsvm", ".txt");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content.toString());
+		writer.close();
+		return file;
+	}
+}
@@ -0,0 +1,101 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LibsvmParserTests {
+
+	private LibsvmParser parse(String content, int bufferSize) throws IOException {
+		File file = File.createTempFile("libsvm", ".txt");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return new LibsvmParser(file.getPath(), bufferSize);
+	}
+
+	@Test
+	public void parsesLabelsFeaturesAndHeader() throws IOException {
+		LibsvmParser parser = parse("3 10 5\n4,2 1:0.5 7:-1.25e-3\r\n\n3\t2:1 10:+2.\n1:NaN 2:1e400", 8);
+
+		parser.readHeader();
+		assertEquals(3, parser.n);
+		assertEquals(10, parser.d);
+		assertEquals(5, parser.m);
+
+		assertTrue(parser.next());
+		assertEquals(2, parser.numOfLabels);
+		assertEquals(4, parser.labels[0]);
+		assertEquals(2, parser.labels[1]);
+		assertEquals(2, parser.numOfFeatures);
+		assertEquals(0, parser.indices[0]);
+		assertEquals(0.5, parser.values[0], 0.0);
+		assertEquals(6, parser.indices[1]);
+		assertEquals(-1.25e-3, parser.values[1], 0.0);
+
+		// an empty line is an instance without labels and features
+		assertTrue(parser.next());
+		assertEquals(0, parser.numOfLabels);
+		assertEquals(0, parser.numOfFeatures);
+
+		assertTrue(parser.next());
+		assertEquals(3, parser.labels[0]);
+		assertEquals(1, parser.indices[0]);
+		assertEquals(1.0, parser.values[0], 0.0);
+		assertEquals(9, parser.indices[1]);
+		assertEquals(2.0, parser.values[1], 0.0);
+
+		// the last line has no newline
+		assertTrue(parser.next());
+		assertTrue(Double.isNaN(parser.values[0]));
+		assertTrue(Double.isInfinite(parser.values[1]));
+
+		assertFalse(parser.next());
+		parser.close();
+	}
+
+	@Test
+	public void valuesEqualParseDouble() throws IOException {
+		Random random = new Random(3);
+		String[] tokens = new String[10000];
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < tokens.length; i++) {
+			switch (i % 4) {
+			case 0:
+				tokens[i] = Float.toString(random.nextFloat());
+				break;
+			case 1:
+				tokens[i] = Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+				break;
+			case 2:
+				tokens[i] = String.format("%.5f", random.nextDouble());
+				break;
+			default:
+				tokens[i] = "0.12345678901234567890123";
+			}
+			content.append(i % 7).append(' ').append(i + 1).append(':').append(tokens[i]).append('\n');
+		}
+
+		LibsvmParser parser = parse(content.toString(), 64);
+		for (int i = 0; i < tokens.length; i++) {
+			assertTrue(parser.next());
+			assertEquals(i % 7, parser.labels[0]);
+			assertEquals(i, parser.indices[0]);
+			assertEquals(tokens[i], Double.parseDouble(tokens[i]), parser.values[0], 0.0);
+		}
+		assertFalse(parser.next());
+		parser.close();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void rejectsMalformedTokens() throws IOException {
+		LibsvmParser parser = parse("1 2:0.5x\n", 1024);
+		parser.next();
+	}
+}
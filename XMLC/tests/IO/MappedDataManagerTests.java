@@ -0,0 +1,59 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import Data.AVTable;
+import Data.Instance;
+
+public class MappedDataManagerTests {
+
+	private File convert(File text) throws IOException {
+		File binary = File.createTempFile("xmlc", ".bin");
+		binary.deleteOnExit();
+		new BinaryDataConverter(text.getPath(), binary.getPath()).convert();
+		return binary;
+	}
+
+	private void assertSameInstance(AVTable expected, int i, Instance actual) {
+		assertArrayEquals(expected.y[i], actual.y);
+		assertEquals(expected.x[i].length, actual.x.size());
+		for (int j = 0; j < expected.x[i].length; j++) {
+			assertEquals(expected.x[i][j].index, actual.x.indices[actual.x.start + j]);
+			assertEquals((float) expected.x[i][j].value, actual.x.values[actual.x.start + j], 0.0f);
+		}
+	}
+
+	@Test
+	public void readsTheInstancesOfDataReaderAcrossSegments() throws IOException {
+		File text = LibsvmData.writeData(500, 3, true);
+		File binary = convert(text);
+		AVTable expected = new DataReader(text.getPath(), false, true).read();
+
+		// segments of 1 KB, so sections and instances cross their boundaries
+		MappedFile file = new MappedFile(binary.getPath(), 10);
+		assertTrue(file.length() > 16 * 1024);
+		MappedDataManager data = new MappedDataManager(file);
+		assertEquals(expected.n, data.size());
+		assertEquals(expected.d, data.getNumberOfFeatures());
+		assertEquals(expected.m, data.getNumberOfLabels());
+
+		for (int epoch = 0; epoch < 2; epoch++) {
+			for (int i = 0; i < expected.n; i++) {
+				assertTrue(data.hasNext());
+				assertSameInstance(expected, i, data.getNextInstance());
+			}
+			assertFalse(data.hasNext());
+			data.reset();
+		}
+
+		DataManager copy = data.getCopy();
+		for (int i = expected.n - 1; i >= 0; i--) {
+			assertSameInstance(expected, i, ((IndexedData) copy).getInstance(i));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import Data.Instance;
+
+public class ParallelOnlineDataManagerTests {
+
+	private List<String> read(DataManager data) {
+		List<String> instances = new ArrayList<String>();
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			instances.add(Arrays.toString(instance.y)
+					+ Arrays.toString(Arrays.copyOfRange(instance.x.indices, instance.x.start, instance.x.end))
+					+ Arrays.toString(Arrays.copyOfRange(instance.x.values, instance.x.start, instance.x.end)));
+		}
+		return instances;
+	}
+
+	@Test
+	public void readsTheSameInstancesAsOnlineDataManager() throws IOException {
+		// the last line has no newline
+		File file = LibsvmData.writeData(2000, 1, false);
+		List<String> expected = read(new OnlineDataManager(file.getPath()));
+		assertEquals(2000, expected.size());
+
+		// small chunks, so that lines are cut by the chunk boundaries
+		ParallelOnlineDataManager data = new ParallelOnlineDataManager(file.getPath(), 3, true, 512);
+		assertEquals(1000, data.getNumberOfFeatures());
+		assertEquals(50, data.getNumberOfLabels());
+		assertEquals(expected, read(data));
+
+		data.reset();
+		assertEquals(expected, read(data));
+		data.close();
+	}
+
+	@Test
+	public void unorderedParsingReadsEveryInstanceOnce() throws IOException {
+		File file = LibsvmData.writeData(2000, 2, false);
+		List<String> expected = read(new OnlineDataManager(file.getPath()));
+
+		ParallelOnlineDataManager data = new ParallelOnlineDataManager(file.getPath(), 4, false, 256);
+		List<String> instances = read(data);
+		data.close();
+
+		Collections.sort(expected);
+		Collections.sort(instances);
+		assertEquals(expected, instances);
+	}
+}
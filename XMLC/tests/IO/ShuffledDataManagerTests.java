@@ -0,0 +1,92 @@
+package IO;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import Data.AVPair;
+import Data.AVTable;
+import Data.Instance;
+
+public class ShuffledDataManagerTests {
+
+	private AVTable createData(int n) {
+		AVTable data = new AVTable();
+		data.n = n;
+		data.d = 1;
+		data.m = n;
+		data.x = new AVPair[n][];
+		data.y = new int[n][];
+		for (int i = 0; i < n; i++) {
+			AVPair feature = new AVPair();
+			feature.index = 0;
+			feature.value = i;
+			data.x[i] = new AVPair[] { feature };
+			data.y[i] = new int[] { i };
+		}
+		return data;
+	}
+
+	private List<Integer> readEpoch(DataManager data) {
+		List<Integer> labels = new ArrayList<Integer>();
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			assertEquals(instance.y[0], (int) instance.x.values[instance.x.start]);
+			labels.add(instance.y[0]);
+		}
+		data.reset();
+		return labels;
+	}
+
+	private void assertShuffled(DataManager data, int n) {
+		List<Integer> first = readEpoch(data);
+		List<Integer> second = readEpoch(data);
+		assertFalse(first.equals(second));
+
+		List<Integer> sorted = new ArrayList<Integer>(first);
+		Collections.sort(sorted);
+		assertFalse(first.equals(sorted));
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, (int) sorted.get(i));
+		}
+		Collections.sort(second);
+		assertEquals(sorted, second);
+	}
+
+	@Test
+	public void permutesAnIndexedSource() {
+		ShuffledDataManager data = new ShuffledDataManager(new BatchDataManager(createData(1000)), 10, new Random(1));
+		assertNotNull(data.permutation);
+		assertShuffled(data, 1000);
+	}
+
+	@Test
+	public void shufflesAStreamThroughTheBuffer() {
+		final BatchDataManager batch = new BatchDataManager(createData(1000));
+		// hides the random access of the batch manager
+		DataManager stream = new DataManager() {
+			public boolean hasNext() { return batch.hasNext(); }
+			public Instance getNextInstance() { return batch.getNextInstance(); }
+			public int getNumberOfFeatures() { return batch.getNumberOfFeatures(); }
+			public int getNumberOfLabels() { return batch.getNumberOfLabels(); }
+			public void setInputStream(java.io.InputStreamReader input) { }
+			public void reset() { batch.reset(); }
+			public DataManager getCopy() { return this; }
+		};
+
+		ShuffledDataManager data = new ShuffledDataManager(stream, 100, new Random(1));
+		assertNull(data.permutation);
+		assertShuffled(data, 1000);
+
+		// an instance cannot be served before the buffer has seen it
+		List<Integer> labels = readEpoch(data);
+		for (int i = 0; i < labels.size(); i++) {
+			assertTrue(labels.get(i) < i + 100);
+		}
+	}
+}
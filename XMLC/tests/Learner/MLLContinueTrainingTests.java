@@ -0,0 +1,57 @@
+package Learner;
+
+import static Learner.SyntheticData.*;
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import Data.Instance;
+import IO.DataManager;
+
+public class MLLContinueTrainingTests {
+	private Properties createProperties(String optimizer) {
+		Properties properties = SyntheticData.createProperties("MLL", "Universal", 2);
+		properties.setProperty("optimizer", optimizer);
+		return properties;
+	}
+
+	private int correct(MLL model, DataManager data) {
+		int correct = 0;
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			int best = 0;
+			for (int label = 1; label < model.m; label++) {
+				if (model.getUncalibratedPosteriors(instance.x, label) > model.getUncalibratedPosteriors(instance.x,
+						best))
+					best = label;
+			}
+			if (best == instance.y[0])
+				correct++;
+		}
+		data.reset();
+		return correct;
+	}
+
+	@Test
+	public void continuesTheTrainingOfALoadedModel() throws Exception {
+		DataManager data = createData(8, 3);
+		MLL model = train(new MLL(createProperties("adagrad")), data);
+
+		MLL loaded = saveAndLoad(model);
+		assertTrue(loaded.supportsContinuedTraining());
+		loaded.prepareContinuedTraining(data, createProperties("adagrad"));
+		loaded.train(data);
+		data.reset();
+		assertTrue(correct(loaded, data) > numberOfInstances / 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNewLabels() throws Exception {
+		DataManager data = createData(8, 3);
+		MLL model = train(new MLL(createProperties("sgd")), data);
+
+		saveAndLoad(model).prepareContinuedTraining(createData(11, 5), createProperties("sgd"));
+	}
+}
@@ -0,0 +1,113 @@
+package Learner;
+
+import static Learner.SyntheticData.*;
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import Data.Instance;
+import IO.DataManager;
+import util.CompiledTree;
+import util.CompleteTree;
+
+public class PLTContinueTrainingTests {
+	private Properties createProperties(String hasher, String modelFormat, int epochs) {
+		Properties properties = SyntheticData.createProperties("PLT", hasher, epochs);
+		properties.setProperty("modelFormat", modelFormat);
+		return properties;
+	}
+
+	private PLT train(DataManager data, Properties properties) {
+		return SyntheticData.train(new PLT(properties), data);
+	}
+
+	private PLT saveAndContinue(PLT model, DataManager data, Properties properties) throws Exception {
+		PLT loaded = saveAndLoad(model);
+		loaded.prepareContinuedTraining(data, properties);
+		loaded.train(data);
+		data.reset();
+		return loaded;
+	}
+
+	private void assertContinuesTheTraining(String hasher, String modelFormat) throws Exception {
+		DataManager data = createData(11, 3);
+		PLT single = train(data, createProperties(hasher, modelFormat, 3));
+		PLT first = train(data, createProperties(hasher, modelFormat, 2));
+		PLT continued = saveAndContinue(first, data, createProperties(hasher, modelFormat, 1));
+
+		assertArrayEquals(single.Tarray, continued.Tarray);
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < 11; label++) {
+				assertEquals(single.getPosteriors(instance.x, label), continued.getPosteriors(instance.x, label), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void continuesWhereTheSerializedModelStopped() throws Exception {
+		assertContinuesTheTraining("Universal", "serialized");
+	}
+
+	@Test
+	public void continuesWhereTheBinaryModelStopped() throws Exception {
+		assertContinuesTheTraining("Mask", PLTModelFile.name);
+	}
+
+	@Test
+	public void addsNewLabelsToTheTree() throws Exception {
+		PLT model = train(createData(8, 3), createProperties("Murmur", PLTModelFile.name, 2));
+		int[] parents = new int[model.t];
+		for (int node = 0; node < model.t; node++) {
+			parents[node] = model.tree.getParent(node);
+		}
+
+		DataManager data = createData(11, 5);
+		PLT continued = saveAndContinue(model, data, createProperties("Murmur", PLTModelFile.name, 2));
+		assertEquals(11, continued.m);
+		assertEquals(model.t + 6, continued.t);
+		assertTrue(continued.bias.length >= continued.t);
+		assertTrue(continued.Tarray.length >= continued.t);
+		for (int node = 0; node < model.t; node++) {
+			assertEquals(parents[node], continued.tree.getParent(node));
+		}
+
+		// far above chance for the old and for the new labels
+		int correct = 0;
+		int correctNew = 0;
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			int label = continued.getTopkLabels(instance.x, 1)[0];
+			if (label == instance.y[0]) {
+				correct++;
+				if (label >= 8)
+					correctNew++;
+			}
+		}
+		assertTrue(correct > numberOfInstances / 4);
+		assertTrue(correctNew > numberOfInstances / 20);
+	}
+
+	@Test
+	public void fillsTheShallowestNodesFirst() {
+		// node 1 has room for a third label, the leaves 2 and 3 are at the same depth
+		CompiledTree tree = new CompiledTree(new CompleteTree(3, 4));
+		CompiledTree grown = tree.addLabels(7);
+		assertEquals(tree.getSize() + 1 + 2 + 1, grown.getSize());
+		for (int label = 0; label < 7; label++) {
+			int leaf = grown.getTreeIndex(label);
+			assertTrue(grown.isLeaf(leaf));
+			assertEquals(label, grown.getLabelIndex(leaf));
+		}
+		assertEquals(1, grown.getParent(grown.getTreeIndex(4)));
+		// then the first leaf is split, and the new node gets the next label
+		assertFalse(grown.isLeaf(2));
+		assertEquals(2, grown.getParent(grown.getTreeIndex(0)));
+		assertEquals(2, grown.getParent(grown.getTreeIndex(5)));
+		assertEquals(2, grown.getParent(grown.getTreeIndex(6)));
+		assertTrue(grown.isLeaf(3));
+		assertSame(grown, grown.addLabels(7));
+	}
+}
@@ -0,0 +1,115 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.AVPair;
+import Data.AVTable;
+import IO.BatchDataManager;
+import IO.DataManager;
+import IO.Evaluator;
+
+public class PLTHogwildTests {
+	final int numberOfInstances = 400;
+	final int numberOfLabels = 16;
+	final int numberOfFeatures = 64;
+	final int epochs = 10;
+	final double scalarBound = 2.0;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		Random random = new Random(13);
+		AVTable table = new AVTable();
+		table.n = numberOfInstances;
+		table.m = numberOfLabels;
+		table.d = numberOfFeatures;
+		table.x = new AVPair[numberOfInstances][];
+		table.y = new int[numberOfInstances][];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int label = random.nextInt(numberOfLabels);
+			table.y[i] = new int[] { label, (label + 1 + random.nextInt(numberOfLabels - 1)) % numberOfLabels };
+			table.x[i] = new AVPair[] { new AVPair(2 * label, 1.0), new AVPair(2 * label + 1, 0.5),
+					new AVPair(32 + random.nextInt(numberOfFeatures - 32), random.nextDouble()) };
+		}
+		data = new BatchDataManager(table);
+	}
+
+	/**
+	 * Counts the end-of-epoch renormalizations.
+	 */
+	static class CountingPLT extends PLT {
+		private static final long serialVersionUID = 1L;
+		int renormalizations = 0;
+
+		CountingPLT(Properties properties) {
+			super(properties);
+		}
+
+		@Override
+		protected void renormalizeNodes() {
+			this.renormalizations++;
+			super.renormalizeNodes();
+		}
+	}
+
+	private CountingPLT train(int trainThreads, double scalarBound) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Mask");
+		// large enough for the Mask hasher to give every node and feature its own slot
+		properties.setProperty("MLFeatureHashing", "4096");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.1");
+		properties.setProperty("epochs", Integer.toString(epochs));
+		properties.setProperty("k", "2");
+		properties.setProperty("scalarBound", Double.toString(scalarBound));
+		properties.setProperty("trainThreads", Integer.toString(trainThreads));
+
+		CountingPLT learner = new CountingPLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	private Map<String, Double> precisionAtk(PLT learner) {
+		Map<String, Double> result = Evaluator.computePrecisionAtk(learner, data, 3);
+		data.reset();
+		return result;
+	}
+
+	@Test
+	public void hogwildPrecisionIsCloseToTheSerialOne() {
+		Map<String, Double> serial = precisionAtk(train(1, scalarBound));
+		assertTrue(serial.get("PrecAtK[1]") > 0.9);
+
+		for (int trainThreads = 2; trainThreads <= 4; trainThreads++) {
+			Map<String, Double> hogwild = precisionAtk(train(trainThreads, scalarBound));
+			for (String key : serial.keySet()) {
+				assertEquals(key, serial.get(key), hogwild.get(key), 0.05);
+			}
+		}
+	}
+
+	@Test
+	public void renormalizesTheNodesAtTheEndOfEveryEpoch() {
+		PLT unbounded = train(1, Double.MAX_VALUE);
+		assertTrue(unbounded.scalararray[0] > scalarBound);
+
+		CountingPLT learner = train(3, scalarBound);
+		assertEquals(epochs, learner.renormalizations);
+		for (int label = 0; label < learner.t; label++) {
+			assertTrue(learner.scalararray[label] <= scalarBound);
+		}
+		// the serial path folds the scalars during the epoch
+		assertEquals(0, train(1, scalarBound).renormalizations);
+	}
+}
@@ -0,0 +1,190 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.Instance;
+import IO.DataManager;
+import util.CompiledTree;
+import util.MappedWeightStore;
+import util.SparseWeightStore;
+
+public class PLTModelFileTests {
+	final int numberOfInstances = 200;
+	final int numberOfLabels = 11;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		data = SyntheticData.createData(numberOfInstances, numberOfLabels, false, 3);
+	}
+
+	private PLT train(String weightPrecision) {
+		return train(weightPrecision, "4096", new Properties());
+	}
+
+	private PLT train(String weightPrecision, String hashedFeatures, Properties properties) {
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Universal");
+		properties.setProperty("MLFeatureHashing", hashedFeatures);
+		properties.setProperty("weightPrecision", weightPrecision);
+		if (!properties.containsKey("modelFormat"))
+			properties.setProperty("modelFormat", PLTModelFile.name);
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", "2");
+		properties.setProperty("k", "3");
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	private void assertSamePosteriors(PLT expected, PLT actual, double delta) {
+		assertEquals(expected.t, actual.t);
+		for (int node = 0; node < expected.t; node++) {
+			assertEquals(expected.tree.getParent(node), actual.tree.getParent(node));
+			assertEquals(expected.tree.isLeaf(node), actual.tree.isLeaf(node));
+		}
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < numberOfLabels; label++) {
+				assertEquals(expected.getPosteriors(instance.x, label), actual.getPosteriors(instance.x, label), delta);
+			}
+		}
+		data.reset();
+	}
+
+	@Test
+	public void loadsTheSavedModel() throws Exception {
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+
+		PLT model = train("double");
+		model.savemodel(file.getPath());
+		assertTrue(PLTModelFile.isModelFile(file.getPath()));
+
+		PLT mapped = (PLT) AbstractLearner.loadmodel(file.getPath());
+		assertTrue(mapped.tree instanceof CompiledTree);
+		assertTrue(mapped.getWeightStore() instanceof MappedWeightStore);
+		assertSamePosteriors(model, mapped, 0.0);
+
+		PLT copied = (PLT) AbstractLearner.loadmodel(file.getPath(), false);
+		assertFalse(copied.getWeightStore() instanceof MappedWeightStore);
+		assertSamePosteriors(model, copied, 0.0);
+
+		// the mapped model can replace its own file
+		mapped.savemodel(file.getPath());
+		assertSamePosteriors(model, (PLT) AbstractLearner.loadmodel(file.getPath()), 0.0);
+	}
+
+	@Test
+	public void writesQuantizedWeightsAsFloats() throws Exception {
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+
+		PLT model = train("int8");
+		model.savemodel(file.getPath());
+		PLT loaded = (PLT) AbstractLearner.loadmodel(file.getPath());
+		assertEquals(4 * model.getWeightStore().size(), loaded.getWeightStore().getMemorySize());
+		assertSamePosteriors(model, loaded, 1e-6);
+	}
+
+	private PLT saveAndLoadSparse(PLT model) throws Exception {
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+		model.savemodel(file.getPath());
+		// far less than a float per slot
+		assertTrue(file.length() < model.getWeightStore().size());
+		return (PLT) AbstractLearner.loadmodel(file.getPath());
+	}
+
+	@Test
+	public void keepsOnlyTheNonZeroWeightsOfASparseModel() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("sparseModelDensity", "0.5");
+		PLT model = train("double", "65536", properties);
+
+		PLT loaded = saveAndLoadSparse(model);
+		assertTrue(loaded.getWeightStore() instanceof SparseWeightStore);
+		assertSamePosteriors(model, loaded, 1e-6);
+
+		properties.setProperty("sparseModelValues", "int16");
+		model = train("double", "65536", properties);
+		loaded = saveAndLoadSparse(model);
+		assertSamePosteriors(model, loaded, 1e-3);
+	}
+
+	@Test
+	public void loadsDenseModelsUnderTheThreshold() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("sparseModelDensity", "0.001");
+		PLT model = train("float", "65536", properties);
+
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+		model.savemodel(file.getPath());
+		assertTrue(file.length() > 4 * model.getWeightStore().size());
+		assertTrue(((PLT) AbstractLearner.loadmodel(file.getPath())).getWeightStore() instanceof MappedWeightStore);
+	}
+
+	@Test
+	public void sparseStoreGrowsOnUpdates() {
+		SparseWeightStore w = new SparseWeightStore(1L << 40, 1);
+		Random random = new Random(5);
+		double[] expected = new double[1000];
+		for (int i = 0; i < 10000; i++) {
+			int slot = random.nextInt(expected.length);
+			expected[slot] += 0.25;
+			w.add(((long) slot) << 30, 0.25);
+		}
+		for (int slot = 0; slot < expected.length; slot++) {
+			assertEquals(expected[slot], w.get(((long) slot) << 30), 0.0);
+		}
+		assertEquals(0.0, w.get(7), 0.0);
+	}
+
+	@Test
+	public void serializedModelsKeepTheTree() throws Exception {
+		File treeFile = File.createTempFile("huffman", ".tree");
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+
+		Properties properties = new Properties();
+		properties.setProperty("modelFormat", "serialized");
+		properties.setProperty("treeType", "HuffmanTree");
+		properties.setProperty("treeFile", treeFile.getPath());
+		PLT model = train("double", "4096", properties);
+		model.savemodel(file.getPath());
+		assertFalse(PLTModelFile.isModelFile(file.getPath()));
+
+		// loading must not need the tree file
+		assertTrue(treeFile.delete());
+		PLT loaded = (PLT) AbstractLearner.loadmodel(file.getPath());
+		assertTrue(loaded.tree instanceof CompiledTree);
+		assertSamePosteriors(model, loaded, 0.0);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherVersions() throws Exception {
+		File file = File.createTempFile("plt", ".model");
+		file.deleteOnExit();
+		train("float").savemodel(file.getPath());
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(4);
+		raf.writeInt(PLTModelFile.version + 1);
+		raf.close();
+		AbstractLearner.loadmodel(file.getPath());
+	}
+}
@@ -0,0 +1,144 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.AVPair;
+import Data.AVTable;
+import Data.Instance;
+import IO.BatchDataManager;
+import IO.DataManager;
+
+public class PLTScalingTests {
+	final int numberOfInstances = 200;
+	final int numberOfLabels = 8;
+	final int numberOfFeatures = 64;
+	final int epochs = 120;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		Random random = new Random(42);
+		AVTable table = new AVTable();
+		table.n = numberOfInstances;
+		table.m = numberOfLabels;
+		table.d = numberOfFeatures;
+		table.x = new AVPair[numberOfInstances][];
+		table.y = new int[numberOfInstances][];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int label = random.nextInt(numberOfLabels);
+			table.y[i] = new int[] { label };
+			// two features indicate the label, the others are noise
+			table.x[i] = new AVPair[] { new AVPair(2 * label, 1.0), new AVPair(2 * label + 1, 0.5),
+					new AVPair(16 + random.nextInt(numberOfFeatures - 16), random.nextDouble()) };
+			if (table.x[i][2].index <= 2 * label + 1)
+				table.x[i][2].index = numberOfFeatures - 1;
+		}
+		data = new BatchDataManager(table);
+	}
+
+	private PLT train(double scalarBound, int trainThreads) {
+		return train(scalarBound, trainThreads, "Mask", 1024);
+	}
+
+	private PLT train(double scalarBound, int trainThreads, String hasher, int hashedFeatures) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", hasher);
+		properties.setProperty("MLFeatureHashing", Integer.toString(hashedFeatures));
+		properties.setProperty("gamma", "1.0");
+		properties.setProperty("lambda", "1.0");
+		properties.setProperty("epochs", Integer.toString(epochs));
+		properties.setProperty("k", "2");
+		properties.setProperty("scalarBound", Double.toString(scalarBound));
+		properties.setProperty("trainThreads", Integer.toString(trainThreads));
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	@Test
+	public void scalarsStayBelowTheBound() {
+		PLT learner = train(10.0, 1);
+
+		for (int label = 0; label < learner.t; label++) {
+			assertTrue(learner.scalararray[label] <= 10.0);
+			assertTrue(learner.scalararray[label] >= 1.0);
+		}
+	}
+
+	@Test
+	public void renormalizationKeepsThePosteriors() {
+		PLT unbounded = train(Double.MAX_VALUE, 1);
+		PLT bounded = train(10.0, 1);
+
+		// without renormalization the root scalar grows with every update
+		assertTrue(unbounded.scalararray[0] > 1000.0);
+
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < bounded.t; label++) {
+				double expected = unbounded.getPartialPosteriors(instance.x, label);
+				double actual = bounded.getPartialPosteriors(instance.x, label);
+				assertFalse(Double.isNaN(actual) || Double.isInfinite(actual));
+				assertEquals(expected, actual, 1e-6);
+			}
+		}
+		data.reset();
+	}
+
+	private void assertKeepsTheScalars(String hasher, int hashedFeatures) {
+		PLT unbounded = train(Double.MAX_VALUE, 1, hasher, hashedFeatures);
+		PLT bounded = train(10.0, 1, hasher, hashedFeatures);
+		assertFalse(bounded.ownsHashedSlots());
+		assertTrue(bounded.scalararray[0] > 10.0);
+
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < bounded.t; label++) {
+				assertEquals(unbounded.getPartialPosteriors(instance.x, label),
+						bounded.getPartialPosteriors(instance.x, label), 1e-6);
+			}
+		}
+		data.reset();
+	}
+
+	@Test
+	public void keepsTheScalarsOfNodesThatShareSlots() {
+		// 64 slots for 15 nodes with 64 features each collide
+		assertKeepsTheScalars("Universal", 64);
+	}
+
+	@Test
+	public void keepsTheScalarsWithoutAPowerOfTwoMask() {
+		// 1000 > 64 * 15, but the mask 999 maps distinct indices together
+		assertKeepsTheScalars("Mask", 1000);
+	}
+
+	@Test
+	public void parallelTrainingRenormalizesAtTheEndOfEpochs() {
+		PLT learner = train(10.0, 2);
+
+		for (int label = 0; label < learner.t; label++) {
+			assertTrue(learner.scalararray[label] <= 10.0);
+		}
+
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < learner.t; label++) {
+				double posterior = learner.getPartialPosteriors(instance.x, label);
+				assertTrue((posterior >= 0.0) && (posterior <= 1.0));
+			}
+		}
+		data.reset();
+	}
+}
@@ -0,0 +1,96 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.AVPair;
+import Data.AVTable;
+import Data.Instance;
+import IO.BatchDataManager;
+import IO.DataManager;
+
+public class PLTShardingTests {
+	final int numberOfInstances = 200;
+	final int numberOfLabels = 8;
+	final int numberOfFeatures = 64;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		Random random = new Random(7);
+		AVTable table = new AVTable();
+		table.n = numberOfInstances;
+		table.m = numberOfLabels;
+		table.d = numberOfFeatures;
+		table.x = new AVPair[numberOfInstances][];
+		table.y = new int[numberOfInstances][];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int label = random.nextInt(numberOfLabels);
+			table.y[i] = new int[] { label, (label + 1 + random.nextInt(numberOfLabels - 1)) % numberOfLabels };
+			table.x[i] = new AVPair[] { new AVPair(label, 1.0), new AVPair(8 + random.nextInt(numberOfFeatures - 8),
+					random.nextDouble()) };
+		}
+		data = new BatchDataManager(table);
+	}
+
+	private PLT train(int shard, int numOfShards) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Mask");
+		// large enough for the Mask hasher to give every node and feature its own slot
+		properties.setProperty("MLFeatureHashing", "1024");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", "3");
+		properties.setProperty("k", "2");
+		properties.setProperty("shard", Integer.toString(shard));
+		properties.setProperty("numOfShards", Integer.toString(numOfShards));
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	@Test
+	public void shardsOwnDisjointSubtrees() {
+		PLT first = train(0, 2);
+		PLT second = train(1, 2);
+
+		int owned = 0;
+		for (int node = 0; node < first.t; node++) {
+			assertTrue(first.ownsNode(node) != second.ownsNode(node));
+			if (first.ownsNode(node))
+				owned++;
+		}
+		// the root and one of its subtrees
+		assertEquals(1 + (first.t - 1) / 2, owned);
+	}
+
+	@Test
+	public void mergedShardsEqualTheSingleModel() {
+		PLT single = train(0, 1);
+		PLT merged = train(0, 3);
+		merged.mergeShard(train(1, 3));
+		merged.mergeShard(train(2, 3));
+		merged.finishMerge();
+
+		// the learning rates continue from the updates of the owning shard
+		assertArrayEquals(single.Tarray, merged.Tarray);
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < single.t; label++) {
+				assertEquals(single.getPartialPosteriors(instance.x, label),
+						merged.getPartialPosteriors(instance.x, label), 1e-12);
+			}
+		}
+		data.reset();
+	}
+}
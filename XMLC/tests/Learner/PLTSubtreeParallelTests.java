@@ -0,0 +1,93 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.AVPair;
+import Data.AVTable;
+import Data.Instance;
+import IO.BatchDataManager;
+import IO.DataManager;
+
+public class PLTSubtreeParallelTests {
+	final int numberOfInstances = 300;
+	final int numberOfLabels = 32;
+	final int numberOfFeatures = 100;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		Random random = new Random(11);
+		AVTable table = new AVTable();
+		table.n = numberOfInstances;
+		table.m = numberOfLabels;
+		table.d = numberOfFeatures;
+		table.x = new AVPair[numberOfInstances][];
+		table.y = new int[numberOfInstances][];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int label = random.nextInt(numberOfLabels);
+			table.y[i] = new int[] { label };
+			table.x[i] = new AVPair[] { new AVPair(label, 1.0),
+					new AVPair(numberOfLabels + random.nextInt(numberOfFeatures - numberOfLabels), random.nextDouble()) };
+		}
+		data = new BatchDataManager(table);
+	}
+
+	private PLT train(int subtreeThreads, boolean deterministic) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Mask");
+		properties.setProperty("MLFeatureHashing", "4096");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", "3");
+		properties.setProperty("k", "4");
+		properties.setProperty("scalarBound", "2.0");
+		properties.setProperty("subtreeThreads", Integer.toString(subtreeThreads));
+		properties.setProperty("deterministicTraining", Boolean.toString(deterministic));
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	@Test
+	public void partitionsUseDisjointWeights() {
+		PLT learner = train(3, true);
+
+		for (int node = 0; node < learner.t; node++) {
+			for (int other = 0; other < learner.t; other++) {
+				if (learner.nodePartitions[node] == learner.nodePartitions[other])
+					continue;
+				for (int f = 0; f < numberOfFeatures; f++) {
+					for (int g = 0; g < numberOfFeatures; g += 7) {
+						assertNotEquals(learner.fh.getLongIndex(node, f), learner.fh.getLongIndex(other, g));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void threadsGiveTheSerialModel() {
+		PLT serial = train(3, true);
+		PLT parallel = train(3, false);
+
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			for (int label = 0; label < serial.t; label++) {
+				assertEquals(serial.getPartialPosteriors(instance.x, label),
+						parallel.getPartialPosteriors(instance.x, label), 0.0);
+			}
+		}
+		data.reset();
+	}
+}
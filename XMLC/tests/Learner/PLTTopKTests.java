@@ -0,0 +1,98 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Data.AVTable;
+import Data.EstimatePair;
+import Data.SparseVector;
+import IO.BatchDataManager;
+import IO.DataManager;
+
+public class PLTTopKTests {
+	final int numberOfInstances = 200;
+	final int numberOfLabels = 12;
+	DataManager data;
+	SparseVector[] rows;
+
+	@Before
+	public void arrange() {
+		AVTable table = SyntheticData.createTable(numberOfInstances, numberOfLabels, true, 11);
+		rows = new SparseVector[numberOfInstances];
+		for (int i = 0; i < numberOfInstances; i++) {
+			rows[i] = SparseVector.fromAVPairs(table.x[i]);
+		}
+		data = new BatchDataManager(table);
+	}
+
+	private PLT train() {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Murmur");
+		properties.setProperty("MLFeatureHashing", "4096");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", "2");
+		properties.setProperty("k", "3");
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	private void assertSameAsEstimates(PLT model, int k) {
+		int[][] labels = new int[numberOfInstances][k];
+		float[][] scores = new float[numberOfInstances][k];
+		model.predictTopK(rows, k, labels, scores);
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int j = 0;
+			for (EstimatePair pair : model.getTopKEstimates(rows[i], k)) {
+				assertEquals(pair.getLabel(), labels[i][j]);
+				assertEquals((float) pair.getP(), scores[i][j], 0.0f);
+				j++;
+			}
+			assertEquals(Math.min(k, numberOfLabels), j);
+			for (; j < k; j++) {
+				assertEquals(-1, labels[i][j]);
+				assertEquals(0.0f, scores[i][j], 0.0f);
+			}
+		}
+	}
+
+	@Test
+	public void predictsTheLabelsOfTheTopKEstimates() {
+		PLT model = train();
+		assertSameAsEstimates(model, 1);
+		assertSameAsEstimates(model, 5);
+	}
+
+	@Test
+	public void fillsUpWhenThereAreLessThanKLabels() {
+		assertSameAsEstimates(train(), numberOfLabels + 3);
+	}
+
+	@Test
+	public void reusesTheSearcherForQueriesOfAnyK() {
+		PLT model = train();
+		TopKSearcher searcher = new TopKSearcher(model);
+		int[] labels = new int[numberOfLabels];
+		float[] scores = new float[numberOfLabels];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int k = 1 + (i % numberOfLabels);
+			assertEquals(k, searcher.search(rows[i], k, labels, scores));
+			int j = 0;
+			for (EstimatePair pair : model.getTopKEstimates(rows[i], k)) {
+				assertEquals(pair.getLabel(), labels[j]);
+				j++;
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package Learner;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import IO.DataManager;
+import IO.Evaluator;
+
+public class PLTTrainerTests {
+	// not a multiple of the batch size, so every epoch ends with a partial batch
+	final int numberOfInstances = 250;
+	final int numberOfLabels = 8;
+	final int epochs = 3;
+	DataManager data;
+
+	@Before
+	public void arrange() {
+		data = SyntheticData.createData(numberOfInstances, numberOfLabels, false, 17);
+	}
+
+	private PLT train(int batchSize, int trainThreads) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", "PLT");
+		properties.setProperty("hasher", "Mask");
+		properties.setProperty("MLFeatureHashing", "1024");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", Integer.toString(epochs));
+		properties.setProperty("k", "2");
+		properties.setProperty("batchSize", Integer.toString(batchSize));
+		properties.setProperty("trainThreads", Integer.toString(trainThreads));
+
+		PLT learner = new PLT(properties);
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	private double precisionAt1(PLT learner) {
+		Map<String, Double> result = Evaluator.computePrecisionAtk(learner, data, 1);
+		data.reset();
+		return result.get("PrecAtK[1]");
+	}
+
+	@Test
+	public void usesTheSerialLoopWithoutBatchesOrThreads() {
+		assertFalse(PLTTrainer.isNeeded(train(1, 1)));
+		assertTrue(PLTTrainer.isNeeded(train(16, 1)));
+		assertTrue(PLTTrainer.isNeeded(train(1, 2)));
+	}
+
+	@Test
+	public void trainsThePartialBatchesAtTheEndOfEpochs() {
+		for (int trainThreads = 1; trainThreads <= 2; trainThreads++) {
+			PLT learner = train(16, trainThreads);
+			// every instance updates the root
+			assertEquals(1 + epochs * numberOfInstances, learner.Tarray[0]);
+		}
+	}
+
+	@Test
+	public void batchesReachTheSerialPrecision() {
+		double serial = precisionAt1(train(1, 1));
+		assertTrue(serial > 0.9);
+		assertEquals(serial, precisionAt1(train(16, 1)), 0.05);
+		assertEquals(serial, precisionAt1(train(16, 2)), 0.05);
+	}
+}
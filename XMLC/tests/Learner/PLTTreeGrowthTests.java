@@ -0,0 +1,252 @@
+package Learner;
+
+import static Learner.SyntheticData.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import Data.Instance;
+import Data.SparseVector;
+import IO.DataManager;
+import util.CompiledTree;
+import util.CompleteTree;
+import util.GrowingTree;
+
+public class PLTTreeGrowthTests {
+	private Properties createProperties(int trainThreads) {
+		Properties properties = SyntheticData.createProperties("PLT", "Murmur", 2);
+		properties.setProperty("growTree", "true");
+		properties.setProperty("trainThreads", Integer.toString(trainThreads));
+		return properties;
+	}
+
+	private PLT train(DataManager data, Properties properties) {
+		return SyntheticData.train(new PLT(properties), data);
+	}
+
+	private void assertIsConsistent(PLT model, int numberOfLabels) {
+		CompiledTree tree = ((GrowingTree) model.tree).toCompiledTree();
+		assertEquals(model.t, tree.getSize());
+		assertEquals(numberOfLabels, tree.getNumberOfLeaves());
+		for (int label = 0; label < numberOfLabels; label++) {
+			int leaf = tree.getTreeIndex(label);
+			assertTrue(tree.isLeaf(leaf));
+			assertEquals(label, tree.getLabelIndex(leaf));
+			for (int node = leaf; node > 0; node = tree.getParent(node)) {
+				int parent = tree.getParent(node);
+				assertTrue(tree.getChildNodes(parent).contains(node));
+			}
+		}
+	}
+
+	private double accuracy(PLT model, DataManager data) {
+		int correct = 0;
+		while (data.hasNext()) {
+			Instance instance = data.getNextInstance();
+			if (model.getTopkLabels(instance.x, 1)[0] == instance.y[0])
+				correct++;
+		}
+		data.reset();
+		return correct / (double) numberOfInstances;
+	}
+
+	private PLT growWhileTraining(int trainThreads) throws Exception {
+		PLT model = train(createData(8, 3), createProperties(1));
+
+		DataManager data = createData(11, 5);
+		PLT grown = saveAndLoad(model);
+		grown.prepareContinuedTraining(data, createProperties(trainThreads));
+		assertEquals(8, grown.m);
+		grown.train(data);
+		data.reset();
+
+		assertEquals(11, grown.m);
+		assertIsConsistent(grown, 11);
+		assertTrue(accuracy(grown, data) > 0.25);
+		return grown;
+	}
+
+	@Test
+	public void addsTheLabelsWhenTheyAreSeen() throws Exception {
+		growWhileTraining(1);
+	}
+
+	@Test
+	public void addsTheLabelsDuringHogwildTraining() throws Exception {
+		growWhileTraining(2);
+	}
+
+	@Test
+	public void keepsTheGrownTreeInTheModel() throws Exception {
+		PLT grown = growWhileTraining(1);
+		DataManager data = createData(11, 5);
+		for (String modelFormat : new String[] { "serialized", PLTModelFile.name }) {
+			grown.modelFormat = modelFormat;
+			File file = save(grown);
+			assertEquals(grown.t, grown.bias.length);
+
+			PLT loaded = (PLT) AbstractLearner.loadmodel(file.getPath());
+			assertEquals(grown.t, loaded.t);
+			while (data.hasNext()) {
+				Instance instance = data.getNextInstance();
+				for (int label = 0; label < 11; label++) {
+					assertEquals(grown.getPosteriors(instance.x, label), loaded.getPosteriors(instance.x, label), 1e-6);
+				}
+			}
+			data.reset();
+		}
+	}
+
+	@Test
+	public void keepsTheWeightRegionsOfTheSubtrees() throws Exception {
+		Properties properties = createProperties(1);
+		properties.setProperty("subtreeThreads", "2");
+		properties.setProperty("modelFormat", PLTModelFile.name);
+		PLT model = train(createData(8, 3), properties);
+
+		DataManager data = createData(11, 5);
+		PLT grown = saveAndLoad(model);
+		grown.prepareContinuedTraining(data, properties);
+		grown.train(data);
+		data.reset();
+		assertIsConsistent(grown, 11);
+		File file = save(grown);
+
+		PLT loaded = (PLT) AbstractLearner.loadmodel(file.getPath());
+		for (int node = 0; node < grown.t; node++) {
+			assertEquals(grown.nodePartitions[node], loaded.nodePartitions[node]);
+			for (int f = 0; f < numberOfFeatures; f++) {
+				assertEquals(grown.fh.getLongIndex(node, f), loaded.fh.getLongIndex(node, f));
+			}
+		}
+	}
+
+	private PLT growWithSubtreeThreads() throws Exception {
+		Properties properties = createProperties(1);
+		properties.setProperty("subtreeThreads", "3");
+		PLT model = train(createData(8, 3), properties);
+
+		DataManager data = createData(11, 5);
+		PLT grown = saveAndLoad(model);
+		grown.prepareContinuedTraining(data, properties);
+		grown.train(data);
+		data.reset();
+		return grown;
+	}
+
+	@Test
+	public void subtreeThreadsGrowTheSameTree() throws Exception {
+		PLT first = growWithSubtreeThreads();
+		PLT second = growWithSubtreeThreads();
+		assertEquals(first.t, second.t);
+		for (int node = 0; node < first.t; node++) {
+			assertEquals(first.tree.getParent(node), second.tree.getParent(node));
+			assertEquals(first.bias[node], second.bias[node], 0.0);
+		}
+		assertEquals(11, first.m);
+	}
+
+	@Test
+	public void keepsTheBiasOptimizerStateWhenTheArraysGrow() {
+		Properties properties = createProperties(1);
+		properties.setProperty("optimizer", "adagrad");
+		PLT expected = train(createData(8, 3), properties);
+		PLT grown = train(createData(8, 3), properties);
+		grown.ensureNodeCapacity(2 * grown.t + 1);
+		assertTrue(grown.bias.length > expected.bias.length);
+		for (int node = 0; node < expected.t; node++) {
+			assertEquals(expected.biasOptimizer.step(node, 0.5, 1.0), grown.biasOptimizer.step(node, 0.5, 1.0), 0.0);
+		}
+	}
+
+	@Test
+	public void keepsThePosteriorOfASplitLeaf() {
+		DataManager data = createData(8, 3);
+		PLT model = train(data, createProperties(1));
+		Instance instance = data.getNextInstance();
+		data.reset();
+		double[] posteriors = new double[8];
+		for (int label = 0; label < 8; label++) {
+			posteriors[label] = model.getPosteriors(instance.x, label);
+		}
+
+		// every inner node of the complete binary tree is full
+		int t = model.t;
+		model.addLabel(8, instance.x);
+		assertEquals(t + 2, model.t);
+		int moved = model.tree.getLabelIndex(t);
+		assertEquals(model.tree.getParent(t), model.tree.getParent(model.tree.getTreeIndex(8)));
+		for (int label = 0; label < 8; label++) {
+			assertEquals(posteriors[label], model.getPosteriors(instance.x, label), 1e-5);
+		}
+		assertTrue(posteriors[moved] > 0.0);
+	}
+
+	@Test
+	public void predictsWhileLabelsAreAdded() throws Exception {
+		final DataManager data = createData(8, 3);
+		final PLT model = train(data, createProperties(1));
+		final List<SparseVector> rows = new ArrayList<SparseVector>();
+		while (data.hasNext()) {
+			rows.add(data.getNextInstance().x);
+		}
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < 3; r++) {
+			readers.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; !done.get(); i = (i + 1) % rows.size()) {
+							model.getTopkLabels(rows.get(i), 5);
+							model.getPosteriors(rows.get(i), i % 8);
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			});
+		}
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		for (int label = 8; label < 500; label++) {
+			model.addLabel(label, rows.get(label % rows.size()));
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertNull(failure.get());
+		assertEquals(500, model.m);
+		assertIsConsistent(model, 500);
+	}
+
+	@Test
+	public void splitsALeafOnlyWhenTheNodeIsFull() {
+		GrowingTree tree = new GrowingTree(new CompiledTree(new CompleteTree(3, 4)));
+		int size = tree.getSize();
+		assertEquals(1, tree.getFreeChildren(1));
+		tree.addLabel(4, 1);
+		assertEquals(size + 1, tree.getSize());
+		assertEquals(0, tree.getFreeChildren(1));
+
+		tree.addLabel(5, 2);
+		assertFalse(tree.isLeaf(2));
+		assertEquals(size + 3, tree.getSize());
+		assertEquals(2, tree.getParent(tree.getTreeIndex(0)));
+		assertEquals(2, tree.getParent(tree.getTreeIndex(5)));
+		assertEquals(1, tree.getFreeChildren(2));
+		assertEquals(6, tree.getNumberOfLeaves());
+	}
+}
@@ -0,0 +1,86 @@
+package Learner;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.Random;
+
+import Data.AVPair;
+import Data.AVTable;
+import IO.BatchDataManager;
+import IO.DataManager;
+
+/**
+ * Synthetic data sets and the training scaffolding shared by the tests of the
+ * learners.
+ */
+public class SyntheticData {
+	public static final int numberOfInstances = 200;
+	public static final int numberOfFeatures = 64;
+
+	/**
+	 * Instances with one or two random labels. The first feature is the first
+	 * label, the second one is noise from the features 16 and above.
+	 */
+	public static AVTable createTable(int numberOfInstances, int numberOfLabels, boolean secondLabel, long seed) {
+		Random random = new Random(seed);
+		AVTable table = new AVTable();
+		table.n = numberOfInstances;
+		table.m = numberOfLabels;
+		table.d = numberOfFeatures;
+		table.x = new AVPair[numberOfInstances][];
+		table.y = new int[numberOfInstances][];
+
+		for (int i = 0; i < numberOfInstances; i++) {
+			int label = random.nextInt(numberOfLabels);
+			table.y[i] = secondLabel
+					? new int[] { label, (label + 1 + random.nextInt(numberOfLabels - 1)) % numberOfLabels }
+					: new int[] { label };
+			table.x[i] = new AVPair[] { new AVPair(label, 1.0), new AVPair(16 + random.nextInt(numberOfFeatures - 16),
+					random.nextDouble()) };
+		}
+		return table;
+	}
+
+	public static DataManager createData(int numberOfInstances, int numberOfLabels, boolean secondLabel, long seed) {
+		return new BatchDataManager(createTable(numberOfInstances, numberOfLabels, secondLabel, seed));
+	}
+
+	public static DataManager createData(int numberOfLabels, long seed) {
+		return createData(numberOfInstances, numberOfLabels, false, seed);
+	}
+
+	public static Properties createProperties(String learner, String hasher, int epochs) {
+		Properties properties = new Properties();
+		properties.setProperty("Learner", learner);
+		properties.setProperty("hasher", hasher);
+		properties.setProperty("MLFeatureHashing", "4096");
+		properties.setProperty("gamma", "0.5");
+		properties.setProperty("lambda", "0.01");
+		properties.setProperty("epochs", Integer.toString(epochs));
+		properties.setProperty("k", "2");
+		return properties;
+	}
+
+	public static <L extends AbstractLearner> L train(L learner, DataManager data) {
+		learner.allocateClassifiers(data);
+		learner.train(data);
+		data.reset();
+		return learner;
+	}
+
+	public static File save(AbstractLearner model) throws Exception {
+		File file = File.createTempFile("xmlc", ".model");
+		file.deleteOnExit();
+		model.savemodel(file.getPath());
+		return file;
+	}
+
+	/**
+	 * Saves {@code model} and loads it back without mapping its weights, as
+	 * the continued training does.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <L extends AbstractLearner> L saveAndLoad(L model) throws Exception {
+		return (L) AbstractLearner.loadmodel(save(model).getPath(), false);
+	}
+}
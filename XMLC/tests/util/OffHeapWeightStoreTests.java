@@ -0,0 +1,93 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class OffHeapWeightStoreTests {
+	// the first weights of the second segment
+	final long boundary = OffHeapWeightStore.segmentMask + 1;
+	final long size = boundary + 16;
+
+	private File createTempFile(String prefix) throws IOException {
+		File file = File.createTempFile(prefix, ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * Adds distinct values around the boundary of the first two segments.
+	 * The store is backed by a sparse weight file, so only these pages are
+	 * written.
+	 */
+	private void fill(WeightStore store) {
+		for (long i = boundary - 16; i < size; i++) {
+			store.add(i, 0.25 * (i - boundary));
+			store.add(i, 1.0);
+		}
+		store.add(0, -3.0);
+	}
+
+	private void assertFilled(WeightStore store) {
+		assertEquals(size, store.size());
+		assertEquals(-3.0, store.get(0), 0.0);
+		assertEquals(0.0, store.get(boundary - 17), 0.0);
+		for (long i = boundary - 16; i < size; i++) {
+			assertEquals(0.25 * (i - boundary) + 1.0, store.get(i), 0.0);
+		}
+	}
+
+	@Test
+	public void addressesTheWeightsAcrossSegments() throws IOException {
+		File floats = createTempFile("weights");
+		WeightStore store = new OffHeapFloatWeightStore(size, floats.getPath());
+		fill(store);
+		assertFilled(store);
+
+		long[] indices = new long[] { boundary - 1, boundary, 0 };
+		double[] values = new double[] { 1.0, 2.0, 0.5 };
+		assertEquals(0.75 + 2.0 - 1.5, store.dot(indices, values, 3), 0.0);
+		store.addScaled(indices, values, 2, 4.0);
+		assertEquals(0.75 + 4.0, store.get(boundary - 1), 0.0);
+		assertEquals(1.0 + 8.0, store.get(boundary), 0.0);
+		floats.delete();
+
+		File doubles = createTempFile("weights");
+		store = new OffHeapDoubleWeightStore(size, doubles.getPath());
+		fill(store);
+		assertFilled(store);
+		doubles.delete();
+	}
+
+	@Test
+	public void keepsTheWeightsThroughSerialization() throws Exception {
+		File weights = createTempFile("weights");
+		WeightStore store = new OffHeapFloatWeightStore(size, weights.getPath());
+		fill(store);
+
+		File file = createTempFile("store");
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeObject(store);
+		out.close();
+		weights.delete();
+
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+		WeightStore loaded = (WeightStore) in.readObject();
+		in.close();
+		file.delete();
+
+		assertTrue(loaded instanceof OffHeapFloatWeightStore);
+		assertFilled(loaded);
+		loaded.add(boundary, 1.0);
+		assertEquals(2.0, loaded.get(boundary), 0.0);
+	}
+}